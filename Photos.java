@@ -55,6 +55,19 @@ public class Photos extends Application {
         }
     }
 
+    /**
+     * Writes any pending saves before the application exits,
+     * including when the window is closed directly.
+     */
+    @Override
+    public void stop() {
+        try {
+            UserManager.flushPendingSaves();
+        } catch (IOException e) {
+            System.err.println("Error saving data on exit: " + e.getMessage());
+        }
+    }
+
     /**
      * Launches the JavaFX application.
      *
@@ -10,6 +10,9 @@ import javafx.scene.control.ListView;
 import javafx.scene.control.TextInputDialog;
 import javafx.stage.Stage;
 import photos.Album;
+import photos.PhotoQuery;
+import photos.SmartAlbum;
+import users.Mutation;
 import users.User;
 import users.UserManager;
 
@@ -65,10 +68,15 @@ public class AlbumListController {
         if (user != null) {
             titleLabel.setText("Albums for " + user.getUsername());
             albumListView.getItems().clear();
-            for (Album album : user.getAlbums()) {
-                // Create formatted string with album name, photo count, and date range
+            for (Album album : user.getAlbumView()) {
+                // Create formatted string with album name, photo count, size, and date range.
+                // Albums keep these up to date themselves, so this doesn't visit any photos.
                 StringBuilder albumInfo = new StringBuilder(album.getName());
-                albumInfo.append(" (").append(album.getPhotoCount()).append(" photos)");
+                albumInfo.append(" (").append(album.getPhotoCount()).append(" photos");
+                if (album.getTotalBytes() > 0) {
+                    albumInfo.append(", ").append(formatBytes(album.getTotalBytes()));
+                }
+                albumInfo.append(album instanceof SmartAlbum ? ", smart)" : ")");
                 
                 if (album.getPhotoCount() > 0) {
                     java.time.LocalDateTime earliest = album.getEarliestDate();
@@ -86,6 +94,22 @@ public class AlbumListController {
         }
     }
 
+    /**
+     * Formats a size in bytes for display.
+     *
+     * @param bytes the size
+     * @return the size in KB, MB or GB with one decimal place
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024L * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        if (bytes < 1024L * 1024 * 1024) {
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format("%.1f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
     /**
      * Handles the create album button action.
      */
@@ -103,22 +127,65 @@ public class AlbumListController {
                 return;
             }
 
-            try {
-                if (user.getAlbum(albumName) != null) {
-                    showError("Album Exists", "Album '" + albumName + "' already exists");
-                    return;
-                }
-
-                user.createAlbum(albumName);
-                UserManager.saveUser(user);
-                loadAlbums();
-                showInfo("Success", "Album '" + albumName + "' created successfully");
-            } catch (IOException e) {
-                showError("Error Creating Album", e.getMessage());
+            if (user.getAlbum(albumName) != null) {
+                showError("Album Exists", "Album '" + albumName + "' already exists");
+                return;
             }
+
+            user.apply(Mutation.createAlbum(albumName));
+            UserManager.saveUserLater(user);
+            loadAlbums();
+            showInfo("Success", "Album '" + albumName + "' created successfully");
         });
     }
 
+    /**
+     * Handles the create smart album button action.
+     * A smart album holds every photo matching a query and stays up to date as photos change.
+     */
+    @FXML
+    private void handleCreateSmartAlbum() {
+        TextInputDialog nameDialog = new TextInputDialog();
+        nameDialog.setTitle("Create Smart Album");
+        nameDialog.setHeaderText("Create New Smart Album");
+        nameDialog.setContentText("Album Name:");
+
+        Optional<String> name = nameDialog.showAndWait();
+        if (!name.isPresent()) {
+            return;
+        }
+        String albumName = name.get();
+        if (albumName.trim().isEmpty()) {
+            showError("Invalid Input", "Album name cannot be empty");
+            return;
+        }
+        if (user.getAlbum(albumName) != null) {
+            showError("Album Exists", "Album '" + albumName + "' already exists");
+            return;
+        }
+
+        TextInputDialog queryDialog = new TextInputDialog();
+        queryDialog.setTitle("Create Smart Album");
+        queryDialog.setHeaderText("Photos matching this query will appear in '" + albumName + "'");
+        queryDialog.setContentText("Query:");
+
+        Optional<String> query = queryDialog.showAndWait();
+        if (!query.isPresent()) {
+            return;
+        }
+        try {
+            PhotoQuery.parse(query.get());
+        } catch (IllegalArgumentException e) {
+            showError("Invalid Query", e.getMessage());
+            return;
+        }
+
+        user.apply(Mutation.createSmartAlbum(albumName, query.get()));
+        UserManager.saveUserLater(user);
+        loadAlbums();
+        showInfo("Success", "Smart album '" + albumName + "' created successfully");
+    }
+
     /**
      * Handles the open album button action.
      * Opens the selected album to view its photos.
@@ -189,19 +256,15 @@ public class AlbumListController {
                 return; // No change
             }
 
-            try {
-                if (user.getAlbum(newName) != null) {
-                    showError("Album Exists", "Album '" + newName + "' already exists");
-                    return;
-                }
-
-                album.setName(newName);
-                UserManager.saveUser(user);
-                loadAlbums();
-                showInfo("Success", "Album renamed to '" + newName + "'");
-            } catch (IOException e) {
-                showError("Error Renaming Album", e.getMessage());
+            if (user.getAlbum(newName) != null) {
+                showError("Album Exists", "Album '" + newName + "' already exists");
+                return;
             }
+
+            user.apply(Mutation.renameAlbum(albumName, newName));
+            UserManager.saveUserLater(user);
+            loadAlbums();
+            showInfo("Success", "Album renamed to '" + newName + "'");
         });
     }
 
@@ -231,14 +294,10 @@ public class AlbumListController {
 
         Optional<ButtonType> result = confirmDialog.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            try {
-                user.deleteAlbum(albumName);
-                UserManager.saveUser(user);
-                loadAlbums();
-                showInfo("Success", "Album '" + albumName + "' deleted successfully");
-            } catch (IOException e) {
-                showError("Error Deleting Album", e.getMessage());
-            }
+            user.apply(Mutation.deleteAlbum(albumName));
+            UserManager.saveUserLater(user);
+            loadAlbums();
+            showInfo("Success", "Album '" + albumName + "' deleted successfully");
         }
     }
 
@@ -264,12 +323,12 @@ public class AlbumListController {
 
     /**
      * Handles the logout button action.
-     * Returns to the login screen and saves user data.
+     * Returns to the login screen once all pending saves have been written.
      */
     @FXML
     private void handleLogout() {
         try {
-            UserManager.saveUser(user);
+            UserManager.flushPendingSaves();
             
             Stage loginStage = (Stage) titleLabel.getScene().getWindow();
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/gui/LoginScene.fxml"));
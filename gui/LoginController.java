@@ -73,10 +73,16 @@ public class LoginController {
 
     /**
      * Handles the quit button action.
-     * Exits the application.
+     * Writes any pending saves and exits the application.
      */
     @FXML
     private void handleQuit() {
+        try {
+            UserManager.flushPendingSaves();
+        } catch (IOException e) {
+            errorLabel.setText("Error saving data: " + e.getMessage());
+            return;
+        }
         Stage stage = (Stage) usernameField.getScene().getWindow();
         stage.close();
     }
@@ -14,7 +14,9 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import photos.Album;
 import photos.Photo;
+import photos.SmartAlbum;
 import photos.Tag;
+import users.Mutation;
 import users.User;
 import users.UserManager;
 
@@ -80,7 +82,7 @@ public class PhotoViewController {
      * @param index the index of the photo to display
      */
     private void displayPhoto(int index) {
-        if (currentAlbum == null || currentAlbum.getPhotos().isEmpty()) {
+        if (currentAlbum == null || currentAlbum.isEmpty()) {
             return;
         }
 
@@ -104,16 +106,43 @@ public class PhotoViewController {
         dateLabel.setText("Date: " + photo.getDate());
         
         StringBuilder tags = new StringBuilder("Tags: ");
-        if (photo.getTags().isEmpty()) {
+        if (photo.getTagCount() == 0) {
             tags.append("(none)");
         } else {
-            for (Tag tag : photo.getTags()) {
-                tags.append(tag.toString()).append(" ");
+            for (int i = 0; i < photo.getTagCount(); i++) {
+                tags.append(photo.getTag(i)).append(" ");
             }
         }
         tagsLabel.setText(tags.toString());
     }
 
+    /**
+     * Displays the current photo again after an edit.
+     * Editing a photo in a smart album can drop it from the album, in which case the
+     * photo now at the same position is shown.
+     */
+    private void redisplay() {
+        if (currentPhotoIndex >= currentAlbum.getPhotoCount()) {
+            currentPhotoIndex = Math.max(0, currentAlbum.getPhotoCount() - 1);
+        }
+        displayPhoto(currentPhotoIndex);
+    }
+
+    /**
+     * Shows an error if the current album is a smart album, whose photos can't be
+     * added, moved or removed by hand.
+     *
+     * @return true if the current album is a smart album
+     */
+    private boolean rejectSmartAlbum() {
+        if (currentAlbum instanceof SmartAlbum) {
+            showError("Smart Album", "Photos in '" + currentAlbum.getName() + "' are chosen by its query: "
+                      + ((SmartAlbum) currentAlbum).getQuery());
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Handles the previous button action.
      */
@@ -140,6 +169,9 @@ public class PhotoViewController {
      */
     @FXML
     private void handleAddPhoto() {
+        if (rejectSmartAlbum()) {
+            return;
+        }
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Select Photo");
         fileChooser.getExtensionFilters().addAll(
@@ -156,17 +188,14 @@ public class PhotoViewController {
                     java.time.ZoneId.systemDefault()
                 );
                 
-                // Create photo
-                Photo newPhoto = new Photo(selectedFile.getAbsolutePath(), fileDate);
-                
-                // Check if photo already exists in album
-                if (currentAlbum.containsPhoto(newPhoto)) {
+                // Add photo, rejecting it if it already exists in the album
+                Mutation addPhoto = Mutation.addPhoto(currentAlbum.getName(), selectedFile.getAbsolutePath(),
+                                                      fileDate, java.nio.file.Files.size(path));
+                if (!user.apply(addPhoto)) {
                     showError("Duplicate Photo", "This photo is already in the album");
                     return;
                 }
-                
-                currentAlbum.addPhoto(newPhoto);
-                UserManager.saveUser(user);
+                UserManager.saveUserLater(user);
                 
                 // Display the newly added photo
                 displayPhoto(currentAlbum.getPhotoCount() - 1);
@@ -182,7 +211,7 @@ public class PhotoViewController {
      */
     @FXML
     private void handleEditCaption() {
-        if (currentAlbum == null || currentAlbum.getPhotos().isEmpty()) {
+        if (currentAlbum == null || currentAlbum.isEmpty()) {
             showError("No Photo", "No photo to edit");
             return;
         }
@@ -196,14 +225,10 @@ public class PhotoViewController {
 
         Optional<String> result = dialog.showAndWait();
         result.ifPresent(caption -> {
-            try {
-                photo.setCaption(caption.trim());
-                UserManager.saveUser(user);
-                displayPhoto(currentPhotoIndex);
-                showInfo("Success", "Caption updated successfully");
-            } catch (IOException e) {
-                showError("Error Updating Caption", e.getMessage());
-            }
+            user.apply(Mutation.setCaption(currentAlbum.getName(), photo, caption.trim()));
+            UserManager.saveUserLater(user);
+            redisplay();
+            showInfo("Success", "Caption updated successfully");
         });
     }
 
@@ -238,15 +263,11 @@ public class PhotoViewController {
                     return;
                 }
 
-                try {
-                    Tag tag = new Tag(type.trim(), value.trim());
-                    photo.addTag(tag);
-                    UserManager.saveUser(user);
-                    displayPhoto(currentPhotoIndex);
-                    showInfo("Success", "Tag added successfully");
-                } catch (IOException e) {
-                    showError("Error Adding Tag", e.getMessage());
-                }
+                Tag tag = Tag.of(type.trim(), value.trim());
+                user.apply(Mutation.addTag(currentAlbum.getName(), photo, tag));
+                UserManager.saveUserLater(user);
+                redisplay();
+                showInfo("Success", "Tag added successfully");
             });
         });
     }
@@ -256,14 +277,14 @@ public class PhotoViewController {
      */
     @FXML
     private void handleDeleteTag() {
-        if (currentAlbum == null || currentAlbum.getPhotos().isEmpty()) {
+        if (currentAlbum == null || currentAlbum.isEmpty()) {
             showError("No Photo", "No photo selected");
             return;
         }
 
         Photo photo = currentAlbum.getPhotoAt(currentPhotoIndex);
         
-        if (photo.getTags().isEmpty()) {
+        if (photo.getTagCount() == 0) {
             showError("No Tags", "This photo has no tags to delete");
             return;
         }
@@ -287,14 +308,10 @@ public class PhotoViewController {
             // Parse tag string back to Tag object
             for (Tag tag : photo.getTags()) {
                 if (tag.toString().equals(selectedTag)) {
-                    try {
-                        photo.removeTag(tag);
-                        UserManager.saveUser(user);
-                        displayPhoto(currentPhotoIndex);
-                        showInfo("Success", "Tag deleted successfully");
-                    } catch (IOException e) {
-                        showError("Error Deleting Tag", e.getMessage());
-                    }
+                    user.apply(Mutation.removeTag(currentAlbum.getName(), photo, tag));
+                    UserManager.saveUserLater(user);
+                    redisplay();
+                    showInfo("Success", "Tag deleted successfully");
                     break;
                 }
             }
@@ -307,7 +324,7 @@ public class PhotoViewController {
      */
     @FXML
     private void handleCopyPhoto() {
-        if (currentAlbum == null || currentAlbum.getPhotos().isEmpty()) {
+        if (currentAlbum == null || currentAlbum.isEmpty()) {
             showError("No Photo", "No photo to copy");
             return;
         }
@@ -316,8 +333,8 @@ public class PhotoViewController {
         
         // Get list of other albums
         ComboBox<String> albumCombo = new ComboBox<>();
-        for (Album album : user.getAlbums()) {
-            if (!album.getName().equals(currentAlbum.getName())) {
+        for (Album album : user.getAlbumView()) {
+            if (!album.getName().equals(currentAlbum.getName()) && !(album instanceof SmartAlbum)) {
                 albumCombo.getItems().add(album.getName());
             }
         }
@@ -340,18 +357,14 @@ public class PhotoViewController {
             Album destAlbum = user.getAlbum(destAlbumName);
             
             if (destAlbum != null) {
-                try {
-                    if (destAlbum.containsPhoto(photo)) {
-                        showError("Duplicate Photo", "Photo already exists in album '" + destAlbumName + "'");
-                        return;
-                    }
-                    
-                    destAlbum.addPhoto(photo);
-                    UserManager.saveUser(user);
-                    showInfo("Success", "Photo copied to album '" + destAlbumName + "'");
-                } catch (IOException e) {
-                    showError("Error Copying Photo", e.getMessage());
+                if (destAlbum.containsPhoto(photo)) {
+                    showError("Duplicate Photo", "Photo already exists in album '" + destAlbumName + "'");
+                    return;
                 }
+                
+                user.apply(Mutation.copyPhoto(currentAlbum.getName(), destAlbumName, photo));
+                UserManager.saveUserLater(user);
+                showInfo("Success", "Photo copied to album '" + destAlbumName + "'");
             }
         }
     }
@@ -362,17 +375,20 @@ public class PhotoViewController {
      */
     @FXML
     private void handleMovePhoto() {
-        if (currentAlbum == null || currentAlbum.getPhotos().isEmpty()) {
+        if (currentAlbum == null || currentAlbum.isEmpty()) {
             showError("No Photo", "No photo to move");
             return;
         }
+        if (rejectSmartAlbum()) {
+            return;
+        }
 
         Photo photo = currentAlbum.getPhotoAt(currentPhotoIndex);
         
         // Get list of other albums
         ComboBox<String> albumCombo = new ComboBox<>();
-        for (Album album : user.getAlbums()) {
-            if (!album.getName().equals(currentAlbum.getName())) {
+        for (Album album : user.getAlbumView()) {
+            if (!album.getName().equals(currentAlbum.getName()) && !(album instanceof SmartAlbum)) {
                 albumCombo.getItems().add(album.getName());
             }
         }
@@ -395,29 +411,24 @@ public class PhotoViewController {
             Album destAlbum = user.getAlbum(destAlbumName);
             
             if (destAlbum != null) {
-                try {
-                    if (destAlbum.containsPhoto(photo)) {
-                        showError("Duplicate Photo", "Photo already exists in album '" + destAlbumName + "'");
-                        return;
-                    }
-                    
-                    destAlbum.addPhoto(photo);
-                    currentAlbum.removePhoto(photo);
-                    UserManager.saveUser(user);
-                    
-                    // Update display
-                    if (currentAlbum.getPhotoCount() == 0) {
-                        showInfo("Success", "Photo moved. Album is now empty.");
-                        handleBack();
-                    } else {
-                        if (currentPhotoIndex >= currentAlbum.getPhotoCount()) {
-                            currentPhotoIndex = currentAlbum.getPhotoCount() - 1;
-                        }
-                        displayPhoto(currentPhotoIndex);
-                        showInfo("Success", "Photo moved to album '" + destAlbumName + "'");
+                if (destAlbum.containsPhoto(photo)) {
+                    showError("Duplicate Photo", "Photo already exists in album '" + destAlbumName + "'");
+                    return;
+                }
+                
+                user.apply(Mutation.movePhoto(currentAlbum.getName(), destAlbumName, photo));
+                UserManager.saveUserLater(user);
+                
+                // Update display
+                if (currentAlbum.getPhotoCount() == 0) {
+                    showInfo("Success", "Photo moved. Album is now empty.");
+                    handleBack();
+                } else {
+                    if (currentPhotoIndex >= currentAlbum.getPhotoCount()) {
+                        currentPhotoIndex = currentAlbum.getPhotoCount() - 1;
                     }
-                } catch (IOException e) {
-                    showError("Error Moving Photo", e.getMessage());
+                    displayPhoto(currentPhotoIndex);
+                    showInfo("Success", "Photo moved to album '" + destAlbumName + "'");
                 }
             }
         }
@@ -428,10 +439,13 @@ public class PhotoViewController {
      */
     @FXML
     private void handleRemovePhoto() {
-        if (currentAlbum == null || currentAlbum.getPhotos().isEmpty()) {
+        if (currentAlbum == null || currentAlbum.isEmpty()) {
             showError("No Photo", "No photo to remove");
             return;
         }
+        if (rejectSmartAlbum()) {
+            return;
+        }
 
         Photo photo = currentAlbum.getPhotoAt(currentPhotoIndex);
         
@@ -442,22 +456,18 @@ public class PhotoViewController {
 
         Optional<ButtonType> result = confirmDialog.showAndWait();
         if (result.isPresent() && result.get() == ButtonType.OK) {
-            try {
-            currentAlbum.removePhoto(photo);
-                UserManager.saveUser(user);
-                
-                if (currentAlbum.getPhotoCount() == 0) {
-                    showInfo("Success", "Photo removed. Album is now empty.");
-                    handleBack();
-                } else {
-                    if (currentPhotoIndex >= currentAlbum.getPhotoCount()) {
-                        currentPhotoIndex = currentAlbum.getPhotoCount() - 1;
-                    }
-                    displayPhoto(currentPhotoIndex);
-                    showInfo("Success", "Photo removed successfully");
+            user.apply(Mutation.removePhoto(currentAlbum.getName(), photo));
+            UserManager.saveUserLater(user);
+            
+            if (currentAlbum.getPhotoCount() == 0) {
+                showInfo("Success", "Photo removed. Album is now empty.");
+                handleBack();
+            } else {
+                if (currentPhotoIndex >= currentAlbum.getPhotoCount()) {
+                    currentPhotoIndex = currentAlbum.getPhotoCount() - 1;
                 }
-            } catch (IOException e) {
-                showError("Error Removing Photo", e.getMessage());
+                displayPhoto(currentPhotoIndex);
+                showInfo("Success", "Photo removed successfully");
             }
         }
     }
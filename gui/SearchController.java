@@ -2,24 +2,32 @@ package gui;
 
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
-import photos.Album;
 import photos.Photo;
+import photos.PhotoIndex;
+import photos.PhotoQuery;
+import photos.SearchResult;
 import photos.SearchPhotos;
 import photos.Tag;
+import photos.TagFacets;
+import users.Mutation;
 import users.User;
 import users.UserManager;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Controller for the photo search screen.
- * Provides search functionality by date range and tags.
+ * Provides search functionality by date range, tags, caption text and boolean queries.
+ * Caption search runs as the text is typed.
  * 
  * @author Group 60
  */
@@ -41,11 +49,25 @@ public class SearchController {
     @FXML
     private ComboBox<String> logicCombo;
     @FXML
+    private TextField captionField;
+    @FXML
+    private TextField queryField;
+    @FXML
+    private Button explainButton;
+    @FXML
     private ListView<String> resultsListView;
-    
+    @FXML
+    private Label resultsLabel;
+
+    private static final int PAGE_SIZE = 200;
+    private static final int COMPLETION_LIMIT = 50;
+
     private Stage stage;
     private User user;
-    private List<Photo> searchResults;
+    private SearchResult searchResults;
+    private int displayedCount;
+    private boolean scrollListenerAttached;
+    private boolean updatingCompletions;
 
     /**
      * Sets the stage for this controller.
@@ -72,8 +94,9 @@ public class SearchController {
     @FXML
     public void initialize() {
         // Set up search type options
-        searchTypeCombo.getItems().addAll("Date Range", "Tags");
+        searchTypeCombo.getItems().addAll("Date Range", "Tags", "Caption", "Query");
         searchTypeCombo.setValue("Date Range");
+        handleSearchTypeChange();
         
         // Set up logic options for tag-based searches
         logicCombo.getItems().addAll("AND", "OR");
@@ -83,38 +106,63 @@ public class SearchController {
         searchTypeCombo.setOnAction(e -> handleSearchTypeChange());
         tagTypeCombo.setOnAction(e -> handleTagTypeChange());
         tag2TypeCombo.setOnAction(e -> handleTag2TypeChange());
+        captionField.textProperty().addListener((observable, oldText, newText) -> handleCaptionTyped());
+
+        // Complete tag values as they are typed
+        tagValueCombo.setEditable(true);
+        tag2ValueCombo.setEditable(true);
+        tagValueCombo.getEditor().textProperty().addListener(
+            (observable, oldText, newText) -> completeTagValue(tagValueCombo, tagTypeCombo.getValue(), newText));
+        tag2ValueCombo.getEditor().textProperty().addListener(
+            (observable, oldText, newText) -> completeTagValue(tag2ValueCombo, tag2TypeCombo.getValue(), newText));
     }
 
     /**
-     * Loads all available tag types from user's photos.
+     * Loads all available tag types from the user's tag facets.
      */
     private void loadTagTypes() {
         tagTypeCombo.getItems().clear();
         tag2TypeCombo.getItems().clear();
-        
-        List<Photo> allPhotos = getAllPhotos();
-        List<String> tagTypes = SearchPhotos.getAllTagTypes(allPhotos);
+        if (user == null) {
+            return;
+        }
+
+        List<String> tagTypes = getFacets().getTypes();
         tagTypeCombo.getItems().addAll(tagTypes);
         tag2TypeCombo.getItems().addAll(tagTypes);
     }
 
     /**
-     * Gets all photos from all user albums.
+     * Gets the tag types and values in use across the user's photos.
      *
-     * @return list of all photos
+     * @return the tag facets
      */
-    private List<Photo> getAllPhotos() {
-        List<Photo> allPhotos = new java.util.ArrayList<>();
-        if (user != null) {
-            for (Album album : user.getAlbums()) {
-                for (Photo photo : album.getPhotos()) {
-                    if (!allPhotos.contains(photo)) {
-                        allPhotos.add(photo);
-                    }
-                }
+    private TagFacets getFacets() {
+        return user.getPhotoIndex().getFacets();
+    }
+
+    /**
+     * Replaces a value combo's choices with the values of a tag type that start with
+     * the text typed so far.
+     *
+     * @param valueCombo the value combo being typed in
+     * @param tagType the selected tag type
+     * @param text the text typed so far
+     */
+    private void completeTagValue(ComboBox<String> valueCombo, String tagType, String text) {
+        if (updatingCompletions || user == null || tagType == null || tagType.isEmpty()) {
+            return;
+        }
+
+        updatingCompletions = true;
+        try {
+            valueCombo.getItems().setAll(getFacets().completeValues(tagType, text == null ? "" : text, COMPLETION_LIMIT));
+            if (valueCombo.isFocused() && !valueCombo.getItems().isEmpty()) {
+                valueCombo.show();
             }
+        } finally {
+            updatingCompletions = false;
         }
-        return allPhotos;
     }
 
     /**
@@ -124,13 +172,19 @@ public class SearchController {
     private void handleSearchTypeChange() {
         String searchType = searchTypeCombo.getValue();
         boolean isDateRange = searchType.equals("Date Range");
+        boolean isTags = searchType.equals("Tags");
+        boolean isCaption = searchType.equals("Caption");
+        boolean isQuery = searchType.equals("Query");
         startDatePicker.setDisable(!isDateRange);
         endDatePicker.setDisable(!isDateRange);
-        tagTypeCombo.setDisable(isDateRange);
-        tagValueCombo.setDisable(isDateRange);
-        tag2TypeCombo.setDisable(isDateRange);
-        tag2ValueCombo.setDisable(isDateRange);
-        logicCombo.setDisable(isDateRange);
+        tagTypeCombo.setDisable(!isTags);
+        tagValueCombo.setDisable(!isTags);
+        tag2TypeCombo.setDisable(!isTags);
+        tag2ValueCombo.setDisable(!isTags);
+        logicCombo.setDisable(!isTags);
+        captionField.setDisable(!isCaption);
+        queryField.setDisable(!isQuery);
+        explainButton.setDisable(!isQuery);
     }
 
     /**
@@ -143,10 +197,7 @@ public class SearchController {
             return;
         }
 
-        tagValueCombo.getItems().clear();
-        List<Photo> allPhotos = getAllPhotos();
-        List<String> values = SearchPhotos.getTagValues(allPhotos, tagType);
-        tagValueCombo.getItems().addAll(values);
+        tagValueCombo.getItems().setAll(getFacets().getValues(tagType));
     }
 
     /**
@@ -159,10 +210,7 @@ public class SearchController {
             return;
         }
 
-        tag2ValueCombo.getItems().clear();
-        List<Photo> allPhotos = getAllPhotos();
-        List<String> values = SearchPhotos.getTagValues(allPhotos, tagType);
-        tag2ValueCombo.getItems().addAll(values);
+        tag2ValueCombo.getItems().setAll(getFacets().getValues(tagType));
     }
 
     /**
@@ -171,16 +219,17 @@ public class SearchController {
     @FXML
     private void handleSearch() {
         String searchType = searchTypeCombo.getValue();
-        List<Photo> allPhotos = getAllPhotos();
 
-        if (searchResults != null) {
-            searchResults.clear();
-        }
+        searchResults = null;
 
         if (searchType.equals("Date Range")) {
-            performDateRangeSearch(allPhotos);
+            performDateRangeSearch(user.getPhotoIndex());
+        } else if (searchType.equals("Caption")) {
+            performCaptionSearch(user.getPhotoIndex());
+        } else if (searchType.equals("Query")) {
+            performQuerySearch(user.getPhotoIndex());
         } else {
-            performTagSearch(allPhotos);
+            performTagSearch(user.getPhotoIndex());
         }
 
         displayResults();
@@ -193,9 +242,9 @@ public class SearchController {
     /**
      * Performs a date range search.
      *
-     * @param allPhotos the list of all photos to search
+     * @param index the index of the user's photos
      */
-    private void performDateRangeSearch(List<Photo> allPhotos) {
+    private void performDateRangeSearch(PhotoIndex index) {
         if (startDatePicker.getValue() == null || endDatePicker.getValue() == null) {
             showError("Invalid Input", "Please select both start and end dates");
             return;
@@ -204,15 +253,15 @@ public class SearchController {
         LocalDateTime startDate = startDatePicker.getValue().atStartOfDay();
         LocalDateTime endDate = endDatePicker.getValue().atTime(23, 59, 59);
 
-        searchResults = SearchPhotos.searchByDateRange(allPhotos, startDate, endDate);
+        searchResults = SearchPhotos.findByDateRange(index, startDate, endDate);
     }
 
     /**
      * Performs a tag-based search.
      *
-     * @param allPhotos the list of all photos to search
+     * @param index the index of the user's photos
      */
-    private void performTagSearch(List<Photo> allPhotos) {
+    private void performTagSearch(PhotoIndex index) {
         String tag1Type = tagTypeCombo.getValue();
         String tag1Value = tagValueCombo.getValue();
 
@@ -224,33 +273,141 @@ public class SearchController {
         String tag2Type = tag2TypeCombo.getValue();
         String tag2Value = tag2ValueCombo.getValue();
 
+        Tag tag1 = new Tag(tag1Type, tag1Value);
         if (tag2Type == null || tag2Type.isEmpty()) {
             // Single tag search
-            searchResults = SearchPhotos.searchByTag(allPhotos, tag1Type, tag1Value);
+            searchResults = SearchPhotos.findByTagsAnd(index, List.of(tag1));
         } else if (tag2Value == null || tag2Value.isEmpty()) {
             // Single tag search
-            searchResults = SearchPhotos.searchByTag(allPhotos, tag1Type, tag1Value);
+            searchResults = SearchPhotos.findByTagsAnd(index, List.of(tag1));
         } else {
             // Two-tag search
             String logic = logicCombo.getValue();
+            Tag tag2 = new Tag(tag2Type, tag2Value);
             if (logic.equals("AND")) {
-                searchResults = SearchPhotos.searchByTwoTagsAnd(allPhotos, tag1Type, tag1Value, tag2Type, tag2Value);
+                searchResults = SearchPhotos.findByTagsAnd(index, List.of(tag1, tag2));
             } else {
-                searchResults = SearchPhotos.searchByTwoTagsOr(allPhotos, tag1Type, tag1Value, tag2Type, tag2Value);
+                searchResults = SearchPhotos.findByTagsOr(index, List.of(tag1, tag2));
             }
         }
     }
 
     /**
-     * Displays search results in the list view.
+     * Performs a search for the text in the caption field.
+     *
+     * @param index the index of the user's photos
+     */
+    private void performCaptionSearch(PhotoIndex index) {
+        String text = captionField.getText();
+        if (text == null || text.trim().isEmpty()) {
+            showError("Invalid Input", "Please enter caption text");
+            return;
+        }
+
+        searchResults = SearchPhotos.findByCaption(index, text);
+    }
+
+    /**
+     * Updates the results as caption text is typed, without showing any dialogs.
+     */
+    private void handleCaptionTyped() {
+        if (user == null || !"Caption".equals(searchTypeCombo.getValue())) {
+            return;
+        }
+        String text = captionField.getText();
+        searchResults = text == null || text.trim().isEmpty()
+            ? null : SearchPhotos.findByCaption(user.getPhotoIndex(), text);
+        displayResults();
+    }
+
+    /**
+     * Performs a search with the boolean query typed in the query field.
+     *
+     * @param index the index of the user's photos
+     */
+    private void performQuerySearch(PhotoIndex index) {
+        String query = queryField.getText();
+        if (query == null || query.trim().isEmpty()) {
+            showError("Invalid Input", "Please enter a query");
+            return;
+        }
+
+        try {
+            searchResults = SearchPhotos.findByQuery(index, query);
+        } catch (IllegalArgumentException e) {
+            showError("Invalid Query", e.getMessage());
+        }
+    }
+
+    /**
+     * Handles the explain button action.
+     * Shows how the query in the query field is evaluated and how long each step takes.
+     */
+    @FXML
+    private void handleExplain() {
+        String query = queryField.getText();
+        if (query == null || query.trim().isEmpty()) {
+            showError("Invalid Input", "Please enter a query");
+            return;
+        }
+
+        try {
+            showInfo("Query Plan", PhotoQuery.parse(query).explain(user.getPhotoIndex()));
+        } catch (IllegalArgumentException e) {
+            showError("Invalid Query", e.getMessage());
+        }
+    }
+
+    /**
+     * Displays the first page of search results in the list view.
+     * Further pages are added as the list is scrolled to the bottom.
      */
     private void displayResults() {
         resultsListView.getItems().clear();
-        if (searchResults != null && !searchResults.isEmpty()) {
-            for (Photo photo : searchResults) {
-                String display = photo.getFileName() + 
-                    (photo.getCaption().isEmpty() ? "" : " [" + photo.getCaption() + "]");
-                resultsListView.getItems().add(display);
+        displayedCount = 0;
+        showNextPage();
+        attachScrollListener();
+    }
+
+    /**
+     * Adds the next page of search results to the list view.
+     */
+    private void showNextPage() {
+        if (searchResults == null) {
+            resultsLabel.setText("Results:");
+            return;
+        }
+
+        List<Photo> page = searchResults.page(displayedCount, PAGE_SIZE);
+        List<String> items = new ArrayList<>(page.size());
+        for (Photo photo : page) {
+            items.add(photo.getFileName() +
+                (photo.getCaption().isEmpty() ? "" : " [" + photo.getCaption() + "]"));
+        }
+        resultsListView.getItems().addAll(items);
+        displayedCount += page.size();
+        resultsLabel.setText("Results: showing " + displayedCount + " of "
+            + (searchResults.isComplete() ? "" : "about ") + searchResults.estimatedSize());
+    }
+
+    /**
+     * Loads the next page of results whenever the list view's vertical scroll bar
+     * reaches the bottom.
+     */
+    private void attachScrollListener() {
+        if (scrollListenerAttached) {
+            return;
+        }
+        for (Node node : resultsListView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar scrollBar = (ScrollBar) node;
+                scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax()) {
+                        showNextPage();
+                    }
+                });
+                scrollListenerAttached = true;
+                return;
             }
         }
     }
@@ -277,23 +434,24 @@ public class SearchController {
                 return;
             }
 
+            if (user.getAlbum(albumName) != null) {
+                showError("Album Exists", "Album '" + albumName + "' already exists");
+                return;
+            }
+
+            // Create the album and add the search results to it as one batch
+            user.apply(Mutation.createAlbum(albumName));
+            int added;
             try {
-                if (user.getAlbum(albumName) != null) {
-                    showError("Album Exists", "Album '" + albumName + "' already exists");
-                    return;
-                }
-
-                // Create album and add search results
-                user.createAlbum(albumName);
-                Album newAlbum = user.getAlbum(albumName);
-                for (Photo photo : searchResults) {
-                    newAlbum.addPhoto(photo);
-                }
-                UserManager.saveUser(user);
-                showInfo("Success", "Album '" + albumName + "' created with " + searchResults.size() + " photos");
-            } catch (IOException e) {
-                showError("Error Creating Album", e.getMessage());
+                added = user.addPhotos(albumName, searchResults.toList());
+            } catch (IllegalArgumentException e) {
+                UserManager.saveUserLater(user);
+                showError("Error Adding Photos",
+                          "Album '" + albumName + "' was created, but its photos could not be added: " + e.getMessage());
+                return;
             }
+            UserManager.saveUserLater(user);
+            showInfo("Success", "Album '" + albumName + "' created with " + added + " photos");
         });
     }
 
@@ -1,21 +1,50 @@
 package photos;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Collection;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * Represents an album that contains a collection of photos.
- * An album has a name and a list of photos.
+ * An album has a name and a list of photos, kept in the order they were added.
  * 
  * @author Group XX
  */
 public class Album implements Serializable {
     private static final long serialVersionUID = 1L;
+
+    /** Serialized form, unchanged from when photos were stored as a list. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("photos", List.class)
+    };
     
     private String name;
-    private List<Photo> photos;
+    private transient PhotoSequence photos;
+
+    private transient long id;
+    private transient AlbumLoader loader;
+    private transient PhotoIndex index;
+    private transient PhotoRegistry registry;
+    private transient int deferredCount;
+    private transient LocalDateTime deferredEarliest;
+    private transient LocalDateTime deferredLatest;
+    private transient long deferredBytes;
+    private transient List<Photo> view;
+    private transient volatile AlbumSnapshot snapshot;
+    private transient long snapshotVersion;
+    private transient long versionBase;
+    private transient long renames;
 
     /**
      * Constructs an Album with the specified name.
@@ -24,7 +53,216 @@ public class Album implements Serializable {
      */
     public Album(String name) {
         this.name = name;
-        this.photos = new ArrayList<>();
+        this.photos = new PhotoSequence();
+    }
+
+    /**
+     * Creates an album whose photos are loaded on first access.
+     *
+     * @param name the name of the album
+     * @param photoCount the number of photos in the album
+     * @param earliest the earliest photo date, or null if the album is empty
+     * @param latest the latest photo date, or null if the album is empty
+     * @param totalBytes the total file size of the photos in bytes
+     * @param loader the loader that reads the photos when they are needed
+     * @return the album
+     */
+    public static Album deferred(String name, int photoCount, LocalDateTime earliest,
+                                 LocalDateTime latest, long totalBytes, AlbumLoader loader) {
+        Album album = new Album(name);
+        album.loader = loader;
+        album.deferredCount = photoCount;
+        album.deferredEarliest = earliest;
+        album.deferredLatest = latest;
+        album.deferredBytes = totalBytes;
+        return album;
+    }
+
+    /**
+     * Checks whether this album's photos are in memory.
+     *
+     * @return true if the photos are loaded, false if they are still deferred
+     */
+    public synchronized boolean isLoaded() {
+        return loader == null;
+    }
+
+    /**
+     * Gets the loader for this album's photos.
+     *
+     * @return the loader, or null if the photos are already loaded
+     */
+    public synchronized AlbumLoader getLoader() {
+        return loader;
+    }
+
+    /**
+     * Loads this album's photos if they haven't been loaded yet.
+     *
+     * @throws UncheckedIOException if the photos cannot be read
+     */
+    private synchronized void ensureLoaded() {
+        if (loader == null) {
+            return;
+        }
+        try {
+            PhotoSequence loaded = new PhotoSequence();
+            for (Photo photo : loader.loadPhotos()) {
+                if (!loaded.contains(photo)) {
+                    loaded.add(registry == null ? photo : registry.acquire(photo));
+                }
+            }
+            photos = loaded;
+            versionBase = loaded.version();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load album '" + name + "'", e);
+        }
+        loader = null;
+        deferredEarliest = null;
+        deferredLatest = null;
+        snapshot = null;
+        if (registry != null) {
+            registry.removeUnloaded(this);
+        }
+    }
+
+    /**
+     * Finds a photo among this album's stored photos without loading the album.
+     *
+     * @param filePath the file path
+     * @return the stored photo, or null if the album is loaded or doesn't contain the path
+     * @throws UncheckedIOException if the photos cannot be read
+     */
+    synchronized Photo findStoredPhoto(String filePath) {
+        if (loader == null) {
+            return null;
+        }
+        try {
+            return loader.findPhoto(filePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read album '" + name + "'", e);
+        }
+    }
+
+    /**
+     * Gets the id that identifies this album in its owner's saved snapshot.
+     *
+     * @return the id, or 0 if the album has never been saved
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Sets the id that identifies this album in its owner's saved snapshot.
+     *
+     * @param id the id
+     */
+    public synchronized void setId(long id) {
+        this.id = id;
+        snapshot = null;
+    }
+
+    /**
+     * Gets this album's id, first giving it a random non-zero id if it has none.
+     *
+     * @return the id
+     */
+    synchronized long ensureId() {
+        while (id == 0) {
+            id = ThreadLocalRandom.current().nextLong();
+        }
+        return id;
+    }
+
+    /**
+     * Gets an immutable snapshot of this album, giving the album an id if it has none.
+     * The previous snapshot is returned until the album or one of its photos changes,
+     * which the album's photos report to it. Otherwise the photos are compared with the
+     * previous snapshot, and a new snapshot is built if one of them is different, sharing
+     * the states of the unchanged photos.
+     *
+     * @return the snapshot
+     */
+    public synchronized AlbumSnapshot snapshot() {
+        long version = photos.version();
+        AlbumSnapshot current = snapshot;
+        if (current != null && (loader != null || version == snapshotVersion)) {
+            return current;
+        }
+        long albumId = ensureId();
+        if (loader != null) {
+            current = new AlbumSnapshot(name, albumId, null, deferredCount, deferredEarliest,
+                                        deferredLatest, deferredBytes, null, loader);
+        } else {
+            PhotoState[] previous = current == null ? null : current.states();
+            PhotoState[] states = photos.freeze(previous);
+            if (states != previous) {
+                current = new AlbumSnapshot(name, albumId, null, photos.size(), photos.earliest(),
+                                            photos.latest(), photos.totalBytes(), states, null);
+            }
+        }
+        snapshot = current;
+        snapshotVersion = version;
+        return current;
+    }
+
+    /**
+     * Gets a number that grows whenever this album is renamed, gains or loses a photo, or
+     * one of its photos changes. Loading the album's photos doesn't change it.
+     *
+     * @return the version
+     */
+    public synchronized long getVersion() {
+        return photos.version() - versionBase + renames;
+    }
+
+    /**
+     * Sets the index this album reports photo additions and removals to.
+     *
+     * @param index the index, or null to stop reporting
+     */
+    void setIndex(PhotoIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Sets the registry holding the single instance of each of the owner's photos.
+     * Loaded photos are released from the previous registry and acquired from the new one,
+     * taking the new registry's instance where it already has a photo with the same path.
+     * An album that isn't loaded is recorded as such in the registry until it is loaded.
+     * A loaded album detached from its registry stops hearing about changes to its photos,
+     * since photos it shares with the owner's other albums would otherwise keep it reachable.
+     *
+     * @param registry the registry, or null to stop reporting
+     */
+    synchronized void setRegistry(PhotoRegistry registry) {
+        if (loader != null) {
+            if (this.registry != null) {
+                this.registry.removeUnloaded(this);
+            }
+            if (registry != null) {
+                registry.addUnloaded(this);
+            }
+        } else {
+            if (this.registry != null) {
+                photos.forEach(this.registry::release);
+            }
+            if (registry == null) {
+                photos.detach();
+            } else {
+                photos.attach();
+                for (int i = 0; i < photos.size(); i++) {
+                    Photo photo = photos.get(i);
+                    Photo shared = registry.acquire(photo);
+                    if (shared != photo) {
+                        photos.replace(shared);
+                        snapshot = null;
+                    }
+                }
+            }
+        }
+        this.registry = registry;
     }
 
     /**
@@ -38,20 +276,64 @@ public class Album implements Serializable {
 
     /**
      * Sets the name of the album.
+     * An album belonging to a user should be renamed with {@code User.renameAlbum},
+     * which also updates the user's index of albums by name.
      *
      * @param name the new album name
      */
     public void setName(String name) {
         this.name = name;
+        synchronized (this) {
+            renames++;
+        }
+        snapshot = null;
     }
 
     /**
      * Gets all photos in this album.
      *
-     * @return a list of photos
+     * @return a new list of the photos, which later changes to the album don't affect
      */
     public List<Photo> getPhotos() {
-        return new ArrayList<>(photos);
+        ensureLoaded();
+        return photos.toList();
+    }
+
+    /**
+     * Gets a read-only view of the photos in this album, without copying them.
+     * The view reflects later changes to the album, so the album must not be changed
+     * while the view is being iterated; use {@link #getPhotos()} for that.
+     * The same view is returned on every call.
+     *
+     * @return an unmodifiable list of the photos
+     */
+    public List<Photo> getPhotoView() {
+        List<Photo> result = view;
+        if (result == null) {
+            result = new PhotoView();
+            view = result;
+        }
+        return result;
+    }
+
+    /**
+     * Performs an action for each photo in this album, in order, without copying them.
+     * The action must not change the album.
+     *
+     * @param action the action
+     */
+    public void forEachPhoto(Consumer<? super Photo> action) {
+        ensureLoaded();
+        photos.forEach(action);
+    }
+
+    /**
+     * Checks whether this album has no photos, without loading them.
+     *
+     * @return true if the album is empty
+     */
+    public boolean isEmpty() {
+        return getPhotoCount() == 0;
     }
 
     /**
@@ -59,8 +341,8 @@ public class Album implements Serializable {
      *
      * @return the photo count
      */
-    public int getPhotoCount() {
-        return photos.size();
+    public synchronized int getPhotoCount() {
+        return loader != null ? deferredCount : photos.size();
     }
 
     /**
@@ -71,13 +353,43 @@ public class Album implements Serializable {
      * @return true if the photo was added, false if it was a duplicate
      */
     public boolean addPhoto(Photo photo) {
+        ensureLoaded();
         if (photos.contains(photo)) {
             return false;
         }
+        photo = shared(photo);
         photos.add(photo);
+        snapshot = null;
+        if (index != null) {
+            index.photoAdded(photo);
+        }
         return true;
     }
 
+    /**
+     * Adds several photos to this album in one pass.
+     * Photos already in the album, or repeated in the collection, are skipped.
+     *
+     * @param newPhotos the photos to add
+     * @return the number of photos added
+     */
+    public int addPhotos(Collection<Photo> newPhotos) {
+        ensureLoaded();
+        int added = 0;
+        for (Photo photo : newPhotos) {
+            if (!photos.contains(photo)) {
+                photo = shared(photo);
+                photos.add(photo);
+                snapshot = null;
+                added++;
+                if (index != null) {
+                    index.photoAdded(photo);
+                }
+            }
+        }
+        return added;
+    }
+
     /**
      * Removes a photo from this album.
      *
@@ -85,7 +397,29 @@ public class Album implements Serializable {
      * @return true if the photo was removed, false if it didn't exist
      */
     public boolean removePhoto(Photo photo) {
-        return photos.remove(photo);
+        ensureLoaded();
+        Photo removed = photos.remove(photo);
+        if (removed == null) {
+            return false;
+        }
+        snapshot = null;
+        if (registry != null) {
+            registry.release(removed);
+        }
+        if (index != null) {
+            index.photoRemoved(removed);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the instance of a photo this album should hold, acquiring it from the registry.
+     *
+     * @param photo the photo being added
+     * @return the registered photo with the same path, or the photo itself
+     */
+    private Photo shared(Photo photo) {
+        return registry == null ? photo : registry.acquire(photo);
     }
 
     /**
@@ -95,25 +429,30 @@ public class Album implements Serializable {
      * @return true if the photo is in the album, false otherwise
      */
     public boolean containsPhoto(Photo photo) {
+        ensureLoaded();
         return photos.contains(photo);
     }
 
+    /**
+     * Finds a photo in this album by its file path.
+     *
+     * @param filePath the file path of the photo
+     * @return the photo, or null if the album doesn't contain it
+     */
+    public Photo findPhoto(String filePath) {
+        ensureLoaded();
+        return photos.find(filePath);
+    }
+
     /**
      * Gets the earliest date among all photos in the album.
      *
      * @return the earliest date, or null if the album has no photos
      */
     public LocalDateTime getEarliestDate() {
-        if (photos.isEmpty()) {
-            return null;
-        }
-        LocalDateTime earliest = photos.get(0).getDate();
-        for (Photo photo : photos) {
-            if (photo.getDate().isBefore(earliest)) {
-                earliest = photo.getDate();
-            }
+        synchronized (this) {
+            return loader != null ? deferredEarliest : photos.earliest();
         }
-        return earliest;
     }
 
     /**
@@ -122,16 +461,18 @@ public class Album implements Serializable {
      * @return the latest date, or null if the album has no photos
      */
     public LocalDateTime getLatestDate() {
-        if (photos.isEmpty()) {
-            return null;
-        }
-        LocalDateTime latest = photos.get(0).getDate();
-        for (Photo photo : photos) {
-            if (photo.getDate().isAfter(latest)) {
-                latest = photo.getDate();
-            }
+        synchronized (this) {
+            return loader != null ? deferredLatest : photos.latest();
         }
-        return latest;
+    }
+
+    /**
+     * Gets the total size of the photo files in the album.
+     *
+     * @return the size in bytes; photos added without a known size count as 0
+     */
+    public synchronized long getTotalBytes() {
+        return loader != null ? deferredBytes : photos.totalBytes();
     }
 
     /**
@@ -142,9 +483,58 @@ public class Album implements Serializable {
      * @throws IndexOutOfBoundsException if the index is out of range
      */
     public Photo getPhotoAt(int index) {
+        ensureLoaded();
         return photos.get(index);
     }
 
+    /**
+     * A live, unmodifiable list of an album's photos.
+     */
+    private class PhotoView extends AbstractList<Photo> implements RandomAccess {
+        @Override
+        public Photo get(int index) {
+            return getPhotoAt(index);
+        }
+
+        @Override
+        public int size() {
+            return getPhotoCount();
+        }
+    }
+
+    /**
+     * Writes this album in its original serialized form, with the photos as a list.
+     *
+     * @param out the stream
+     * @throws IOException if there's an error writing
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", name);
+        fields.put("photos", getPhotos());
+        out.writeFields();
+    }
+
+    /**
+     * Reads an album written with its photos as a list.
+     *
+     * @param in the stream
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a field's class cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        name = (String) fields.get("name", null);
+        photos = new PhotoSequence();
+        List<Photo> list = (List<Photo>) fields.get("photos", null);
+        if (list != null) {
+            for (Photo photo : list) {
+                photos.add(photo);
+            }
+        }
+    }
+
     /**
      * Returns a string representation of this album.
      *
@@ -152,6 +542,6 @@ public class Album implements Serializable {
      */
     @Override
     public String toString() {
-        return name + " (" + photos.size() + " photos)";
+        return name + " (" + getPhotoCount() + " photos)";
     }
 }
@@ -0,0 +1,38 @@
+package photos;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Loads the photos of an album whose contents were not read along with its header.
+ * Used by {@link Album#deferred} so that listing albums doesn't require reading every photo.
+ *
+ * @author Group 60
+ */
+public interface AlbumLoader {
+
+    /**
+     * Loads the photos of the album, in album order.
+     *
+     * @return the photos
+     * @throws IOException if there's an error reading the photos
+     */
+    List<Photo> loadPhotos() throws IOException;
+
+    /**
+     * Finds one of the album's stored photos by file path. Loaders that can read a single
+     * photo should override this; the default reads them all.
+     *
+     * @param filePath the file path
+     * @return the stored photo, or null if the album doesn't contain it
+     * @throws IOException if there's an error reading the photos
+     */
+    default Photo findPhoto(String filePath) throws IOException {
+        for (Photo photo : loadPhotos()) {
+            if (photo.getFilePath().equals(filePath)) {
+                return photo;
+            }
+        }
+        return null;
+    }
+}
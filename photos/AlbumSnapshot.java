@@ -0,0 +1,156 @@
+package photos;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable copy of an album's name, statistics and photos at one moment.
+ * Snapshots are built by {@link Album#snapshot()}, which returns the same snapshot until
+ * the album or one of its photos changes; a new snapshot shares the states of the photos
+ * that didn't change with the previous one.
+ * The photos of an album that hasn't been loaded aren't copied: the snapshot keeps the
+ * album's loader instead. A smart album's snapshot has its query and no photos, since its
+ * photos are found by evaluating the query.
+ *
+ * @author Group 60
+ */
+public final class AlbumSnapshot {
+    private final String name;
+    private final long id;
+    private final String query;
+    private final int photoCount;
+    private final LocalDateTime earliest;
+    private final LocalDateTime latest;
+    private final long totalBytes;
+    private final PhotoState[] photos;
+    private final AlbumLoader loader;
+
+    AlbumSnapshot(String name, long id, String query, int photoCount, LocalDateTime earliest,
+                  LocalDateTime latest, long totalBytes, PhotoState[] photos, AlbumLoader loader) {
+        this.name = name;
+        this.id = id;
+        this.query = query;
+        this.photoCount = photoCount;
+        this.earliest = earliest;
+        this.latest = latest;
+        this.totalBytes = totalBytes;
+        this.photos = photos;
+        this.loader = loader;
+    }
+
+    /**
+     * Gets the name of the album.
+     *
+     * @return the album name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the id that identifies the album in its owner's saved snapshot.
+     *
+     * @return the id, which is never 0
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the query of a smart album.
+     *
+     * @return the query text, or null if the album isn't a smart album
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Gets the number of photos in the album.
+     *
+     * @return the photo count, or -1 for a smart album that was never evaluated
+     */
+    public int getPhotoCount() {
+        return photoCount;
+    }
+
+    /**
+     * Gets the earliest date among the album's photos.
+     *
+     * @return the earliest date, or null if the album has no photos
+     */
+    public LocalDateTime getEarliestDate() {
+        return earliest;
+    }
+
+    /**
+     * Gets the latest date among the album's photos.
+     *
+     * @return the latest date, or null if the album has no photos
+     */
+    public LocalDateTime getLatestDate() {
+        return latest;
+    }
+
+    /**
+     * Gets the total size of the album's photo files.
+     *
+     * @return the size in bytes
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Checks whether this snapshot holds the album's photos.
+     *
+     * @return true if the photos are in the snapshot, false for a smart album or an album
+     *         whose photos were never loaded
+     */
+    public boolean hasPhotos() {
+        return photos != null;
+    }
+
+    /**
+     * Gets the photos of the album, in album order.
+     *
+     * @return an unmodifiable list of the photo states
+     * @throws IllegalStateException if the snapshot doesn't hold the photos
+     */
+    public List<PhotoState> getPhotos() {
+        if (photos == null) {
+            throw new IllegalStateException("Snapshot of album '" + name + "' has no photos");
+        }
+        return Collections.unmodifiableList(Arrays.asList(photos));
+    }
+
+    /**
+     * Gets the loader for the photos of an album that hadn't been loaded.
+     *
+     * @return the loader, or null if the snapshot holds the photos or is of a smart album
+     */
+    public AlbumLoader getLoader() {
+        return loader;
+    }
+
+    /**
+     * Gets the photo states of this snapshot without copying them.
+     *
+     * @return the states, or null
+     */
+    PhotoState[] states() {
+        return photos;
+    }
+
+    /**
+     * Returns a string representation of this snapshot.
+     *
+     * @return a string containing the album name and photo count
+     */
+    @Override
+    public String toString() {
+        return name + " (" + photoCount + " photos)";
+    }
+}
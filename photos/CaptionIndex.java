@@ -0,0 +1,165 @@
+package photos;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from caption words to the ordinals of the photos whose captions contain them.
+ * Captions are split into lowercase words of letters and digits. Words are kept sorted,
+ * so the words starting with a prefix form one contiguous range of the index.
+ * A phrase is looked up by intersecting the postings of its words and then checking
+ * the word order against each candidate's caption.
+ *
+ * @author Group 60
+ */
+class CaptionIndex {
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+
+    /**
+     * Splits text into lowercase words of letters and digits.
+     *
+     * @param text the text
+     * @return the words, in order
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            int start = i;
+            while (i < text.length() && Character.isLetterOrDigit(text.codePointAt(i))) {
+                i += Character.charCount(text.codePointAt(i));
+            }
+            if (i > start) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(text.codePointAt(i));
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Checks whether a caption contains a phrase.
+     *
+     * @param caption the caption
+     * @param phrase the words of the phrase, as returned by {@link #tokenize}
+     * @param prefix whether the last word of the phrase may be the start of a longer word
+     * @return true if the caption contains the words of the phrase consecutively
+     */
+    static boolean contains(String caption, List<String> phrase, boolean prefix) {
+        List<String> words = tokenize(caption);
+        int last = phrase.size() - 1;
+        for (int start = 0; start + last < words.size(); start++) {
+            boolean found = true;
+            for (int i = 0; i <= last && found; i++) {
+                String word = words.get(start + i);
+                found = i == last && prefix ? word.startsWith(phrase.get(i)) : word.equals(phrase.get(i));
+            }
+            if (found) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indexes a photo's caption.
+     *
+     * @param caption the caption
+     * @param ordinal the photo's ordinal
+     */
+    void add(String caption, int ordinal) {
+        for (String word : new LinkedHashSet<>(tokenize(caption))) {
+            postings.computeIfAbsent(word, w -> new PostingList()).add(ordinal);
+        }
+    }
+
+    /**
+     * Removes a photo's caption from the index.
+     *
+     * @param caption the caption the photo was indexed with
+     * @param ordinal the photo's ordinal
+     */
+    void remove(String caption, int ordinal) {
+        for (String word : new LinkedHashSet<>(tokenize(caption))) {
+            PostingList list = postings.get(word);
+            if (list != null && list.remove(ordinal) && list.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+    }
+
+    /**
+     * Estimates the number of photos whose captions contain a phrase, as the smallest
+     * number of photos containing any one of its words.
+     *
+     * @param phrase the words of the phrase
+     * @param prefix whether the last word may be the start of a longer word
+     * @return the estimated photo count
+     */
+    int estimate(List<String> phrase, boolean prefix) {
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < phrase.size(); i++) {
+            long count = 0;
+            for (PostingList list : lists(phrase.get(i), prefix && i == phrase.size() - 1)) {
+                count += list.size();
+            }
+            estimate = Math.min(estimate, count);
+        }
+        return (int) Math.min(estimate, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the photos whose captions contain every word of a phrase, in any order.
+     * The caller checks the word order when the phrase has more than one word.
+     *
+     * @param phrase the words of the phrase
+     * @param prefix whether the last word may be the start of a longer word
+     * @return the ordinals of the candidate photos
+     */
+    BitSet match(List<String> phrase, boolean prefix) {
+        List<BitSet> sets = new ArrayList<>(phrase.size());
+        for (int i = 0; i < phrase.size(); i++) {
+            BitSet set = new BitSet();
+            for (PostingList list : lists(phrase.get(i), prefix && i == phrase.size() - 1)) {
+                list.orInto(set);
+            }
+            if (set.isEmpty()) {
+                return set;
+            }
+            sets.add(set);
+        }
+        if (sets.isEmpty()) {
+            return new BitSet();
+        }
+        sets.sort(Comparator.comparingInt(BitSet::cardinality));
+
+        BitSet result = sets.get(0);
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result.and(sets.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the posting lists of a word, or of every word starting with a prefix.
+     *
+     * @param word the word or prefix
+     * @param prefix whether to match words starting with the given word
+     * @return the posting lists
+     */
+    private Iterable<PostingList> lists(String word, boolean prefix) {
+        if (!prefix) {
+            PostingList list = postings.get(word);
+            return list == null ? List.of() : List.of(list);
+        }
+        NavigableMap<String, PostingList> range = postings.subMap(word, true, word + Character.MAX_VALUE, false);
+        return range.values();
+    }
+}
@@ -0,0 +1,249 @@
+package photos;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Index of photo ordinals sorted by date.
+ * Dates are stored as nanoseconds since the epoch (UTC) in a sorted primitive array
+ * alongside the ordinals, so a date range is found with two binary searches and its
+ * ordinals come back already in date order. Photos with the same date are ordered by
+ * ordinal, which gives every entry a unique position.
+ * Dates outside the years 1678 to 2262 share the key of the nearest representable date.
+ *
+ * @author Group 60
+ */
+class DateIndex {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final long MAX_SECONDS = Long.MAX_VALUE / NANOS_PER_SECOND - 1;
+    private static final long MIN_SECONDS = Long.MIN_VALUE / NANOS_PER_SECOND + 1;
+
+    private long[] keys = new long[64];
+    private int[] ordinals = new int[64];
+    private int size;
+
+    /**
+     * Converts a date to its sort key.
+     *
+     * @param date the date
+     * @return nanoseconds since the epoch, saturated at the limits of a long
+     */
+    static long keyOf(LocalDateTime date) {
+        long seconds = date.toEpochSecond(ZoneOffset.UTC);
+        if (seconds > MAX_SECONDS) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds < MIN_SECONDS) {
+            return Long.MIN_VALUE;
+        }
+        return seconds * NANOS_PER_SECOND + date.getNano();
+    }
+
+    /**
+     * Adds a photo.
+     *
+     * @param date the photo's date
+     * @param ordinal the photo's ordinal
+     */
+    void add(LocalDateTime date, int ordinal) {
+        long key = keyOf(date);
+        int position = -search(key, ordinal) - 1;
+        if (position < 0) {
+            return;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        System.arraycopy(ordinals, position, ordinals, position + 1, size - position);
+        keys[position] = key;
+        ordinals[position] = ordinal;
+        size++;
+    }
+
+    /**
+     * Removes a photo.
+     *
+     * @param date the date the photo was added with
+     * @param ordinal the photo's ordinal
+     */
+    void remove(LocalDateTime date, int ordinal) {
+        int position = search(keyOf(date), ordinal);
+        if (position < 0) {
+            return;
+        }
+        System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+        System.arraycopy(ordinals, position + 1, ordinals, position, size - position - 1);
+        size--;
+    }
+
+    /**
+     * Replaces the contents of the index, sorting the entries once instead of
+     * inserting them one at a time.
+     *
+     * @param newKeys the date keys, as returned by {@link #keyOf}
+     * @param newOrdinals the ordinals, parallel to the keys
+     * @param count the number of entries
+     */
+    void rebuild(long[] newKeys, int[] newOrdinals, int count) {
+        keys = Arrays.copyOf(newKeys, Math.max(count, 64));
+        ordinals = Arrays.copyOf(newOrdinals, Math.max(count, 64));
+        size = count;
+        long[] keyBuffer = new long[count];
+        int[] ordinalBuffer = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count - width; low += 2 * width) {
+                merge(low, low + width, Math.min(low + 2 * width, count), keyBuffer, ordinalBuffer);
+            }
+        }
+    }
+
+    /**
+     * Gets the ordinals of the photos dated within a range, in date order.
+     *
+     * @param start the start date (inclusive)
+     * @param end the end date (inclusive)
+     * @return the ordinals
+     */
+    int[] range(LocalDateTime start, LocalDateTime end) {
+        int from = lowerBound(keyOf(start));
+        int to = upperBound(keyOf(end));
+        return from < to ? Arrays.copyOfRange(ordinals, from, to) : new int[0];
+    }
+
+    /**
+     * Gets the ordinals of the photos dated within a range as a bitmap.
+     *
+     * @param start the start date (inclusive)
+     * @param end the end date (inclusive)
+     * @return the ordinals
+     */
+    BitSet rangeBits(LocalDateTime start, LocalDateTime end) {
+        BitSet result = new BitSet();
+        int to = upperBound(keyOf(end));
+        for (int i = lowerBound(keyOf(start)); i < to; i++) {
+            result.set(ordinals[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the photos dated within a range.
+     *
+     * @param start the start date (inclusive)
+     * @param end the end date (inclusive)
+     * @return the photo count
+     */
+    int count(LocalDateTime start, LocalDateTime end) {
+        return Math.max(0, upperBound(keyOf(end)) - lowerBound(keyOf(start)));
+    }
+
+    /**
+     * Gets every ordinal in date order.
+     *
+     * @return the ordinals
+     */
+    int[] ordered() {
+        return Arrays.copyOf(ordinals, size);
+    }
+
+    /**
+     * Gets the number of indexed photos.
+     *
+     * @return the entry count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the ordinal at a position in date order.
+     *
+     * @param position the position, from 0 for the oldest photo
+     * @return the ordinal
+     */
+    int ordinalAt(int position) {
+        return ordinals[position];
+    }
+
+    /**
+     * Finds an entry by key and ordinal.
+     *
+     * @return the entry's position, or (-(insertion point) - 1) if absent
+     */
+    private int search(long key, int ordinal) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = keys[mid] != key ? Long.compare(keys[mid], key) : Integer.compare(ordinals[mid], ordinal);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Finds the first entry whose key is at least the given key.
+     */
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the first entry whose key is greater than the given key.
+     */
+    private int upperBound(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Merges the sorted runs [low, mid) and [mid, high) in place.
+     */
+    private void merge(int low, int mid, int high, long[] keyBuffer, int[] ordinalBuffer) {
+        System.arraycopy(keys, low, keyBuffer, low, high - low);
+        System.arraycopy(ordinals, low, ordinalBuffer, low, high - low);
+        int left = low;
+        int right = mid;
+        for (int i = low; i < high; i++) {
+            boolean takeLeft = right >= high || (left < mid
+                && (keyBuffer[left] < keyBuffer[right]
+                    || (keyBuffer[left] == keyBuffer[right] && ordinalBuffer[left] < ordinalBuffer[right])));
+            if (takeLeft) {
+                keys[i] = keyBuffer[left];
+                ordinals[i] = ordinalBuffer[left++];
+            } else {
+                keys[i] = keyBuffer[right];
+                ordinals[i] = ordinalBuffer[right++];
+            }
+        }
+    }
+}
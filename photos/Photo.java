@@ -1,24 +1,55 @@
 package photos;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * Represents a photo in the application.
- * A photo has a file path, date taken, caption, and list of tags.
+ * A photo has a file path, date taken, file size, caption, and list of tags.
  * The date is derived from the file's last modification time.
+ * Tags are stored as an array of canonical tags (see {@link Tag#intern()}) sorted by type and
+ * then value, so checking for a tag is a binary search and tags used on many photos are
+ * stored once. A photo's tags are listed in that order.
+ * {@link #freeze()} returns an immutable {@link PhotoState} of the photo, which is kept
+ * until the photo next changes, for readers that must not see later edits.
+ * A photo knows the photo sequences holding it and tells them when it changes, so an
+ * album can tell whether any of its own photos changed without checking each of them,
+ * and keeps its date range without rescanning its photos.
  * 
  * @author Group 60
  */
 public class Photo implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final Tag[] NO_TAGS = new Tag[0];
+    private static final PhotoSequence[] NO_OWNERS = new PhotoSequence[0];
+
+    /** Serialized form, with tags stored as a list as they were originally. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("filePath", String.class),
+        new ObjectStreamField("date", LocalDateTime.class),
+        new ObjectStreamField("caption", String.class),
+        new ObjectStreamField("tags", List.class),
+        new ObjectStreamField("fileSize", long.class)
+    };
     
     private String filePath;
     private LocalDateTime date;
+    private long fileSize;
     private String caption;
-    private List<Tag> tags;
+    private transient Tag[] tags;
+
+    private transient PhotoIndex index;
+    private transient volatile PhotoSequence[] owners = NO_OWNERS;
+    private transient volatile PhotoState state;
 
     /**
      * Constructs a Photo with the specified file path and date.
@@ -27,28 +58,97 @@ public class Photo implements Serializable {
      * @param date the date/time the photo was taken (from file modification time)
      */
     public Photo(String filePath, LocalDateTime date) {
+        this(filePath, date, 0);
+    }
+
+    /**
+     * Constructs a Photo with the specified file path, date and file size.
+     *
+     * @param filePath the absolute path to the photo file
+     * @param date the date/time the photo was taken (from file modification time)
+     * @param fileSize the size of the photo file in bytes, or 0 if unknown
+     */
+    public Photo(String filePath, LocalDateTime date, long fileSize) {
         this.filePath = filePath;
         this.date = date;
+        this.fileSize = fileSize;
         this.caption = "";
-        this.tags = new ArrayList<>();
+        this.tags = NO_TAGS;
     }
 
     /**
-     * Gets the file path of the photo.
+     * Gets the size of the photo file, as recorded when the photo was added.
      *
-     * @return the file path
+     * @return the size in bytes, or 0 if unknown
      */
-    public String getFilePath() {
-        return filePath;
+    public long getFileSize() {
+        return fileSize;
     }
 
     /**
-     * Sets the file path of the photo.
+     * Gets an immutable copy of this photo's current path, date, size, caption and tags.
+     * The same state is returned until the photo is changed.
      *
-     * @param filePath the file path
+     * @return the state
      */
-    public void setFilePath(String filePath) {
-        this.filePath = filePath;
+    public PhotoState freeze() {
+        PhotoState current = state;
+        if (current == null) {
+            current = new PhotoState(filePath, date, fileSize, caption, tags);
+            state = current;
+        }
+        return current;
+    }
+
+    /**
+     * Drops the frozen state after a change and tells the sequences holding this photo.
+     */
+    private void changed() {
+        state = null;
+        for (PhotoSequence owner : owners) {
+            owner.photoChanged();
+        }
+    }
+
+    /**
+     * Records a sequence that holds this photo.
+     *
+     * @param owner the sequence
+     */
+    synchronized void addOwner(PhotoSequence owner) {
+        PhotoSequence[] current = owners;
+        PhotoSequence[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = owner;
+        owners = grown;
+    }
+
+    /**
+     * Forgets a sequence that no longer holds this photo.
+     *
+     * @param owner the sequence
+     */
+    synchronized void removeOwner(PhotoSequence owner) {
+        PhotoSequence[] current = owners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == owner) {
+                PhotoSequence[] shrunk = current.length == 1 ? NO_OWNERS : new PhotoSequence[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                owners = shrunk;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the file path of the photo.
+     * The path identifies the photo and never changes, since albums and the photo registry
+     * find photos by it.
+     *
+     * @return the file path
+     */
+    public String getFilePath() {
+        return filePath;
     }
 
     /**
@@ -66,7 +166,15 @@ public class Photo implements Serializable {
      * @param date the date/time
      */
     public void setDate(LocalDateTime date) {
+        LocalDateTime previous = this.date;
         this.date = date;
+        for (PhotoSequence owner : owners) {
+            owner.dateChanged(previous, date);
+        }
+        changed();
+        if (index != null) {
+            index.dateChanged(this, previous);
+        }
     }
 
     /**
@@ -84,16 +192,44 @@ public class Photo implements Serializable {
      * @param caption the caption
      */
     public void setCaption(String caption) {
+        String previous = this.caption;
         this.caption = caption == null ? "" : caption;
+        changed();
+        if (index != null) {
+            index.captionChanged(this, previous);
+        }
     }
 
     /**
      * Gets all tags for this photo.
+     * The tags are not copied: the list reads the photo's current tag array, which is
+     * replaced rather than changed when a tag is added or removed, so later changes to
+     * the photo don't affect it.
      *
-     * @return a list of tags
+     * @return an unmodifiable list of tags
      */
     public List<Tag> getTags() {
-        return new ArrayList<>(tags);
+        return new TagList(tags);
+    }
+
+    /**
+     * Gets the number of tags on this photo.
+     *
+     * @return the tag count
+     */
+    public int getTagCount() {
+        return tags.length;
+    }
+
+    /**
+     * Gets a tag by position, for iterating over the tags without copying them.
+     *
+     * @param position the position, from 0 to {@link #getTagCount()} - 1
+     * @return the tag
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public Tag getTag(int position) {
+        return tags[position];
     }
 
     /**
@@ -104,10 +240,22 @@ public class Photo implements Serializable {
      * @return true if the tag was added, false if it was a duplicate
      */
     public boolean addTag(Tag tag) {
-        if (tags.contains(tag)) {
+        tag = tag.intern();
+        Tag[] current = tags;
+        int position = Arrays.binarySearch(current, tag, Tag.BY_NAME);
+        if (position >= 0) {
             return false;
         }
-        tags.add(tag);
+        position = -position - 1;
+        Tag[] grown = new Tag[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, position);
+        grown[position] = tag;
+        System.arraycopy(current, position, grown, position + 1, current.length - position);
+        tags = grown;
+        changed();
+        if (index != null) {
+            index.tagAdded(this, tag);
+        }
         return true;
     }
 
@@ -118,7 +266,21 @@ public class Photo implements Serializable {
      * @return true if the tag was removed, false if it didn't exist
      */
     public boolean removeTag(Tag tag) {
-        return tags.remove(tag);
+        Tag[] current = tags;
+        int position = indexOf(current, tag);
+        if (position < 0) {
+            return false;
+        }
+        Tag removed = current[position];
+        Tag[] shrunk = current.length == 1 ? NO_TAGS : new Tag[current.length - 1];
+        System.arraycopy(current, 0, shrunk, 0, position);
+        System.arraycopy(current, position + 1, shrunk, position, current.length - position - 1);
+        tags = shrunk;
+        changed();
+        if (index != null) {
+            index.tagRemoved(this, removed);
+        }
+        return true;
     }
 
     /**
@@ -127,7 +289,9 @@ public class Photo implements Serializable {
      * @param type the tag type to remove
      */
     public void removeTagsByType(String type) {
-        tags.removeIf(tag -> tag.getType().equals(type));
+        for (Tag tag : getTagsByType(type)) {
+            removeTag(tag);
+        }
     }
 
     /**
@@ -153,7 +317,27 @@ public class Photo implements Serializable {
      * @return true if the tag exists, false otherwise
      */
     public boolean hasTag(Tag tag) {
-        return tags.contains(tag);
+        return indexOf(tags, tag) >= 0;
+    }
+
+    /**
+     * Finds a tag in a sorted tag array, without creating a canonical instance for it.
+     *
+     * @param tags the tags, sorted by type and value
+     * @param tag the tag to find
+     * @return the position of the tag, or -1 if it isn't there
+     */
+    private static int indexOf(Tag[] tags, Tag tag) {
+        return Math.max(-1, Arrays.binarySearch(tags, tag, Tag.BY_NAME));
+    }
+
+    /**
+     * Sets the index this photo reports tag and date changes to.
+     *
+     * @param index the index, or null to stop reporting
+     */
+    void setIndex(PhotoIndex index) {
+        this.index = index;
     }
 
     /**
@@ -194,6 +378,67 @@ public class Photo implements Serializable {
         return filePath.substring(lastSlash + 1);
     }
 
+    /**
+     * Writes this photo in its original serialized form, with the tags as a list.
+     *
+     * @param out the stream
+     * @throws IOException if there's an error writing
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("filePath", filePath);
+        fields.put("date", date);
+        fields.put("caption", caption);
+        fields.put("tags", new ArrayList<>(getTags()));
+        fields.put("fileSize", fileSize);
+        out.writeFields();
+    }
+
+    /**
+     * Reads a photo written with its tags as a list, converting them to canonical tags.
+     *
+     * @param in the stream
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a field's class cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        filePath = (String) fields.get("filePath", null);
+        date = (LocalDateTime) fields.get("date", null);
+        caption = (String) fields.get("caption", "");
+        fileSize = fields.get("fileSize", 0L);
+        tags = NO_TAGS;
+        owners = NO_OWNERS;
+        List<Tag> list = (List<Tag>) fields.get("tags", null);
+        if (list != null) {
+            for (Tag tag : list) {
+                addTag(tag);
+            }
+        }
+    }
+
+    /**
+     * An unmodifiable list view of a tag array that is never changed.
+     */
+    static final class TagList extends AbstractList<Tag> implements RandomAccess {
+        private final Tag[] tags;
+
+        TagList(Tag[] tags) {
+            this.tags = tags;
+        }
+
+        @Override
+        public Tag get(int index) {
+            return tags[index];
+        }
+
+        @Override
+        public int size() {
+            return tags.length;
+        }
+    }
+
     /**
      * Returns a string representation of this photo.
      *
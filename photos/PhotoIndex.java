@@ -0,0 +1,617 @@
+package photos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Search index over every photo in a user's albums.
+ * Each distinct photo gets a small integer ordinal; the tag index maps tags to
+ * the ordinals of the photos carrying them, the caption index maps caption words
+ * to the ordinals of the photos whose captions contain them, and the date index keeps
+ * the ordinals sorted by date. The tag facets count the photos carrying each tag
+ * for listing and completing tag types and values. Albums and photos attached to the index report their changes to it,
+ * so it stays current without being rebuilt. Each change also advances a modification
+ * counter for the part of the index it touched, which the query cache uses to tell
+ * whether a cached result is still current.
+ * A photo stays indexed while at least one attached album contains it.
+ * Smart albums attached to the index don't contribute photos; instead the index keeps
+ * their membership current by re-checking each photo that changes against their queries.
+ *
+ * @author Group 60
+ */
+public class PhotoIndex {
+    private static final int BULK_LOAD_THRESHOLD = 256;
+
+    private final Map<Photo, Integer> ordinals = new IdentityHashMap<>();
+    private Photo[] photos = new Photo[64];
+    private int[] albumCounts = new int[64];
+    private int[] freeOrdinals = new int[16];
+    private int freeCount;
+    private int ordinalLimit;
+    private final BitSet live = new BitSet();
+    private final TagIndex tagIndex = new TagIndex();
+    private final DateIndex dateIndex = new DateIndex();
+    private final CaptionIndex captionIndex = new CaptionIndex();
+    private final TagFacets facets = new TagFacets();
+    private final QueryCache queryCache = new QueryCache();
+    private final List<SmartAlbum> smartAlbums = new ArrayList<>();
+    /** Modification counters for which photos are indexed, then for their tags, dates and captions. */
+    private final long[] versions = new long[4];
+    private boolean deferDateIndex;
+    private boolean dateIndexStale;
+
+    /**
+     * Attaches an album and indexes its photos.
+     * A smart album is instead evaluated against the photos indexed so far, and kept
+     * current from then on.
+     *
+     * @param album the album
+     */
+    public synchronized void addAlbum(Album album) {
+        if (album instanceof SmartAlbum) {
+            SmartAlbum smart = (SmartAlbum) album;
+            if (!smartAlbums.contains(smart)) {
+                smartAlbums.add(smart);
+                smart.evaluated(smart.getPhotoQuery().search(this));
+            }
+            return;
+        }
+        int count = album.getPhotoCount();
+        deferDateIndex = count > BULK_LOAD_THRESHOLD && count > ordinals.size() / 4;
+        album.forEachPhoto(this::photoAdded);
+        if (deferDateIndex) {
+            deferDateIndex = false;
+            rebuildDateIndex();
+        }
+        album.setIndex(this);
+    }
+
+    /**
+     * Runs a batch of changes to attached albums while holding the index, so searches see
+     * all of the batch or none of it. When many photos are added or removed, the date index
+     * is rebuilt once at the end instead of being updated for each photo; a batch that
+     * doesn't change which photos are indexed or their dates leaves it alone.
+     *
+     * @param photoCount the number of photos the batch adds or removes
+     * @param changes the changes
+     */
+    public synchronized void runBatch(int photoCount, Runnable changes) {
+        if (deferDateIndex || photoCount <= BULK_LOAD_THRESHOLD) {
+            changes.run();
+            return;
+        }
+        deferDateIndex = true;
+        try {
+            changes.run();
+        } finally {
+            deferDateIndex = false;
+            if (dateIndexStale) {
+                rebuildDateIndex();
+            }
+        }
+    }
+
+    /**
+     * Detaches an album, dropping photos that no other attached album contains.
+     *
+     * @param album the album
+     */
+    public synchronized void removeAlbum(Album album) {
+        if (album instanceof SmartAlbum) {
+            if (smartAlbums.remove(album)) {
+                ((SmartAlbum) album).detach();
+            }
+            return;
+        }
+        album.setIndex(null);
+        album.forEachPhoto(this::photoRemoved);
+    }
+
+    /**
+     * Gets the number of distinct indexed photos.
+     *
+     * @return the photo count
+     */
+    public synchronized int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * Gets every indexed photo, in ordinal order.
+     *
+     * @return a list of photos
+     */
+    public synchronized List<Photo> getPhotos() {
+        List<Photo> result = new ArrayList<>(ordinals.size());
+        for (int o = 0; o < ordinalLimit; o++) {
+            if (photos[o] != null) {
+                result.add(photos[o]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the tag types and values in use across the indexed photos.
+     * The facets are kept up to date as photos and tags change.
+     *
+     * @return the tag facets
+     */
+    public TagFacets getFacets() {
+        return facets;
+    }
+
+    /**
+     * Gets the cache of recent search results over this index.
+     *
+     * @return the query cache
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Runs a search through the query cache.
+     *
+     * @param key the normalized search
+     * @param dependencies the {@link QueryCache} flags for the parts of the index the search reads
+     * @param lookup evaluates the search against this index
+     * @return a new list of the matching photos
+     */
+    synchronized List<Photo> cached(String key, int dependencies, Supplier<List<Photo>> lookup) {
+        List<Photo> result = queryCache.get(key, versions);
+        if (result == null) {
+            result = lookup.get();
+            queryCache.put(key, dependencies, versions, result);
+        }
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * Finds the photos carrying a tag.
+     *
+     * @param tag the tag
+     * @return a list of matching photos, in ordinal order
+     */
+    public synchronized List<Photo> withTag(Tag tag) {
+        return photosOf(tagIndex.matchAll(List.of(tag)));
+    }
+
+    /**
+     * Finds the photos carrying every one of the given tags.
+     *
+     * @param tags the tags
+     * @return a list of matching photos, in ordinal order
+     */
+    public synchronized List<Photo> withAllTags(Collection<Tag> tags) {
+        return photosOf(tagIndex.matchAll(tags));
+    }
+
+    /**
+     * Finds the photos carrying at least one of the given tags.
+     *
+     * @param tags the tags
+     * @return a list of matching photos, in ordinal order
+     */
+    public synchronized List<Photo> withAnyTag(Collection<Tag> tags) {
+        return photosOf(tagIndex.matchAny(tags));
+    }
+
+    /**
+     * Finds the photos dated within a range.
+     *
+     * @param start the start date (inclusive)
+     * @param end the end date (inclusive)
+     * @return a list of matching photos, in date order
+     */
+    public synchronized List<Photo> inDateRange(LocalDateTime start, LocalDateTime end) {
+        return photosOf(dateIndex.range(start, end));
+    }
+
+    /**
+     * Counts the photos dated within a range.
+     *
+     * @param start the start date (inclusive)
+     * @param end the end date (inclusive)
+     * @return the photo count
+     */
+    public synchronized int countInDateRange(LocalDateTime start, LocalDateTime end) {
+        return dateIndex.count(start, end);
+    }
+
+    /**
+     * Finds the photos whose captions contain the words of some text, in order.
+     * Matching ignores case and punctuation, and the last word may be the start
+     * of a longer word, so the text can be matched while it is still being typed.
+     *
+     * @param text the text to find
+     * @return a list of matching photos, in ordinal order, or an empty list if the text has no words
+     */
+    public synchronized List<Photo> withCaption(String text) {
+        return photosOf(captionBits(CaptionIndex.tokenize(text), true));
+    }
+
+    /**
+     * Estimates the number of photos whose captions contain the words of some text,
+     * without checking the word order.
+     *
+     * @param text the text to find
+     * @return the estimated photo count
+     */
+    public synchronized int estimateWithCaption(String text) {
+        List<String> phrase = CaptionIndex.tokenize(text);
+        return phrase.isEmpty() ? 0 : captionIndex.estimate(phrase, true);
+    }
+
+    /**
+     * Gets every indexed photo, in date order.
+     *
+     * @return a list of photos
+     */
+    public synchronized List<Photo> getPhotosByDate() {
+        return photosOf(dateIndex.ordered());
+    }
+
+    /**
+     * Finds the newest or oldest indexed photos that meet a condition.
+     * The date index is walked from its newest or oldest end, and the walk stops as
+     * soon as enough photos are found, so the matches are never sorted.
+     *
+     * @param predicate the condition a photo must meet
+     * @param limit the maximum number of photos to return
+     * @param newest true to return the newest photos first, false for the oldest first
+     * @return the photos, in that date order
+     */
+    public synchronized List<Photo> firstByDate(Predicate<Photo> predicate, int limit, boolean newest) {
+        return walkByDate(o -> predicate.test(photos[o]), limit, newest);
+    }
+
+    /**
+     * Gets the newest or oldest photos among a set of ordinals.
+     * Walking the date index from one end visits about limit * size / matches entries before
+     * it has found enough matches, so when that is more than the number of matches, the
+     * matches are instead passed through a heap holding the best limit photos seen so far.
+     * Both ways return photos in the date index's order.
+     *
+     * @param matches the ordinals to choose from
+     * @param limit the maximum number of photos to return
+     * @param newest true to return the newest photos first, false for the oldest first
+     * @return the photos, in that date order
+     */
+    synchronized List<Photo> firstByDate(BitSet matches, int limit, boolean newest) {
+        long count = matches.cardinality();
+        if ((long) limit * dateIndex.size() <= count * count) {
+            return walkByDate(matches::get, limit, newest);
+        }
+
+        Comparator<Integer> order = Comparator.comparingLong((Integer o) -> DateIndex.keyOf(photos[o].getDate()))
+            .thenComparingInt(o -> o);
+        if (newest) {
+            order = order.reversed();
+        }
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+        for (int o = matches.nextSetBit(0); o >= 0 && limit > 0; o = matches.nextSetBit(o + 1)) {
+            if (best.size() < limit) {
+                best.add(o);
+            } else if (order.compare(o, best.peek()) < 0) {
+                best.poll();
+                best.add(o);
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(best);
+        ranked.sort(order);
+        List<Photo> result = new ArrayList<>(ranked.size());
+        for (int o : ranked) {
+            result.add(photos[o]);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of indexed photos carrying a tag.
+     *
+     * @param tag the tag
+     * @return the photo count
+     */
+    public synchronized int countWithTag(Tag tag) {
+        return tagIndex.count(tag);
+    }
+
+    /**
+     * Gets the ordinals of the photos carrying a tag.
+     *
+     * @param tag the tag
+     * @return a new bitmap of ordinals
+     */
+    synchronized BitSet tagBits(Tag tag) {
+        return tagIndex.matchAll(List.of(tag));
+    }
+
+    /**
+     * Gets the ordinals of the photos dated within a range.
+     *
+     * @param start the start date (inclusive)
+     * @param end the end date (inclusive)
+     * @return a new bitmap of ordinals
+     */
+    synchronized BitSet dateBits(LocalDateTime start, LocalDateTime end) {
+        return dateIndex.rangeBits(start, end);
+    }
+
+    /**
+     * Gets the ordinals of the photos whose captions contain a phrase.
+     *
+     * @param phrase the words of the phrase, as split by the caption index
+     * @param prefix whether the last word may be the start of a longer word
+     * @return a new bitmap of ordinals
+     */
+    synchronized BitSet captionBits(List<String> phrase, boolean prefix) {
+        BitSet result = captionIndex.match(phrase, prefix);
+        if (phrase.size() > 1) {
+            for (int o = result.nextSetBit(0); o >= 0; o = result.nextSetBit(o + 1)) {
+                if (!CaptionIndex.contains(photos[o].getCaption(), phrase, prefix)) {
+                    result.clear(o);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the number of photos whose captions contain a phrase.
+     *
+     * @param phrase the words of the phrase, as split by the caption index
+     * @param prefix whether the last word may be the start of a longer word
+     * @return the estimated photo count
+     */
+    synchronized int captionEstimate(List<String> phrase, boolean prefix) {
+        return captionIndex.estimate(phrase, prefix);
+    }
+
+    /**
+     * Gets the ordinals of every indexed photo.
+     *
+     * @return a new bitmap of ordinals
+     */
+    synchronized BitSet allBits() {
+        return (BitSet) live.clone();
+    }
+
+    /**
+     * Gets the photo with an ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return the photo, or null if the ordinal is unused
+     */
+    synchronized Photo photoAt(int ordinal) {
+        return photos[ordinal];
+    }
+
+    /**
+     * Records that an attached album gained a photo.
+     *
+     * @param photo the photo
+     */
+    synchronized void photoAdded(Photo photo) {
+        Integer existing = ordinals.get(photo);
+        if (existing != null) {
+            albumCounts[existing]++;
+            return;
+        }
+
+        int ordinal = freeCount > 0 ? freeOrdinals[--freeCount] : ordinalLimit++;
+        if (ordinal == photos.length) {
+            photos = Arrays.copyOf(photos, ordinal * 2);
+            albumCounts = Arrays.copyOf(albumCounts, ordinal * 2);
+        }
+        versions[0]++;
+        ordinals.put(photo, ordinal);
+        photos[ordinal] = photo;
+        live.set(ordinal);
+        albumCounts[ordinal] = 1;
+        for (int i = 0; i < photo.getTagCount(); i++) {
+            Tag tag = photo.getTag(i);
+            tagIndex.add(tag, ordinal);
+            facets.add(tag);
+        }
+        captionIndex.add(photo.getCaption(), ordinal);
+        if (!deferDateIndex) {
+            dateIndex.add(photo.getDate(), ordinal);
+        } else {
+            dateIndexStale = true;
+        }
+        photo.setIndex(this);
+        updateSmartAlbums(photo);
+    }
+
+    /**
+     * Records that an attached album lost a photo.
+     *
+     * @param photo the photo
+     */
+    synchronized void photoRemoved(Photo photo) {
+        Integer ordinal = ordinals.get(photo);
+        if (ordinal == null || --albumCounts[ordinal] > 0) {
+            return;
+        }
+
+        versions[0]++;
+        photo.setIndex(null);
+        for (int i = 0; i < photo.getTagCount(); i++) {
+            Tag tag = photo.getTag(i);
+            tagIndex.remove(tag, ordinal);
+            facets.remove(tag);
+        }
+        captionIndex.remove(photo.getCaption(), ordinal);
+        if (!deferDateIndex) {
+            dateIndex.remove(photo.getDate(), ordinal);
+        } else {
+            dateIndexStale = true;
+        }
+        ordinals.remove(photo);
+        photos[ordinal] = null;
+        live.clear(ordinal);
+        if (freeCount == freeOrdinals.length) {
+            freeOrdinals = Arrays.copyOf(freeOrdinals, freeCount * 2);
+        }
+        freeOrdinals[freeCount++] = ordinal;
+        for (SmartAlbum smart : smartAlbums) {
+            smart.exclude(photo);
+        }
+    }
+
+    /**
+     * Records that an indexed photo gained a tag.
+     *
+     * @param photo the photo
+     * @param tag the tag
+     */
+    synchronized void tagAdded(Photo photo, Tag tag) {
+        Integer ordinal = ordinals.get(photo);
+        if (ordinal != null) {
+            versions[1]++;
+            tagIndex.add(tag, ordinal);
+            facets.add(tag);
+            updateSmartAlbums(photo);
+        }
+    }
+
+    /**
+     * Records that an indexed photo lost a tag.
+     *
+     * @param photo the photo
+     * @param tag the tag
+     */
+    synchronized void tagRemoved(Photo photo, Tag tag) {
+        Integer ordinal = ordinals.get(photo);
+        if (ordinal != null) {
+            versions[1]++;
+            tagIndex.remove(tag, ordinal);
+            facets.remove(tag);
+            updateSmartAlbums(photo);
+        }
+    }
+
+    /**
+     * Records that an indexed photo's date changed.
+     *
+     * @param photo the photo, already carrying its new date
+     * @param previous the photo's previous date
+     */
+    synchronized void dateChanged(Photo photo, LocalDateTime previous) {
+        Integer ordinal = ordinals.get(photo);
+        if (ordinal != null) {
+            versions[2]++;
+            if (!deferDateIndex) {
+                dateIndex.remove(previous, ordinal);
+                dateIndex.add(photo.getDate(), ordinal);
+            } else {
+                dateIndexStale = true;
+            }
+            updateSmartAlbums(photo);
+        }
+    }
+
+    /**
+     * Records that an indexed photo's caption changed.
+     *
+     * @param photo the photo, already carrying its new caption
+     * @param previous the photo's previous caption
+     */
+    synchronized void captionChanged(Photo photo, String previous) {
+        Integer ordinal = ordinals.get(photo);
+        if (ordinal != null) {
+            versions[3]++;
+            captionIndex.remove(previous, ordinal);
+            captionIndex.add(photo.getCaption(), ordinal);
+            updateSmartAlbums(photo);
+        }
+    }
+
+    /**
+     * Re-checks a changed or newly indexed photo against every attached smart album.
+     *
+     * @param photo the photo
+     */
+    private void updateSmartAlbums(Photo photo) {
+        for (SmartAlbum smart : smartAlbums) {
+            smart.update(photo);
+        }
+    }
+
+    /**
+     * Walks the date index from one end, collecting photos until enough are found.
+     *
+     * @param accept tests whether the photo with an ordinal should be returned
+     * @param limit the maximum number of photos to return
+     * @param newest true to walk from the newest photo, false from the oldest
+     * @return the photos, in the order walked
+     */
+    private List<Photo> walkByDate(IntPredicate accept, int limit, boolean newest) {
+        List<Photo> result = new ArrayList<>();
+        int size = dateIndex.size();
+        for (int i = 0; i < size && result.size() < limit; i++) {
+            int o = dateIndex.ordinalAt(newest ? size - 1 - i : i);
+            if (accept.test(o)) {
+                result.add(photos[o]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Rebuilds the date index from every indexed photo.
+     */
+    private void rebuildDateIndex() {
+        long[] keys = new long[ordinals.size()];
+        int[] entries = new int[ordinals.size()];
+        int count = 0;
+        for (int o = 0; o < ordinalLimit; o++) {
+            if (photos[o] != null) {
+                keys[count] = DateIndex.keyOf(photos[o].getDate());
+                entries[count++] = o;
+            }
+        }
+        dateIndex.rebuild(keys, entries, count);
+        dateIndexStale = false;
+    }
+
+    /**
+     * Converts ordinals to the photos they refer to.
+     *
+     * @param matches the ordinals
+     * @return a list of photos, in the same order
+     */
+    private List<Photo> photosOf(int[] matches) {
+        List<Photo> result = new ArrayList<>(matches.length);
+        for (int o : matches) {
+            result.add(photos[o]);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a set of ordinals to the photos they refer to.
+     *
+     * @param matches the ordinals
+     * @return a list of photos, in ordinal order
+     */
+    synchronized List<Photo> photosOf(BitSet matches) {
+        List<Photo> result = new ArrayList<>(matches.cardinality());
+        for (int o = matches.nextSetBit(0); o >= 0; o = matches.nextSetBit(o + 1)) {
+            result.add(photos[o]);
+        }
+        return result;
+    }
+}
@@ -17,7 +17,7 @@ public class PhotoManager {
 
     /**
      * Creates a Photo object from a file path.
-     * The photo's date is set to the file's last modification time.
+     * The photo's date is set to the file's last modification time, and its size to the file's size.
      *
      * @param filePath the path to the photo file
      * @return a Photo object, or null if the file doesn't exist or an error occurs
@@ -34,7 +34,7 @@ public class PhotoManager {
                 ZoneId.systemDefault()
             );
 
-            return new Photo(filePath, date);
+            return new Photo(filePath, date, Files.size(Paths.get(filePath)));
         } catch (IOException e) {
             return null;
         }
@@ -0,0 +1,892 @@
+package photos;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A boolean query over a user's photos, evaluated against a {@link PhotoIndex}.
+ * Queries combine tag, date and caption terms with AND, OR, NOT and parentheses, for example
+ * {@code person=alice AND (location=nyc OR location=sf) AND NOT event=work AND date>=2024-01-01}
+ * or {@code caption="birthday cake" AND person=alice}.
+ *
+ * <pre>
+ * query := and ("OR" and)*
+ * and   := unary ("AND" unary)*
+ * unary := "NOT" unary | "(" query ")" | term
+ * term  := type "=" value | "date" ("=" | "&gt;=" | "&lt;=" | "&gt;" | "&lt;") yyyy-mm-dd
+ *        | "caption" "=" words
+ * </pre>
+ * Keywords are case-insensitive. Tag types and values containing spaces or operator
+ * characters can be written in double quotes; a tag type named "date" or "caption"
+ * must be quoted. A caption term matches captions containing its words consecutively,
+ * ignoring case and punctuation, and a trailing {@code *} lets the last word match
+ * the start of a longer word, as in {@code caption="birthday ca*"}.
+ *
+ * The operands of an AND are evaluated smallest estimate first, and date terms are
+ * merged into a single range. Once the running result is much smaller than the next
+ * operand, the remaining operands are checked photo by photo instead of being looked
+ * up in the index, and evaluation stops as soon as the result is empty.
+ * Results are kept in the index's {@link QueryCache} under a normalized form in which
+ * the operands of AND and OR are sorted, so reordered queries share a cache entry.
+ *
+ * @author Group 60
+ */
+public class PhotoQuery {
+    private static final int FILTER_RATIO = 4;
+
+    private final Node root;
+
+    private PhotoQuery(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Parses a query.
+     *
+     * @param text the query text
+     * @return the parsed query
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static PhotoQuery parse(String text) {
+        Parser parser = new Parser(tokenize(text));
+        Node root = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position).text + "'");
+        }
+        return new PhotoQuery(root);
+    }
+
+    /**
+     * Finds the photos matching this query.
+     *
+     * @param index the index of the photos to search
+     * @return a list of matching photos, in index order
+     */
+    public List<Photo> search(PhotoIndex index) {
+        return index.cached("query:" + root.key(), root.dependencies(),
+                            () -> index.photosOf(run(root, index, null)));
+    }
+
+    /**
+     * Finds the newest photos matching this query.
+     *
+     * @param index the index of the photos to search
+     * @param limit the maximum number of photos to return
+     * @return the newest matching photos, newest first
+     */
+    public List<Photo> newest(PhotoIndex index, int limit) {
+        synchronized (index) {
+            return index.firstByDate(run(root, index, null), limit, true);
+        }
+    }
+
+    /**
+     * Finds the oldest photos matching this query.
+     *
+     * @param index the index of the photos to search
+     * @param limit the maximum number of photos to return
+     * @return the oldest matching photos, oldest first
+     */
+    public List<Photo> oldest(PhotoIndex index, int limit) {
+        synchronized (index) {
+            return index.firstByDate(run(root, index, null), limit, false);
+        }
+    }
+
+    /**
+     * Prepares this query as a result that is evaluated when its photos are first needed.
+     *
+     * @param index the index of the photos to search
+     * @return the search result, estimating its size from the index until evaluated
+     */
+    public SearchResult execute(PhotoIndex index) {
+        return SearchResult.deferred(() -> search(index), () -> estimate(index));
+    }
+
+    /**
+     * Estimates the number of matching photos from index statistics, without evaluating the query.
+     *
+     * @param index the index of the photos to search
+     * @return the estimated photo count
+     */
+    public int estimate(PhotoIndex index) {
+        synchronized (index) {
+            return root.estimate(index);
+        }
+    }
+
+    /**
+     * Checks whether a single photo matches this query.
+     *
+     * @param photo the photo
+     * @return true if the photo matches
+     */
+    public boolean matches(Photo photo) {
+        return root.matches(photo);
+    }
+
+    /**
+     * Evaluates this query and describes how it was evaluated: the order operands
+     * were run in, their estimated and actual sizes, how each was evaluated, and
+     * how long each took.
+     *
+     * @param index the index of the photos to search
+     * @return the plan, one operand per line
+     */
+    public String explain(PhotoIndex index) {
+        Trace trace = new Trace();
+        int matched;
+        int total;
+        long start = System.nanoTime();
+        synchronized (index) {
+            matched = run(root, index, trace).cardinality();
+            total = index.size();
+        }
+        long elapsed = System.nanoTime() - start;
+        return "Query: " + this + "\n"
+            + "Plan:\n" + trace
+            + "Result: " + matched + " of " + total + " photos in " + Trace.millis(elapsed) + " ms\n"
+            + "Cache: " + index.getQueryCache() + "\n";
+    }
+
+    /**
+     * Returns the query in normalized form.
+     * Equivalent queries that differ only in spacing, keyword case or how their
+     * date terms are written have the same normalized form.
+     *
+     * @return the normalized query text
+     */
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * Evaluates a node, recording it in the trace if one is given.
+     *
+     * @param node the node
+     * @param index the photo index
+     * @param trace the trace, or null
+     * @return the ordinals of the matching photos
+     */
+    private static BitSet run(Node node, PhotoIndex index, Trace trace) {
+        if (trace == null) {
+            return node.evaluate(index, null);
+        }
+        int entry = trace.enter(node, node.estimate(index));
+        long start = System.nanoTime();
+        BitSet result = node.evaluate(index, trace);
+        trace.exit(entry, result.cardinality(), System.nanoTime() - start, node.method());
+        return result;
+    }
+
+    /**
+     * A node of a parsed query.
+     */
+    private abstract static class Node {
+        /**
+         * Estimates the number of matching photos without evaluating the node.
+         */
+        abstract int estimate(PhotoIndex index);
+
+        /**
+         * Gets the ordinals of the matching photos.
+         */
+        abstract BitSet evaluate(PhotoIndex index, Trace trace);
+
+        /**
+         * Checks whether a single photo matches.
+         */
+        abstract boolean matches(Photo photo);
+
+        /**
+         * Gets the {@link QueryCache} flags for the parts of the index the node reads.
+         */
+        abstract int dependencies();
+
+        /**
+         * Describes how the node is evaluated, for explain output.
+         */
+        String method() {
+            return "";
+        }
+
+        /**
+         * Gets the normalized form of the node used as its cache key.
+         */
+        String key() {
+            return toString();
+        }
+    }
+
+    /**
+     * Matches photos carrying a tag, using the tag index.
+     */
+    private static class TagTerm extends Node {
+        final Tag tag;
+
+        TagTerm(Tag tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        int estimate(PhotoIndex index) {
+            return index.countWithTag(tag);
+        }
+
+        @Override
+        BitSet evaluate(PhotoIndex index, Trace trace) {
+            return index.tagBits(tag);
+        }
+
+        @Override
+        boolean matches(Photo photo) {
+            return photo.hasTag(tag);
+        }
+
+        @Override
+        int dependencies() {
+            return QueryCache.TAGS;
+        }
+
+        @Override
+        String method() {
+            return "tag index";
+        }
+
+        @Override
+        public String toString() {
+            return quote(tag.getType()) + "=" + quote(tag.getValue());
+        }
+    }
+
+    /**
+     * Matches photos dated within an inclusive range of days, using the date index.
+     */
+    private static class DateRange extends Node {
+        final LocalDate from;
+        final LocalDate to;
+
+        DateRange(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        LocalDateTime start() {
+            return from == null ? LocalDateTime.MIN : from.atStartOfDay();
+        }
+
+        LocalDateTime end() {
+            return to == null ? LocalDateTime.MAX : to.atTime(LocalTime.MAX);
+        }
+
+        /**
+         * Intersects this range with another.
+         */
+        DateRange intersect(DateRange other) {
+            LocalDate newFrom = from == null || (other.from != null && other.from.isAfter(from)) ? other.from : from;
+            LocalDate newTo = to == null || (other.to != null && other.to.isBefore(to)) ? other.to : to;
+            return new DateRange(newFrom, newTo);
+        }
+
+        @Override
+        int estimate(PhotoIndex index) {
+            return index.countInDateRange(start(), end());
+        }
+
+        @Override
+        BitSet evaluate(PhotoIndex index, Trace trace) {
+            return index.dateBits(start(), end());
+        }
+
+        @Override
+        boolean matches(Photo photo) {
+            long key = DateIndex.keyOf(photo.getDate());
+            return key >= DateIndex.keyOf(start()) && key <= DateIndex.keyOf(end());
+        }
+
+        @Override
+        int dependencies() {
+            return QueryCache.DATES;
+        }
+
+        @Override
+        String method() {
+            return "date index";
+        }
+
+        @Override
+        public String toString() {
+            if (from != null && from.equals(to)) {
+                return "date=" + from;
+            }
+            if (from != null && to != null) {
+                return "date>=" + from + " AND date<=" + to;
+            }
+            if (from != null) {
+                return "date>=" + from;
+            }
+            if (to != null) {
+                return "date<=" + to;
+            }
+            return "date>=" + LocalDate.MIN;
+        }
+    }
+
+    /**
+     * Matches photos whose captions contain a phrase, using the caption index.
+     */
+    private static class CaptionTerm extends Node {
+        final List<String> phrase;
+        final boolean prefix;
+
+        CaptionTerm(List<String> phrase, boolean prefix) {
+            this.phrase = phrase;
+            this.prefix = prefix;
+        }
+
+        @Override
+        int estimate(PhotoIndex index) {
+            return index.captionEstimate(phrase, prefix);
+        }
+
+        @Override
+        BitSet evaluate(PhotoIndex index, Trace trace) {
+            return index.captionBits(phrase, prefix);
+        }
+
+        @Override
+        boolean matches(Photo photo) {
+            return CaptionIndex.contains(photo.getCaption(), phrase, prefix);
+        }
+
+        @Override
+        int dependencies() {
+            return QueryCache.CAPTIONS;
+        }
+
+        @Override
+        String method() {
+            return phrase.size() > 1 ? "caption index, word order checked" : "caption index";
+        }
+
+        @Override
+        public String toString() {
+            return "caption=" + quote(String.join(" ", phrase) + (prefix ? "*" : ""));
+        }
+    }
+
+    /**
+     * Matches photos that don't match its operand.
+     */
+    private static class Not extends Node {
+        final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int estimate(PhotoIndex index) {
+            return index.size() - operand.estimate(index);
+        }
+
+        @Override
+        BitSet evaluate(PhotoIndex index, Trace trace) {
+            BitSet result = index.allBits();
+            result.andNot(run(operand, index, trace));
+            return result;
+        }
+
+        @Override
+        boolean matches(Photo photo) {
+            return !operand.matches(photo);
+        }
+
+        @Override
+        int dependencies() {
+            return operand.dependencies();
+        }
+
+        @Override
+        String method() {
+            return "complement";
+        }
+
+        @Override
+        String key() {
+            return "NOT (" + operand.key() + ")";
+        }
+
+        @Override
+        public String toString() {
+            boolean term = operand instanceof TagTerm || operand instanceof CaptionTerm;
+            return "NOT " + (term ? operand : "(" + operand + ")");
+        }
+    }
+
+    /**
+     * Matches photos that match every operand.
+     */
+    private static class And extends Node {
+        final List<Node> operands = new ArrayList<>();
+
+        /**
+         * Flattens nested conjunctions and merges their date terms into one range.
+         */
+        And(List<Node> nodes) {
+            DateRange range = null;
+            for (Node node : nodes) {
+                List<Node> flattened = node instanceof And ? ((And) node).operands : List.of(node);
+                for (Node operand : flattened) {
+                    if (operand instanceof DateRange) {
+                        range = range == null ? (DateRange) operand : range.intersect((DateRange) operand);
+                    } else {
+                        operands.add(operand);
+                    }
+                }
+            }
+            if (range != null) {
+                operands.add(range);
+            }
+        }
+
+        @Override
+        int estimate(PhotoIndex index) {
+            int estimate = index.size();
+            for (Node operand : operands) {
+                estimate = Math.min(estimate, operand.estimate(index));
+            }
+            return estimate;
+        }
+
+        @Override
+        BitSet evaluate(PhotoIndex index, Trace trace) {
+            List<Node> plan = new ArrayList<>(operands);
+            int[] estimates = new int[plan.size()];
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < plan.size(); i++) {
+                estimates[i] = plan.get(i).estimate(index);
+                order.add(i);
+            }
+            order.sort(Comparator.comparingInt(i -> estimates[i]));
+
+            BitSet result = null;
+            for (int i : order) {
+                Node operand = plan.get(i);
+                if (result != null && result.isEmpty()) {
+                    if (trace != null) {
+                        trace.skip(operand, estimates[i]);
+                    }
+                    continue;
+                }
+                if (result == null) {
+                    result = run(operand, index, trace);
+                } else if ((long) result.cardinality() * FILTER_RATIO <= estimates[i]) {
+                    filter(result, operand, index, trace, estimates[i]);
+                } else if (operand instanceof Not) {
+                    result.andNot(run(((Not) operand).operand, index, trace));
+                } else {
+                    result.and(run(operand, index, trace));
+                }
+            }
+            return result == null ? index.allBits() : result;
+        }
+
+        /**
+         * Removes the candidates that don't match an operand, checking each photo directly.
+         */
+        private static void filter(BitSet candidates, Node operand, PhotoIndex index, Trace trace, int estimate) {
+            int entry = trace == null ? -1 : trace.enter(operand, estimate);
+            int checked = candidates.cardinality();
+            long start = System.nanoTime();
+            for (int o = candidates.nextSetBit(0); o >= 0; o = candidates.nextSetBit(o + 1)) {
+                if (!operand.matches(index.photoAt(o))) {
+                    candidates.clear(o);
+                }
+            }
+            if (trace != null) {
+                trace.exit(entry, candidates.cardinality(), System.nanoTime() - start,
+                           "checked " + checked + " candidates");
+            }
+        }
+
+        @Override
+        boolean matches(Photo photo) {
+            for (Node operand : operands) {
+                if (!operand.matches(photo)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        int dependencies() {
+            return dependenciesOf(operands);
+        }
+
+        @Override
+        String method() {
+            return "smallest estimate first";
+        }
+
+        @Override
+        String key() {
+            return keyOf(operands, " AND ");
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            for (Node operand : operands) {
+                parts.add(operand instanceof Or ? "(" + operand + ")" : operand.toString());
+            }
+            return String.join(" AND ", parts);
+        }
+    }
+
+    /**
+     * Matches photos that match at least one operand.
+     */
+    private static class Or extends Node {
+        final List<Node> operands = new ArrayList<>();
+
+        /**
+         * Flattens nested disjunctions.
+         */
+        Or(List<Node> nodes) {
+            for (Node node : nodes) {
+                if (node instanceof Or) {
+                    operands.addAll(((Or) node).operands);
+                } else {
+                    operands.add(node);
+                }
+            }
+        }
+
+        @Override
+        int estimate(PhotoIndex index) {
+            long estimate = 0;
+            for (Node operand : operands) {
+                estimate += operand.estimate(index);
+            }
+            return (int) Math.min(estimate, index.size());
+        }
+
+        @Override
+        BitSet evaluate(PhotoIndex index, Trace trace) {
+            BitSet result = new BitSet();
+            int total = index.size();
+            for (Node operand : operands) {
+                if (result.cardinality() == total) {
+                    if (trace != null) {
+                        trace.skip(operand, operand.estimate(index));
+                    }
+                    continue;
+                }
+                result.or(run(operand, index, trace));
+            }
+            return result;
+        }
+
+        @Override
+        boolean matches(Photo photo) {
+            for (Node operand : operands) {
+                if (operand.matches(photo)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int dependencies() {
+            return dependenciesOf(operands);
+        }
+
+        @Override
+        String method() {
+            return "union";
+        }
+
+        @Override
+        String key() {
+            return keyOf(operands, " OR ");
+        }
+
+        @Override
+        public String toString() {
+            List<String> parts = new ArrayList<>();
+            for (Node operand : operands) {
+                parts.add(operand instanceof And ? "(" + operand + ")" : operand.toString());
+            }
+            return String.join(" OR ", parts);
+        }
+    }
+
+    /**
+     * Combines the dependency flags of several nodes.
+     */
+    private static int dependenciesOf(List<Node> nodes) {
+        int dependencies = 0;
+        for (Node node : nodes) {
+            dependencies |= node.dependencies();
+        }
+        return dependencies;
+    }
+
+    /**
+     * Joins the keys of several nodes in sorted order, so the order the operands
+     * were written in doesn't matter.
+     */
+    private static String keyOf(List<Node> nodes, String separator) {
+        List<String> keys = new ArrayList<>();
+        for (Node node : nodes) {
+            keys.add("(" + node.key() + ")");
+        }
+        keys.sort(null);
+        return String.join(separator, keys);
+    }
+
+    /**
+     * Records how a query was evaluated, for {@link #explain}.
+     */
+    private static class Trace {
+        private final List<String> labels = new ArrayList<>();
+        private final List<String> details = new ArrayList<>();
+        private int depth = 1;
+
+        int enter(Node node, int estimate) {
+            labels.add("  ".repeat(depth) + label(node) + "  est " + estimate);
+            details.add("");
+            depth++;
+            return labels.size() - 1;
+        }
+
+        void exit(int entry, int actual, long nanos, String method) {
+            depth--;
+            details.set(entry, "  actual " + actual + "  " + millis(nanos) + " ms"
+                + (method.isEmpty() ? "" : "  (" + method + ")"));
+        }
+
+        void skip(Node node, int estimate) {
+            labels.add("  ".repeat(depth) + label(node) + "  est " + estimate);
+            details.add("  skipped, result already decided");
+        }
+
+        static String label(Node node) {
+            if (node instanceof And) {
+                return "AND";
+            }
+            if (node instanceof Or) {
+                return "OR";
+            }
+            if (node instanceof Not) {
+                return "NOT";
+            }
+            return node.toString();
+        }
+
+        static String millis(long nanos) {
+            return String.format("%.3f", nanos / 1e6);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < labels.size(); i++) {
+                sb.append(labels.get(i)).append(details.get(i)).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * A token of query text.
+     */
+    private static class Token {
+        final String text;
+        final boolean quoted;
+
+        Token(String text, boolean quoted) {
+            this.text = text;
+            this.quoted = quoted;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && text.equalsIgnoreCase(keyword);
+        }
+    }
+
+    /**
+     * Splits query text into words, quoted strings, operators and parentheses.
+     *
+     * @param text the query text
+     * @return the tokens
+     * @throws IllegalArgumentException if a quoted string is not closed
+     */
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(String.valueOf(c), false));
+                i++;
+            } else if (c == '=' || c == '<' || c == '>') {
+                boolean twoChars = c != '=' && i + 1 < text.length() && text.charAt(i + 1) == '=';
+                tokens.add(new Token(text.substring(i, twoChars ? i + 2 : i + 1), false));
+                i += twoChars ? 2 : 1;
+            } else if (c == '"') {
+                int close = text.indexOf('"', i + 1);
+                if (close < 0) {
+                    throw new IllegalArgumentException("Unclosed quote");
+                }
+                tokens.add(new Token(text.substring(i + 1, close), true));
+                i = close + 1;
+            } else {
+                int start = i;
+                while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                       && "()=<>\"".indexOf(text.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(new Token(text.substring(start, i), false));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Quotes a tag type or value if it wouldn't otherwise read back as a single word.
+     *
+     * @param s the string
+     * @return the string, quoted if needed
+     */
+    private static String quote(String s) {
+        boolean plain = !s.isEmpty() && !s.equalsIgnoreCase("AND") && !s.equalsIgnoreCase("OR")
+            && !s.equalsIgnoreCase("NOT") && !s.equalsIgnoreCase("date") && !s.equalsIgnoreCase("caption");
+        for (int i = 0; i < s.length() && plain; i++) {
+            char c = s.charAt(i);
+            plain = !Character.isWhitespace(c) && "()=<>\"".indexOf(c) < 0;
+        }
+        return plain ? s : "\"" + s + "\"";
+    }
+
+    /**
+     * Recursive descent parser over a list of tokens.
+     */
+    private static class Parser {
+        final List<Token> tokens;
+        int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (accept("OR")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Or(operands);
+        }
+
+        Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (accept("AND")) {
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new And(operands);
+        }
+
+        Node parseUnary() {
+            if (accept("NOT")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                Node inner = parseOr();
+                if (!accept(")")) {
+                    throw new IllegalArgumentException("Missing ')'");
+                }
+                return inner;
+            }
+            return parseTerm();
+        }
+
+        Node parseTerm() {
+            Token key = next("a tag type, 'date' or 'caption'");
+            if (key.is("AND") || key.is("OR") || key.is(")") || key.is("=")) {
+                throw new IllegalArgumentException("Expected a tag type, 'date' or 'caption' before '" + key.text + "'");
+            }
+            Token operator = next("'=' after '" + key.text + "'");
+            Token value = next("a value after '" + key.text + operator.text + "'");
+            if (key.is("date") && !value.quoted) {
+                return dateTerm(operator.text, value.text);
+            }
+            if (key.is("caption") && operator.is("=")) {
+                return captionTerm(value.text);
+            }
+            if (!operator.text.equals("=") || operator.quoted) {
+                throw new IllegalArgumentException("Expected '=' after '" + key.text + "'");
+            }
+            return new TagTerm(new Tag(key.text, value.text));
+        }
+
+        Node captionTerm(String text) {
+            List<String> phrase = CaptionIndex.tokenize(text);
+            if (phrase.isEmpty()) {
+                throw new IllegalArgumentException("Expected a word after 'caption='");
+            }
+            return new CaptionTerm(phrase, text.trim().endsWith("*"));
+        }
+
+        Node dateTerm(String operator, String text) {
+            LocalDate date;
+            try {
+                date = LocalDate.parse(text);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid date '" + text + "', expected yyyy-mm-dd");
+            }
+            switch (operator) {
+                case "=":
+                    return new DateRange(date, date);
+                case ">=":
+                    return new DateRange(date, null);
+                case ">":
+                    return new DateRange(date.plusDays(1), null);
+                case "<=":
+                    return new DateRange(null, date);
+                case "<":
+                    return new DateRange(null, date.minusDays(1));
+                default:
+                    throw new IllegalArgumentException("Unknown operator '" + operator + "'");
+            }
+        }
+
+        boolean accept(String keyword) {
+            if (position < tokens.size() && tokens.get(position).is(keyword)) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        Token next(String expected) {
+            if (position >= tokens.size()) {
+                throw new IllegalArgumentException("Expected " + expected);
+            }
+            return tokens.get(position++);
+        }
+    }
+}
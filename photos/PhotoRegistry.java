@@ -0,0 +1,188 @@
+package photos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The distinct photos in a user's albums, one instance per file path.
+ * Albums attached to the registry store the registered instance when a photo is added
+ * or loaded, so a photo in several albums is a single object and changes to its caption,
+ * date or tags show in every album. The registry counts the loaded albums containing
+ * each photo and forgets a photo once none does.
+ * Until every attached album has been loaded the registry is incomplete: it only knows the
+ * photos of loaded albums, and it keeps photos that no loaded album contains, since an album
+ * that is still on disk may contain an older copy of them. {@link #locate(String)} finds
+ * a photo in the albums still on disk without loading them.
+ *
+ * @author Group 60
+ */
+public class PhotoRegistry {
+
+    /**
+     * A registered photo and the number of attached albums containing it.
+     */
+    private static class Entry {
+        final Photo photo;
+        int albums;
+
+        Entry(Photo photo) {
+            this.photo = photo;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Set<Album> unloaded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Attaches an album, registering its photos if they are loaded. A loaded photo whose
+     * path is already registered is replaced in the album by the registered instance.
+     * Photos of an album that isn't loaded are registered when they are loaded.
+     *
+     * @param album the album
+     */
+    public void addAlbum(Album album) {
+        album.setRegistry(this);
+    }
+
+    /**
+     * Detaches an album, releasing its loaded photos.
+     *
+     * @param album the album
+     */
+    public void removeAlbum(Album album) {
+        album.setRegistry(null);
+    }
+
+    /**
+     * Finds the registered photo with a file path.
+     *
+     * @param filePath the file path
+     * @return the photo, or null if no photo with that path is registered
+     */
+    public synchronized Photo find(String filePath) {
+        Entry entry = entries.get(filePath);
+        return entry == null ? null : entry.photo;
+    }
+
+    /**
+     * Finds the user's photo with a file path, looking in the stored photos of attached
+     * albums that aren't loaded if no photo with that path is registered. A photo found on
+     * disk is registered, without loading its album, so the album holds the same instance
+     * when it is loaded.
+     *
+     * @param filePath the file path
+     * @return the photo, or null if no attached album contains it
+     * @throws java.io.UncheckedIOException if an album's stored photos cannot be read
+     */
+    public Photo locate(String filePath) {
+        List<Album> pending;
+        synchronized (this) {
+            Entry entry = entries.get(filePath);
+            if (entry != null || unloaded.isEmpty()) {
+                return entry == null ? null : entry.photo;
+            }
+            pending = new ArrayList<>(unloaded);
+        }
+        // The albums are read without holding the registry's lock, which albums take while
+        // holding their own
+        for (Album album : pending) {
+            Photo stored = album.findStoredPhoto(filePath);
+            if (stored != null) {
+                synchronized (this) {
+                    return entries.computeIfAbsent(filePath, path -> new Entry(stored)).photo;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a photo with a file path is registered.
+     *
+     * @param filePath the file path
+     * @return true if the path is registered
+     */
+    public synchronized boolean contains(String filePath) {
+        return entries.containsKey(filePath);
+    }
+
+    /**
+     * Gets the number of registered photos.
+     *
+     * @return the photo count; once the registry is complete, the number of distinct
+     *         photos in the user's albums
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Checks whether every album attached to the registry has been loaded.
+     *
+     * @return true if the registry holds exactly the photos in the user's albums
+     */
+    public synchronized boolean isComplete() {
+        return unloaded.isEmpty();
+    }
+
+    /**
+     * Records that an attached album isn't loaded.
+     *
+     * @param album the album
+     */
+    synchronized void addUnloaded(Album album) {
+        unloaded.add(album);
+    }
+
+    /**
+     * Records that an album has been loaded or detached. Once every attached album has
+     * been loaded, photos that no album contains are forgotten.
+     *
+     * @param album the album
+     */
+    synchronized void removeUnloaded(Album album) {
+        if (!unloaded.remove(album) || !unloaded.isEmpty()) {
+            return;
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().albums == 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Records that an album is about to hold a photo.
+     *
+     * @param photo the photo
+     * @return the registered photo with the same path, which the album should hold instead
+     */
+    synchronized Photo acquire(Photo photo) {
+        Entry entry = entries.get(photo.getFilePath());
+        if (entry == null) {
+            entry = new Entry(photo);
+            entries.put(photo.getFilePath(), entry);
+        }
+        entry.albums++;
+        return entry.photo;
+    }
+
+    /**
+     * Records that an album no longer holds a photo.
+     *
+     * @param photo the photo
+     */
+    synchronized void release(Photo photo) {
+        Entry entry = entries.get(photo.getFilePath());
+        if (entry != null && --entry.albums <= 0 && unloaded.isEmpty()) {
+            entries.remove(photo.getFilePath());
+        }
+    }
+}
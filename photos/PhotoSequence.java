@@ -0,0 +1,477 @@
+package photos;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * An insertion-ordered set of photos, keyed by file path, with positional access.
+ * Photos are kept in an array of slots in the order they were added, and a hash table
+ * of slot numbers makes lookup, insertion and removal constant time. Removing a photo
+ * only clears its slot; a Fenwick tree counting the live slots finds the photo at a
+ * position in logarithmic time while there are cleared slots, and the slots are
+ * compacted once cleared slots outnumber the photos. With no cleared slots, positional
+ * access is a plain array read.
+ * The sequence registers itself with each photo it holds, and the photos report their
+ * changes to it, so {@link #version()} changes whenever the sequence or one of its photos
+ * does. A sequence that is detached stops registering until it is attached again.
+ * The total file size and the date range of the photos are kept up to date as photos
+ * are added and removed. The dates are counted in a sorted map, so removing the earliest
+ * or latest photo, or changing a photo's date, which the photo reports, doesn't need a scan.
+ *
+ * @author Group 60
+ */
+class PhotoSequence {
+    private static final int MIN_CAPACITY = 8;
+
+    private Photo[] slots = new Photo[MIN_CAPACITY];
+    private int slotCount;
+    private int size;
+    private int[] table = new int[MIN_CAPACITY * 2];
+    private int[] tree;
+    private long totalBytes;
+    private final TreeMap<LocalDateTime, Integer> dates = new TreeMap<>();
+    private long version;
+    private boolean detached;
+
+    /**
+     * Gets the number of photos.
+     *
+     * @return the photo count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the photo at a position.
+     *
+     * @param position the position, in insertion order
+     * @return the photo
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    Photo get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Index " + position + " out of bounds for length " + size);
+        }
+        if (slotCount == size) {
+            return slots[position];
+        }
+        return slots[select(position)];
+    }
+
+    /**
+     * Adds a photo at the end unless a photo with the same path is present.
+     *
+     * @param photo the photo
+     * @return true if the photo was added
+     */
+    boolean add(Photo photo) {
+        if (find(photo.getFilePath(), photo.hashCode()) >= 0) {
+            return false;
+        }
+        if (slotCount == slots.length) {
+            if (slotCount - size > size / 2) {
+                compact();
+            } else {
+                grow();
+            }
+        }
+        int slot = slotCount++;
+        slots[slot] = photo;
+        insert(photo.hashCode(), slot);
+        if (!detached) {
+            photo.addOwner(this);
+        }
+        photoChanged();
+        if (tree != null) {
+            update(slot, 1);
+        }
+        size++;
+        totalBytes += photo.getFileSize();
+        countDate(photo.getDate(), 1);
+        return true;
+    }
+
+    /**
+     * Removes the photo with the same path as a photo.
+     *
+     * @param photo the photo
+     * @return the removed instance, or null if no photo had that path
+     */
+    Photo remove(Photo photo) {
+        int bucket = bucketOf(photo.getFilePath(), photo.hashCode());
+        if (bucket < 0) {
+            return null;
+        }
+        int slot = table[bucket] - 1;
+        Photo removed = slots[slot];
+        delete(bucket);
+        slots[slot] = null;
+        size--;
+        if (!detached) {
+            removed.removeOwner(this);
+        }
+        photoChanged();
+        totalBytes -= removed.getFileSize();
+        countDate(removed.getDate(), -1);
+        if (slot == slotCount - 1 && tree == null) {
+            slotCount--;
+            return removed;
+        }
+        if (tree == null) {
+            buildTree();
+        } else {
+            update(slot, -1);
+        }
+        if (slotCount - size > Math.max(MIN_CAPACITY, size)) {
+            compact();
+        }
+        return removed;
+    }
+
+    /**
+     * Replaces the photo with the same path as a photo, keeping its position.
+     *
+     * @param photo the replacement
+     * @return true if a photo with that path was present
+     */
+    boolean replace(Photo photo) {
+        int slot = find(photo.getFilePath(), photo.hashCode());
+        if (slot < 0) {
+            return false;
+        }
+        totalBytes += photo.getFileSize() - slots[slot].getFileSize();
+        if (!detached) {
+            slots[slot].removeOwner(this);
+            photo.addOwner(this);
+        }
+        countDate(slots[slot].getDate(), -1);
+        countDate(photo.getDate(), 1);
+        slots[slot] = photo;
+        photoChanged();
+        return true;
+    }
+
+    /**
+     * Finds the photo with a file path.
+     *
+     * @param filePath the file path
+     * @return the photo, or null if there is none
+     */
+    Photo find(String filePath) {
+        int slot = find(filePath, filePath.hashCode());
+        return slot < 0 ? null : slots[slot];
+    }
+
+    /**
+     * Checks for a photo with the same path as a photo.
+     *
+     * @param photo the photo
+     * @return true if such a photo is present
+     */
+    boolean contains(Photo photo) {
+        return find(photo.getFilePath(), photo.hashCode()) >= 0;
+    }
+
+    /**
+     * Gets the total file size of the photos.
+     *
+     * @return the size in bytes
+     */
+    long totalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Gets the earliest photo date.
+     *
+     * @return the earliest date, or null if there are no photos
+     */
+    synchronized LocalDateTime earliest() {
+        return dates.isEmpty() ? null : dates.firstKey();
+    }
+
+    /**
+     * Gets the latest photo date.
+     *
+     * @return the latest date, or null if there are no photos
+     */
+    synchronized LocalDateTime latest() {
+        return dates.isEmpty() ? null : dates.lastKey();
+    }
+
+    /**
+     * Gets a number that changes whenever a photo is added, removed or replaced, or one of
+     * the photos changes while the sequence is attached.
+     *
+     * @return the version
+     */
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Counts a change to the sequence or one of its photos.
+     */
+    synchronized void photoChanged() {
+        version++;
+    }
+
+    /**
+     * Moves a photo from one date to another after the photo's date changed.
+     *
+     * @param previous the photo's previous date, or null
+     * @param date the photo's new date, or null
+     */
+    synchronized void dateChanged(LocalDateTime previous, LocalDateTime date) {
+        countDate(previous, -1);
+        countDate(date, 1);
+    }
+
+    /**
+     * Stops the photos reporting their changes to this sequence, so photos that stay in
+     * other sequences don't keep this one reachable.
+     */
+    void detach() {
+        if (!detached) {
+            detached = true;
+            forEach(photo -> photo.removeOwner(this));
+        }
+    }
+
+    /**
+     * Has the photos report their changes to this sequence again after {@link #detach()},
+     * recounting the dates, which may have changed meanwhile.
+     */
+    void attach() {
+        if (detached) {
+            detached = false;
+            synchronized (this) {
+                dates.clear();
+                forEach(photo -> countDate(photo.getDate(), 1));
+            }
+            forEach(photo -> photo.addOwner(this));
+            photoChanged();
+        }
+    }
+
+    /**
+     * Copies the photos into a list.
+     *
+     * @return the photos, in insertion order
+     */
+    List<Photo> toList() {
+        List<Photo> result = new ArrayList<>(size);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slots[slot] != null) {
+                result.add(slots[slot]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Performs an action for each photo, in insertion order, without copying them.
+     *
+     * @param action the action
+     */
+    void forEach(Consumer<? super Photo> action) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slots[slot] != null) {
+                action.accept(slots[slot]);
+            }
+        }
+    }
+
+    /**
+     * Freezes the photos, reusing an earlier result if no photo has changed since.
+     *
+     * @param previous the states from an earlier call, or null
+     * @return the states of the photos in insertion order; {@code previous} itself if it
+     *         holds exactly these states
+     */
+    PhotoState[] freeze(PhotoState[] previous) {
+        PhotoState[] result = previous != null && previous.length == size ? previous : new PhotoState[size];
+        int position = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slots[slot] != null) {
+                PhotoState state = slots[slot].freeze();
+                if (result[position] != state) {
+                    if (result == previous) {
+                        result = previous.clone();
+                    }
+                    result[position] = state;
+                }
+                position++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds to the number of photos with a date.
+     */
+    private synchronized void countDate(LocalDateTime date, int delta) {
+        if (date == null) {
+            return;
+        }
+        Integer count = dates.get(date);
+        int updated = (count == null ? 0 : count) + delta;
+        if (updated > 0) {
+            dates.put(date, updated);
+        } else {
+            dates.remove(date);
+        }
+    }
+
+    /**
+     * Finds the slot holding a path.
+     *
+     * @return the slot, or -1 if the path is not present
+     */
+    private int find(String filePath, int hash) {
+        int bucket = bucketOf(filePath, hash);
+        return bucket < 0 ? -1 : table[bucket] - 1;
+    }
+
+    /**
+     * Finds the hash table bucket referring to a path. Buckets hold a slot number plus
+     * one, so an empty bucket is zero.
+     *
+     * @return the bucket, or -1 if the path is not present
+     */
+    private int bucketOf(String filePath, int hash) {
+        int mask = table.length - 1;
+        for (int bucket = spread(hash) & mask; table[bucket] != 0; bucket = (bucket + 1) & mask) {
+            Photo photo = slots[table[bucket] - 1];
+            if (photo.hashCode() == hash && photo.getFilePath().equals(filePath)) {
+                return bucket;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a slot to the hash table, which must have a free bucket.
+     */
+    private void insert(int hash, int slot) {
+        int mask = table.length - 1;
+        int bucket = spread(hash) & mask;
+        while (table[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = slot + 1;
+    }
+
+    /**
+     * Empties a hash table bucket, shifting back later entries of the same probe run so
+     * lookups never stop early at the hole.
+     */
+    private void delete(int bucket) {
+        int mask = table.length - 1;
+        int hole = bucket;
+        table[hole] = 0;
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = spread(slots[table[next] - 1].hashCode()) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                table[next] = 0;
+                hole = next;
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Doubles the slot capacity and rebuilds the hash table to match.
+     */
+    private void grow() {
+        slots = Arrays.copyOf(slots, slots.length * 2);
+        rehash();
+    }
+
+    /**
+     * Moves the photos into consecutive slots, dropping the cleared ones.
+     */
+    private void compact() {
+        int live = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slots[slot] != null) {
+                slots[live++] = slots[slot];
+            }
+        }
+        Arrays.fill(slots, live, slotCount, null);
+        slotCount = live;
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, live)) * 2);
+        if (capacity < slots.length / 2) {
+            slots = Arrays.copyOf(slots, capacity);
+        }
+        tree = null;
+        rehash();
+    }
+
+    /**
+     * Rebuilds the hash table at twice the slot capacity.
+     */
+    private void rehash() {
+        table = new int[slots.length * 2];
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slots[slot] != null) {
+                insert(slots[slot].hashCode(), slot);
+            }
+        }
+        if (tree != null) {
+            buildTree();
+        }
+    }
+
+    /**
+     * Builds the Fenwick tree over the slot capacity in linear time.
+     */
+    private void buildTree() {
+        tree = new int[slots.length + 1];
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slots[slot] != null) {
+                tree[slot + 1]++;
+            }
+        }
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    /**
+     * Adds to the live count of a slot.
+     */
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Finds the slot of the photo at a position by descending the Fenwick tree.
+     */
+    private int select(int position) {
+        int slot = 0;
+        int remaining = position + 1;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next < tree.length && tree[next] < remaining) {
+                slot = next;
+                remaining -= tree[next];
+            }
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,103 @@
+package photos;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * An immutable copy of a photo's path, date, size, caption and tags at one moment.
+ * A photo hands out the same state until it is next changed (see {@link Photo#freeze()}),
+ * and the state shares the photo's tag array, which the photo replaces rather than
+ * changes, so freezing an unchanged photo allocates nothing.
+ *
+ * @author Group 60
+ */
+public final class PhotoState {
+    private final String filePath;
+    private final LocalDateTime date;
+    private final long fileSize;
+    private final String caption;
+    private final Tag[] tags;
+
+    PhotoState(String filePath, LocalDateTime date, long fileSize, String caption, Tag[] tags) {
+        this.filePath = filePath;
+        this.date = date;
+        this.fileSize = fileSize;
+        this.caption = caption;
+        this.tags = tags;
+    }
+
+    /**
+     * Gets the file path of the photo.
+     *
+     * @return the file path
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Gets the date the photo was taken.
+     *
+     * @return the date/time
+     */
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Gets the size of the photo file.
+     *
+     * @return the size in bytes, or 0 if unknown
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Gets the caption of the photo.
+     *
+     * @return the caption
+     */
+    public String getCaption() {
+        return caption;
+    }
+
+    /**
+     * Gets the tags of the photo, sorted by type and value.
+     *
+     * @return an unmodifiable list of the tags
+     */
+    public List<Tag> getTags() {
+        return new Photo.TagList(tags);
+    }
+
+    /**
+     * Gets the number of tags on the photo.
+     *
+     * @return the tag count
+     */
+    public int getTagCount() {
+        return tags.length;
+    }
+
+    /**
+     * Gets a tag by position, with the tags sorted by type and value.
+     *
+     * @param position the position, from 0 to {@link #getTagCount()} - 1
+     * @return the tag
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public Tag getTag(int position) {
+        return tags[position];
+    }
+
+    /**
+     * Returns a string representation of this state.
+     *
+     * @return a string containing the file path and caption
+     */
+    @Override
+    public String toString() {
+        return filePath + " [" + caption + "]";
+    }
+}
@@ -0,0 +1,164 @@
+package photos;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A set of photo ordinals used as a posting list by the photo indexes.
+ * Small sets are kept as a sorted array and large ones as a bitmap, so a rare tag costs
+ * a few bytes per photo and a common one costs a bit per photo in the library.
+ *
+ * @author Group 60
+ */
+class PostingList {
+    private static final int TO_BITMAP = 4096;
+    private static final int TO_ARRAY = 2048;
+
+    private int[] array = new int[4];
+    private BitSet bits;
+    private int size;
+
+    /**
+     * Adds an ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return true if the ordinal was added, false if it was already present
+     */
+    boolean add(int ordinal) {
+        if (bits != null) {
+            if (bits.get(ordinal)) {
+                return false;
+            }
+            bits.set(ordinal);
+            size++;
+            return true;
+        }
+
+        int position = Arrays.binarySearch(array, 0, size, ordinal);
+        if (position >= 0) {
+            return false;
+        }
+        if (size == TO_BITMAP) {
+            bits = toBitSet();
+            array = null;
+            bits.set(ordinal);
+            size++;
+            return true;
+        }
+        position = -position - 1;
+        if (size == array.length) {
+            array = Arrays.copyOf(array, Math.min(array.length * 2, TO_BITMAP));
+        }
+        System.arraycopy(array, position, array, position + 1, size - position);
+        array[position] = ordinal;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an ordinal.
+     *
+     * @param ordinal the ordinal
+     * @return true if the ordinal was removed, false if it wasn't present
+     */
+    boolean remove(int ordinal) {
+        if (bits != null) {
+            if (!bits.get(ordinal)) {
+                return false;
+            }
+            bits.clear(ordinal);
+            size--;
+            if (size < TO_ARRAY) {
+                array = new int[TO_BITMAP];
+                int i = 0;
+                for (int o = bits.nextSetBit(0); o >= 0; o = bits.nextSetBit(o + 1)) {
+                    array[i++] = o;
+                }
+                bits = null;
+            }
+            return true;
+        }
+
+        int position = Arrays.binarySearch(array, 0, size, ordinal);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(array, position + 1, array, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks whether an ordinal is present.
+     *
+     * @param ordinal the ordinal
+     * @return true if the ordinal is in the set
+     */
+    boolean contains(int ordinal) {
+        if (bits != null) {
+            return bits.get(ordinal);
+        }
+        return Arrays.binarySearch(array, 0, size, ordinal) >= 0;
+    }
+
+    /**
+     * Gets the number of ordinals in the set.
+     *
+     * @return the size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the set is empty.
+     *
+     * @return true if the set has no ordinals
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds every ordinal in this set to a bitmap.
+     *
+     * @param target the bitmap to add to
+     */
+    void orInto(BitSet target) {
+        if (bits != null) {
+            target.or(bits);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            target.set(array[i]);
+        }
+    }
+
+    /**
+     * Removes from a bitmap every ordinal not in this set.
+     *
+     * @param target the bitmap to intersect
+     */
+    void andInto(BitSet target) {
+        if (bits != null) {
+            target.and(bits);
+            return;
+        }
+        for (int o = target.nextSetBit(0); o >= 0; o = target.nextSetBit(o + 1)) {
+            if (!contains(o)) {
+                target.clear(o);
+            }
+        }
+    }
+
+    /**
+     * Copies this set into a new bitmap.
+     *
+     * @return the bitmap
+     */
+    BitSet toBitSet() {
+        BitSet result = new BitSet();
+        orInto(result);
+        return result;
+    }
+}
@@ -0,0 +1,175 @@
+package photos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A trie of strings, each with a positive count.
+ * A string stays in the trie while its count is above zero, and branches that no
+ * longer lead to any string are pruned. Completions of a prefix are found by walking
+ * down to the prefix's node and then visiting only the strings below it, in
+ * {@link String#compareTo} order.
+ *
+ * @author Group 60
+ */
+class PrefixTrie {
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * A trie node. Children are kept sorted by their character.
+     */
+    private static class Node {
+        char[] keys = new char[0];
+        Node[] children = new Node[0];
+        int childCount;
+        int count;
+
+        int find(char c) {
+            return Arrays.binarySearch(keys, 0, childCount, c);
+        }
+
+        Node child(char c) {
+            int position = find(c);
+            return position >= 0 ? children[position] : null;
+        }
+
+        Node addChild(char c) {
+            int position = find(c);
+            if (position >= 0) {
+                return children[position];
+            }
+            position = -position - 1;
+            if (childCount == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2, childCount * 2));
+                children = Arrays.copyOf(children, keys.length);
+            }
+            System.arraycopy(keys, position, keys, position + 1, childCount - position);
+            System.arraycopy(children, position, children, position + 1, childCount - position);
+            keys[position] = c;
+            children[position] = new Node();
+            childCount++;
+            return children[position];
+        }
+
+        void removeChild(char c) {
+            int position = find(c);
+            System.arraycopy(keys, position + 1, keys, position, childCount - position - 1);
+            System.arraycopy(children, position + 1, children, position, childCount - position - 1);
+            children[--childCount] = null;
+        }
+    }
+
+    /**
+     * Adds one to a string's count, inserting the string if it is new.
+     *
+     * @param key the string
+     */
+    void increment(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+        }
+        if (node.count++ == 0) {
+            size++;
+        }
+    }
+
+    /**
+     * Subtracts one from a string's count, removing the string when the count reaches zero.
+     *
+     * @param key the string
+     */
+    void decrement(String key) {
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length(); i++) {
+            path[i + 1] = path[i].child(key.charAt(i));
+            if (path[i + 1] == null) {
+                return;
+            }
+        }
+        Node node = path[key.length()];
+        if (node.count == 0 || --node.count > 0) {
+            return;
+        }
+        size--;
+        for (int i = key.length(); i > 0 && path[i].count == 0 && path[i].childCount == 0; i--) {
+            path[i - 1].removeChild(key.charAt(i - 1));
+        }
+    }
+
+    /**
+     * Gets a string's count.
+     *
+     * @param key the string
+     * @return the count, or 0 if the string is not in the trie
+     */
+    int count(String key) {
+        Node node = find(key);
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Gets the number of strings in the trie.
+     *
+     * @return the string count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the strings starting with a prefix.
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of strings to return
+     * @return the strings, in sorted order
+     */
+    List<String> complete(String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        Node node = find(prefix);
+        if (node != null && limit > 0) {
+            collect(node, new StringBuilder(prefix), result, limit);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the node for a string.
+     *
+     * @param key the string
+     * @return the node, or null if no string in the trie starts with the key
+     */
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * Adds the strings at and below a node to a list, in sorted order.
+     *
+     * @return true if the list is full
+     */
+    private static boolean collect(Node node, StringBuilder path, List<String> result, int limit) {
+        if (node.count > 0) {
+            result.add(path.toString());
+            if (result.size() >= limit) {
+                return true;
+            }
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            path.append(node.keys[i]);
+            boolean full = collect(node.children[i], path, result, limit);
+            path.setLength(path.length() - 1);
+            if (full) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,218 @@
+package photos;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of recent search results for one user's {@link PhotoIndex}.
+ * Results are keyed by the normalized form of the search. Each entry records the
+ * index's modification counters for the parts of the index the search read (which
+ * photos are indexed, and their tags, dates or captions), and is discarded when one of
+ * those counters has moved on, so a tag edit doesn't invalidate a cached date search.
+ * The least recently used entries are evicted once the cache holds too many entries
+ * or too many photos in total.
+ *
+ * @author Group 60
+ */
+public class QueryCache {
+    /** Dependency flag for searches that read photo tags. */
+    static final int TAGS = 1;
+    /** Dependency flag for searches that read photo dates. */
+    static final int DATES = 2;
+    /** Dependency flag for searches that read photo captions. */
+    static final int CAPTIONS = 4;
+
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final int DEFAULT_MAX_PHOTOS = 1_000_000;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private int maxPhotos = DEFAULT_MAX_PHOTOS;
+    private long cachedPhotos;
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+
+    /**
+     * A cached result and the index counters it was computed at.
+     */
+    private static class Entry {
+        final List<Photo> photos;
+        final int dependencies;
+        final long[] versions;
+
+        Entry(List<Photo> photos, int dependencies, long[] versions) {
+            this.photos = photos;
+            this.dependencies = dependencies;
+            this.versions = versions.clone();
+        }
+
+        /**
+         * Checks whether the parts of the index this result depends on are unchanged.
+         * Counter 0 tracks which photos are indexed, and counter i tracks the part
+         * named by dependency flag 1 &lt;&lt; (i - 1).
+         */
+        boolean isCurrent(long[] current) {
+            for (int i = 0; i < current.length; i++) {
+                boolean relevant = i == 0 || (dependencies & (1 << (i - 1))) != 0;
+                if (relevant && versions[i] != current[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Gets a cached result if it is still current.
+     *
+     * @param key the normalized search
+     * @param versions the index's current modification counters
+     * @return the cached photos, or null on a miss
+     */
+    synchronized List<Photo> get(String key, long[] versions) {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.isCurrent(versions)) {
+            remove(key);
+            invalidations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.photos;
+    }
+
+    /**
+     * Caches a result, evicting the least recently used results if the cache is full.
+     * Results larger than the whole cache are not cached.
+     *
+     * @param key the normalized search
+     * @param dependencies the dependency flags of the search
+     * @param versions the index's modification counters the result was computed at
+     * @param photos the result, which the cache takes ownership of
+     */
+    synchronized void put(String key, int dependencies, long[] versions, List<Photo> photos) {
+        remove(key);
+        if (photos.size() > maxPhotos || maxEntries == 0) {
+            return;
+        }
+        entries.put(key, new Entry(photos, dependencies, versions));
+        cachedPhotos += photos.size();
+        evict();
+    }
+
+    /**
+     * Sets how much the cache may hold, evicting results if it now holds too much.
+     *
+     * @param maxEntries the maximum number of cached results
+     * @param maxPhotos the maximum total number of photos across cached results
+     */
+    public synchronized void setLimits(int maxEntries, int maxPhotos) {
+        this.maxEntries = maxEntries;
+        this.maxPhotos = maxPhotos;
+        evict();
+    }
+
+    /**
+     * Discards every cached result. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedPhotos = 0;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return the entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of searches answered from the cache.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of searches that had to be evaluated.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of cached results discarded because the index changed.
+     *
+     * @return the invalidation count
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Gets the number of cached results discarded to stay within the limits.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the fraction of searches answered from the cache.
+     *
+     * @return the hit rate between 0 and 1, or 0 if nothing has been searched
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Summarizes the cache's contents and statistics.
+     *
+     * @return a one-line summary
+     */
+    @Override
+    public synchronized String toString() {
+        return entries.size() + " results, " + hits + " hits, " + misses + " misses ("
+            + Math.round(getHitRate() * 100) + "% hit rate), " + invalidations + " invalidated, "
+            + evictions + " evicted";
+    }
+
+    /**
+     * Removes a cached result.
+     */
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            cachedPhotos -= entry.photos.size();
+        }
+    }
+
+    /**
+     * Evicts the least recently used results until the cache is within its limits.
+     */
+    private void evict() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext() && (entries.size() > maxEntries || cachedPhotos > maxPhotos)) {
+            cachedPhotos -= eldest.next().photos.size();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
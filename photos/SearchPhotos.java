@@ -3,14 +3,121 @@ package photos;
 import java.io.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
 
 /**
  * Utility class for searching photos based on various criteria.
  * Supports date range searches, tag-based searches, and conjunctions/disjunctions.
+ * Searches can scan a list of photos or use a user's {@link PhotoIndex}; index searches
+ * are answered from the index's {@link QueryCache} when the same search was run before
+ * and the photos it depends on haven't changed since.
+ * Scans of large lists are split across a fork/join pool; results keep the order
+ * of the input list either way.
  * 
  * @author Group 60
  */
 public class SearchPhotos {
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static volatile ForkJoinPool searchPool = ForkJoinPool.commonPool();
+    private static volatile int parallelThreshold = 20_000;
+
+    /**
+     * Filters part of a photo list, splitting the range in half until each piece
+     * is small enough to scan directly.
+     */
+    private static class FilterTask extends RecursiveTask<List<Photo>> {
+        private static final long serialVersionUID = 1L;
+
+        // Tasks are never serialized; ForkJoinTask is Serializable only by inheritance
+        private final transient List<Photo> photos;
+        private final transient Predicate<Photo> predicate;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        FilterTask(List<Photo> photos, Predicate<Photo> predicate, int from, int to, int chunkSize) {
+            this.photos = photos;
+            this.predicate = predicate;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected List<Photo> compute() {
+            if (to - from <= chunkSize) {
+                return filterRange(photos, predicate, from, to);
+            }
+            int mid = (from + to) >>> 1;
+            FilterTask left = new FilterTask(photos, predicate, from, mid, chunkSize);
+            left.fork();
+            List<Photo> right = new FilterTask(photos, predicate, mid, to, chunkSize).compute();
+            List<Photo> results = left.join();
+            results.addAll(right);
+            return results;
+        }
+    }
+
+    /**
+     * Sets the pool that large list searches run in.
+     *
+     * @param pool the pool; a pool with a parallelism of 1 makes every search sequential
+     */
+    public static void setSearchPool(ForkJoinPool pool) {
+        searchPool = pool;
+    }
+
+    /**
+     * Sets the list size from which searches run in parallel.
+     *
+     * @param threshold the minimum number of photos for a parallel search
+     */
+    public static void setParallelThreshold(int threshold) {
+        parallelThreshold = threshold;
+    }
+
+    /**
+     * Finds the photos in a list that match a predicate, in list order.
+     * Lists of at least the parallel threshold are scanned in parallel when the search
+     * pool has more than one thread; the predicate must then be safe to call concurrently.
+     *
+     * @param photos the list of photos to search
+     * @param predicate the condition a photo must meet
+     * @return a list of matching photos
+     */
+    public static List<Photo> filter(List<Photo> photos, Predicate<Photo> predicate) {
+        ForkJoinPool pool = searchPool;
+        if (photos.size() < parallelThreshold || pool.getParallelism() < 2) {
+            return filterRange(photos, predicate, 0, photos.size());
+        }
+        if (!(photos instanceof RandomAccess)) {
+            photos = new ArrayList<>(photos);
+        }
+        int chunkSize = Math.max(parallelThreshold / 4, photos.size() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        return pool.invoke(new FilterTask(photos, predicate, 0, photos.size(), chunkSize));
+    }
+
+    /**
+     * Scans part of a photo list sequentially.
+     *
+     * @param photos the list of photos to search
+     * @param predicate the condition a photo must meet
+     * @param from the first index to scan (inclusive)
+     * @param to the last index to scan (exclusive)
+     * @return a list of matching photos
+     */
+    private static List<Photo> filterRange(List<Photo> photos, Predicate<Photo> predicate, int from, int to) {
+        List<Photo> results = new ArrayList<>();
+        for (Photo photo : from == 0 && to == photos.size() ? photos : photos.subList(from, to)) {
+            if (predicate.test(photo)) {
+                results.add(photo);
+            }
+        }
+        return results;
+    }
 
     /**
      * Searches for photos within a date range.
@@ -21,14 +128,23 @@ public class SearchPhotos {
      * @return a list of photos within the date range
      */
     public static List<Photo> searchByDateRange(List<Photo> photos, LocalDateTime startDate, LocalDateTime endDate) {
-        List<Photo> results = new ArrayList<>();
-        for (Photo photo : photos) {
+        return filter(photos, photo -> {
             LocalDateTime photoDate = photo.getDate();
-            if (!photoDate.isBefore(startDate) && !photoDate.isAfter(endDate)) {
-                results.add(photo);
-            }
-        }
-        return results;
+            return !photoDate.isBefore(startDate) && !photoDate.isAfter(endDate);
+        });
+    }
+
+    /**
+     * Searches an index for photos within a date range.
+     *
+     * @param index the index of the photos to search
+     * @param startDate the start date (inclusive)
+     * @param endDate the end date (inclusive)
+     * @return a list of photos within the date range, sorted by date
+     */
+    public static List<Photo> searchByDateRange(PhotoIndex index, LocalDateTime startDate, LocalDateTime endDate) {
+        return index.cached("date:" + startDate + ".." + endDate, QueryCache.DATES,
+                            () -> index.inDateRange(startDate, endDate));
     }
 
     /**
@@ -40,14 +156,20 @@ public class SearchPhotos {
      * @return a list of photos with the specified tag
      */
     public static List<Photo> searchByTag(List<Photo> photos, String tagType, String tagValue) {
-        List<Photo> results = new ArrayList<>();
         Tag searchTag = new Tag(tagType, tagValue);
-        for (Photo photo : photos) {
-            if (photo.hasTag(searchTag)) {
-                results.add(photo);
-            }
-        }
-        return results;
+        return filter(photos, photo -> photo.hasTag(searchTag));
+    }
+
+    /**
+     * Searches an index for photos with a specific tag.
+     *
+     * @param index the index of the photos to search
+     * @param tagType the tag type
+     * @param tagValue the tag value
+     * @return a list of photos with the specified tag
+     */
+    public static List<Photo> searchByTag(PhotoIndex index, String tagType, String tagValue) {
+        return searchByTagsAnd(index, List.of(new Tag(tagType, tagValue)));
     }
 
     /**
@@ -59,20 +181,26 @@ public class SearchPhotos {
      * @return a list of photos with all specified tags
      */
     public static List<Photo> searchByTagsAnd(List<Photo> photos, List<Tag> tags) {
-        List<Photo> results = new ArrayList<>();
-        for (Photo photo : photos) {
-            boolean hasAllTags = true;
+        return filter(photos, photo -> {
             for (Tag tag : tags) {
                 if (!photo.hasTag(tag)) {
-                    hasAllTags = false;
-                    break;
+                    return false;
                 }
             }
-            if (hasAllTags) {
-                results.add(photo);
-            }
-        }
-        return results;
+            return true;
+        });
+    }
+
+    /**
+     * Searches an index for photos with multiple tags using AND logic.
+     * A photo must have all specified tags to be included.
+     *
+     * @param index the index of the photos to search
+     * @param tags the list of tags (tag type-value pairs)
+     * @return a list of photos with all specified tags
+     */
+    public static List<Photo> searchByTagsAnd(PhotoIndex index, List<Tag> tags) {
+        return index.cached(tagKey("all-tags:", tags), QueryCache.TAGS, () -> index.withAllTags(tags));
     }
 
     /**
@@ -84,16 +212,26 @@ public class SearchPhotos {
      * @return a list of photos with at least one of the specified tags
      */
     public static List<Photo> searchByTagsOr(List<Photo> photos, List<Tag> tags) {
-        List<Photo> results = new ArrayList<>();
-        for (Photo photo : photos) {
+        return filter(photos, photo -> {
             for (Tag tag : tags) {
                 if (photo.hasTag(tag)) {
-                    results.add(photo);
-                    break;
+                    return true;
                 }
             }
-        }
-        return results;
+            return false;
+        });
+    }
+
+    /**
+     * Searches an index for photos with multiple tags using OR logic.
+     * A photo must have at least one of the specified tags to be included.
+     *
+     * @param index the index of the photos to search
+     * @param tags the list of tags (tag type-value pairs)
+     * @return a list of photos with at least one of the specified tags
+     */
+    public static List<Photo> searchByTagsOr(PhotoIndex index, List<Tag> tags) {
+        return index.cached(tagKey("any-tag:", tags), QueryCache.TAGS, () -> index.withAnyTag(tags));
     }
 
     /**
@@ -130,6 +268,289 @@ public class SearchPhotos {
         return searchByTagsOr(photos, tags);
     }
 
+    /**
+     * Searches an index with AND logic using two tag criteria.
+     *
+     * @param index the index of the photos to search
+     * @param tag1Type the first tag type
+     * @param tag1Value the first tag value
+     * @param tag2Type the second tag type
+     * @param tag2Value the second tag value
+     * @return a list of photos with both tags
+     */
+    public static List<Photo> searchByTwoTagsAnd(PhotoIndex index, String tag1Type, String tag1Value, String tag2Type, String tag2Value) {
+        return searchByTagsAnd(index, List.of(new Tag(tag1Type, tag1Value), new Tag(tag2Type, tag2Value)));
+    }
+
+    /**
+     * Searches an index with OR logic using two tag criteria.
+     *
+     * @param index the index of the photos to search
+     * @param tag1Type the first tag type
+     * @param tag1Value the first tag value
+     * @param tag2Type the second tag type
+     * @param tag2Value the second tag value
+     * @return a list of photos with at least one of the tags
+     */
+    public static List<Photo> searchByTwoTagsOr(PhotoIndex index, String tag1Type, String tag1Value, String tag2Type, String tag2Value) {
+        return searchByTagsOr(index, List.of(new Tag(tag1Type, tag1Value), new Tag(tag2Type, tag2Value)));
+    }
+
+    /**
+     * Searches for photos whose captions contain the words of some text, in order.
+     * Matching ignores case and punctuation, and the last word may be the start of a longer word.
+     *
+     * @param photos the list of photos to search
+     * @param text the text to find
+     * @return a list of matching photos, or an empty list if the text has no words
+     */
+    public static List<Photo> searchByCaption(List<Photo> photos, String text) {
+        List<String> phrase = CaptionIndex.tokenize(text);
+        if (phrase.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return filter(photos, photo -> CaptionIndex.contains(photo.getCaption(), phrase, true));
+    }
+
+    /**
+     * Searches an index for photos whose captions contain the words of some text, in order.
+     *
+     * @param index the index of the photos to search
+     * @param text the text to find
+     * @return a list of matching photos, or an empty list if the text has no words
+     */
+    public static List<Photo> searchByCaption(PhotoIndex index, String text) {
+        return index.cached("caption:" + String.join(" ", CaptionIndex.tokenize(text)), QueryCache.CAPTIONS,
+                            () -> index.withCaption(text));
+    }
+
+    /**
+     * Searches an index with a boolean query such as
+     * {@code person=alice AND (location=nyc OR location=sf) AND NOT event=work}.
+     *
+     * @param index the index of the photos to search
+     * @param query the query text; see {@link PhotoQuery} for the syntax
+     * @return a list of matching photos
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static List<Photo> searchByQuery(PhotoIndex index, String query) {
+        return PhotoQuery.parse(query).search(index);
+    }
+
+    /**
+     * Searches a list of photos lazily, scanning only as far as the pages requested.
+     *
+     * @param photos the list of photos to search
+     * @param predicate the condition a photo must meet
+     * @return the search result, in list order
+     */
+    public static SearchResult find(List<Photo> photos, Predicate<Photo> predicate) {
+        return SearchResult.filtering(photos, predicate);
+    }
+
+    /**
+     * Searches an index for photos within a date range, looking them up on first use.
+     *
+     * @param index the index of the photos to search
+     * @param startDate the start date (inclusive)
+     * @param endDate the end date (inclusive)
+     * @return the search result, sorted by date
+     */
+    public static SearchResult findByDateRange(PhotoIndex index, LocalDateTime startDate, LocalDateTime endDate) {
+        return SearchResult.deferred(() -> searchByDateRange(index, startDate, endDate),
+                                     () -> index.countInDateRange(startDate, endDate));
+    }
+
+    /**
+     * Searches an index for photos with all of the given tags, looking them up on first use.
+     *
+     * @param index the index of the photos to search
+     * @param tags the list of tags (tag type-value pairs)
+     * @return the search result
+     */
+    public static SearchResult findByTagsAnd(PhotoIndex index, List<Tag> tags) {
+        return SearchResult.deferred(() -> searchByTagsAnd(index, tags), () -> {
+            int estimate = index.size();
+            for (Tag tag : tags) {
+                estimate = Math.min(estimate, index.countWithTag(tag));
+            }
+            return estimate;
+        });
+    }
+
+    /**
+     * Searches an index for photos with at least one of the given tags, looking them up on first use.
+     *
+     * @param index the index of the photos to search
+     * @param tags the list of tags (tag type-value pairs)
+     * @return the search result
+     */
+    public static SearchResult findByTagsOr(PhotoIndex index, List<Tag> tags) {
+        return SearchResult.deferred(() -> searchByTagsOr(index, tags), () -> {
+            long estimate = 0;
+            for (Tag tag : tags) {
+                estimate += index.countWithTag(tag);
+            }
+            return (int) Math.min(estimate, index.size());
+        });
+    }
+
+    /**
+     * Searches an index for photos whose captions contain the words of some text,
+     * looking them up on first use.
+     *
+     * @param index the index of the photos to search
+     * @param text the text to find
+     * @return the search result
+     */
+    public static SearchResult findByCaption(PhotoIndex index, String text) {
+        return SearchResult.deferred(() -> searchByCaption(index, text), () -> index.estimateWithCaption(text));
+    }
+
+    /**
+     * Searches an index with a boolean query, evaluating it on first use.
+     *
+     * @param index the index of the photos to search
+     * @param query the query text; see {@link PhotoQuery} for the syntax
+     * @return the search result
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static SearchResult findByQuery(PhotoIndex index, String query) {
+        return PhotoQuery.parse(query).execute(index);
+    }
+
+    /**
+     * Finds the newest photos in a list that meet a condition, keeping only the best
+     * candidates in a bounded heap instead of sorting every match.
+     *
+     * @param photos the list of photos to search
+     * @param predicate the condition a photo must meet
+     * @param limit the maximum number of photos to return
+     * @return the newest matching photos, newest first; photos with the same date keep their list order
+     */
+    public static List<Photo> newest(List<Photo> photos, Predicate<Photo> predicate, int limit) {
+        return firstByDate(photos, predicate, limit, true);
+    }
+
+    /**
+     * Finds the oldest photos in a list that meet a condition, keeping only the best
+     * candidates in a bounded heap instead of sorting every match.
+     *
+     * @param photos the list of photos to search
+     * @param predicate the condition a photo must meet
+     * @param limit the maximum number of photos to return
+     * @return the oldest matching photos, oldest first; photos with the same date keep their list order
+     */
+    public static List<Photo> oldest(List<Photo> photos, Predicate<Photo> predicate, int limit) {
+        return firstByDate(photos, predicate, limit, false);
+    }
+
+    /**
+     * Finds the newest indexed photos that meet a condition, walking the date index
+     * from its newest end.
+     *
+     * @param index the index of the photos to search
+     * @param predicate the condition a photo must meet
+     * @param limit the maximum number of photos to return
+     * @return the newest matching photos, newest first
+     */
+    public static List<Photo> newest(PhotoIndex index, Predicate<Photo> predicate, int limit) {
+        return index.firstByDate(predicate, limit, true);
+    }
+
+    /**
+     * Finds the oldest indexed photos that meet a condition, walking the date index
+     * from its oldest end.
+     *
+     * @param index the index of the photos to search
+     * @param predicate the condition a photo must meet
+     * @param limit the maximum number of photos to return
+     * @return the oldest matching photos, oldest first
+     */
+    public static List<Photo> oldest(PhotoIndex index, Predicate<Photo> predicate, int limit) {
+        return index.firstByDate(predicate, limit, false);
+    }
+
+    /**
+     * Finds the newest photos matching a boolean query.
+     *
+     * @param index the index of the photos to search
+     * @param query the query text; see {@link PhotoQuery} for the syntax
+     * @param limit the maximum number of photos to return
+     * @return the newest matching photos, newest first
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static List<Photo> newestByQuery(PhotoIndex index, String query, int limit) {
+        return PhotoQuery.parse(query).newest(index, limit);
+    }
+
+    /**
+     * Finds the oldest photos matching a boolean query.
+     *
+     * @param index the index of the photos to search
+     * @param query the query text; see {@link PhotoQuery} for the syntax
+     * @param limit the maximum number of photos to return
+     * @return the oldest matching photos, oldest first
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static List<Photo> oldestByQuery(PhotoIndex index, String query, int limit) {
+        return PhotoQuery.parse(query).oldest(index, limit);
+    }
+
+    /**
+     * Finds the first matching photos of a list in date order.
+     * The heap's head is the worst of the best photos found so far, so each match
+     * either replaces it or is discarded, in O(log limit) time.
+     *
+     * @param photos the list of photos to search
+     * @param predicate the condition a photo must meet
+     * @param limit the maximum number of photos to return
+     * @param newest true to order newest first, false for oldest first
+     * @return the photos, in that date order
+     */
+    private static List<Photo> firstByDate(List<Photo> photos, Predicate<Photo> predicate, int limit, boolean newest) {
+        List<Photo> source = photos instanceof RandomAccess ? photos : new ArrayList<>(photos);
+        Comparator<Integer> byDate = (a, b) -> source.get(a).getDate().compareTo(source.get(b).getDate());
+        Comparator<Integer> order = (newest ? byDate.reversed() : byDate).thenComparingInt(i -> i);
+
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.max(1, limit), order.reversed());
+        for (int i = 0; i < source.size() && limit > 0; i++) {
+            if (!predicate.test(source.get(i))) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(i);
+            } else if (order.compare(i, best.peek()) < 0) {
+                best.poll();
+                best.add(i);
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(best);
+        ranked.sort(order);
+        List<Photo> result = new ArrayList<>(ranked.size());
+        for (int i : ranked) {
+            result.add(source.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Builds the cache key of a tag search, listing the tags in a fixed order so
+     * the same tags given in a different order share a cache entry.
+     *
+     * @param kind the kind of tag search
+     * @param tags the tags
+     * @return the cache key
+     */
+    private static String tagKey(String kind, Collection<Tag> tags) {
+        List<String> parts = new ArrayList<>();
+        for (Tag tag : tags) {
+            parts.add(tag.getType().length() + ":" + tag.getType() + tag.getValue().length() + ":" + tag.getValue());
+        }
+        Collections.sort(parts);
+        return kind + String.join("", parts);
+    }
+
     /**
      * Gets all unique tag types from a list of photos.
      *
@@ -139,8 +560,8 @@ public class SearchPhotos {
     public static List<String> getAllTagTypes(List<Photo> photos) {
         Set<String> tagTypes = new HashSet<>();
         for (Photo photo : photos) {
-            for (Tag tag : photo.getTags()) {
-                tagTypes.add(tag.getType());
+            for (int i = 0; i < photo.getTagCount(); i++) {
+                tagTypes.add(photo.getTag(i).getType());
             }
         }
         List<String> result = new ArrayList<>(tagTypes);
@@ -158,7 +579,8 @@ public class SearchPhotos {
     public static List<String> getTagValues(List<Photo> photos, String tagType) {
         Set<String> values = new HashSet<>();
         for (Photo photo : photos) {
-            for (Tag tag : photo.getTags()) {
+            for (int i = 0; i < photo.getTagCount(); i++) {
+                Tag tag = photo.getTag(i);
                 if (tag.getType().equals(tagType)) {
                     values.add(tag.getValue());
                 }
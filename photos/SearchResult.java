@@ -0,0 +1,216 @@
+package photos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The photos matching a search, fetched as they are needed.
+ * A result over a photo list scans the list only as far as the pages requested so far,
+ * and a result over an index runs its lookup the first time a photo is requested.
+ * Until then, {@link #estimatedSize()} gives an estimate of the total count.
+ * A search result is meant to be used by one thread.
+ *
+ * @author Group 60
+ */
+public class SearchResult implements Iterable<Photo> {
+    private final List<Photo> source;
+    private final Predicate<Photo> predicate;
+    private Supplier<List<Photo>> lookup;
+    private final IntSupplier estimator;
+
+    private List<Photo> fetched;
+    private int scanned;
+    private boolean complete;
+
+    private SearchResult(List<Photo> source, Predicate<Photo> predicate,
+                         Supplier<List<Photo>> lookup, IntSupplier estimator) {
+        this.source = source;
+        this.predicate = predicate;
+        this.lookup = lookup;
+        this.estimator = estimator;
+        this.fetched = new ArrayList<>();
+    }
+
+    /**
+     * Creates a result that scans a photo list lazily.
+     *
+     * @param photos the photos to search
+     * @param predicate the condition a photo must meet
+     * @return the search result
+     */
+    public static SearchResult filtering(List<Photo> photos, Predicate<Photo> predicate) {
+        List<Photo> source = photos instanceof RandomAccess ? photos : new ArrayList<>(photos);
+        return new SearchResult(source, predicate, null, null);
+    }
+
+    /**
+     * Creates a result whose photos are looked up on first use.
+     *
+     * @param lookup computes the matching photos, in result order
+     * @param estimator estimates the number of matching photos without computing them
+     * @return the search result
+     */
+    public static SearchResult deferred(Supplier<List<Photo>> lookup, IntSupplier estimator) {
+        return new SearchResult(null, null, lookup, estimator);
+    }
+
+    /**
+     * Creates a result from photos that have already been found.
+     *
+     * @param photos the matching photos, in result order
+     * @return the search result
+     */
+    public static SearchResult of(List<Photo> photos) {
+        SearchResult result = new SearchResult(null, null, null, null);
+        result.fetched = photos;
+        result.complete = true;
+        return result;
+    }
+
+    /**
+     * Gets a page of matching photos.
+     *
+     * @param offset the number of matching photos to skip
+     * @param limit the maximum number of photos to return
+     * @return the photos, which may be fewer than the limit at the end of the result
+     */
+    public List<Photo> page(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit");
+        }
+        fetch((int) Math.min(Integer.MAX_VALUE, (long) offset + limit));
+        int from = Math.min(offset, fetched.size());
+        int to = Math.min(from + limit, fetched.size());
+        return Collections.unmodifiableList(fetched.subList(from, to));
+    }
+
+    /**
+     * Gets the number of matching photos, finishing the search if needed.
+     *
+     * @return the photo count
+     */
+    public int size() {
+        fetch(Integer.MAX_VALUE);
+        return fetched.size();
+    }
+
+    /**
+     * Checks whether the search found no photos.
+     *
+     * @return true if there are no matching photos
+     */
+    public boolean isEmpty() {
+        fetch(1);
+        return fetched.isEmpty();
+    }
+
+    /**
+     * Estimates the number of matching photos without finishing the search.
+     * The estimate is exact once the search is complete; while a photo list is being
+     * scanned, it extrapolates the matches found so far over the rest of the list.
+     *
+     * @return the estimated photo count
+     */
+    public int estimatedSize() {
+        if (complete) {
+            return fetched.size();
+        }
+        if (lookup != null) {
+            return estimator.getAsInt();
+        }
+        if (scanned == 0) {
+            return source.size();
+        }
+        return (int) Math.round((double) fetched.size() * source.size() / scanned);
+    }
+
+    /**
+     * Checks whether every matching photo has been found.
+     *
+     * @return true if the search is complete
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Gets all matching photos, finishing the search if needed.
+     *
+     * @return an unmodifiable list of the photos
+     */
+    public List<Photo> toList() {
+        fetch(Integer.MAX_VALUE);
+        return Collections.unmodifiableList(fetched);
+    }
+
+    /**
+     * Iterates over the matching photos, searching further only as the iteration advances.
+     *
+     * @return an iterator
+     */
+    @Override
+    public Iterator<Photo> iterator() {
+        return new Iterator<Photo>() {
+            private int position;
+
+            @Override
+            public boolean hasNext() {
+                fetch(position + 1);
+                return position < fetched.size();
+            }
+
+            @Override
+            public Photo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return fetched.get(position++);
+            }
+        };
+    }
+
+    /**
+     * Streams the matching photos lazily, so {@code stream().limit(n)} searches only
+     * as far as needed to find n photos.
+     *
+     * @return an ordered stream of the photos
+     */
+    public Stream<Photo> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Searches until at least a number of photos have been found or the search is complete.
+     *
+     * @param count the number of photos wanted
+     */
+    private void fetch(int count) {
+        if (complete || fetched.size() >= count) {
+            return;
+        }
+        if (lookup != null) {
+            fetched = lookup.get();
+            lookup = null;
+            complete = true;
+            return;
+        }
+        while (fetched.size() < count && scanned < source.size()) {
+            Photo photo = source.get(scanned++);
+            if (predicate.test(photo)) {
+                fetched.add(photo);
+            }
+        }
+        complete = scanned == source.size();
+    }
+}
@@ -0,0 +1,404 @@
+package photos;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * An album whose photos are the user's photos matching a stored query.
+ * Photos can't be added to or removed from a smart album directly; instead the user's
+ * {@link PhotoIndex} evaluates the query once when the album is attached to it, then
+ * re-checks individual photos as they gain or lose tags or change caption or date,
+ * or are added to or removed from the user's albums.
+ * A smart album read from disk reports the photo count and date range stored with it
+ * until its photos are first needed, so listing it is as cheap as listing a normal album;
+ * changes replayed from the journal since that snapshot show once it is evaluated.
+ *
+ * @author Group 60
+ */
+public class SmartAlbum extends Album {
+    private static final long serialVersionUID = 1L;
+
+    private final String query;
+
+    private transient PhotoQuery parsed;
+    private transient Supplier<PhotoIndex> source;
+    private transient PhotoSequence members;
+    private transient boolean evaluated;
+    private transient int storedCount;
+    private transient LocalDateTime storedEarliest;
+    private transient LocalDateTime storedLatest;
+    private transient long storedBytes;
+
+    /**
+     * Constructs a smart album.
+     *
+     * @param name the name of the album
+     * @param query the query selecting the album's photos; see {@link PhotoQuery} for the syntax
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public SmartAlbum(String name, String query) {
+        super(name);
+        this.parsed = PhotoQuery.parse(query);
+        this.query = query;
+        this.storedCount = -1;
+    }
+
+    /**
+     * Creates a smart album that was saved with a known photo count, date range and size.
+     *
+     * @param name the name of the album
+     * @param query the query selecting the album's photos
+     * @param photoCount the number of photos when the album was saved
+     * @param earliest the earliest photo date when the album was saved, or null if it was empty
+     * @param latest the latest photo date when the album was saved, or null if it was empty
+     * @param totalBytes the total file size of the photos when the album was saved
+     * @return the album
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public static SmartAlbum deferred(String name, String query, int photoCount,
+                                      LocalDateTime earliest, LocalDateTime latest, long totalBytes) {
+        SmartAlbum album = new SmartAlbum(name, query);
+        album.storedCount = photoCount;
+        album.storedEarliest = earliest;
+        album.storedLatest = latest;
+        album.storedBytes = totalBytes;
+        return album;
+    }
+
+    /**
+     * Gets the query selecting this album's photos.
+     *
+     * @return the query text
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Sets where this album gets the index it is evaluated against the first time its
+     * photos are needed. Getting the index is expected to attach this album to it.
+     *
+     * @param source supplies the owning user's photo index
+     */
+    public synchronized void bind(Supplier<PhotoIndex> source) {
+        this.source = source;
+    }
+
+    /**
+     * Checks whether this album's photos have been found.
+     *
+     * @return true if the album has been evaluated against its user's index
+     */
+    @Override
+    public synchronized boolean isLoaded() {
+        return evaluated;
+    }
+
+    /**
+     * A smart album's photos are never read from disk.
+     *
+     * @return null
+     */
+    @Override
+    public AlbumLoader getLoader() {
+        return null;
+    }
+
+    /**
+     * Gets all photos in this album, evaluating its query if needed.
+     *
+     * @return a list of photos
+     */
+    @Override
+    public List<Photo> getPhotos() {
+        ensureEvaluated();
+        synchronized (this) {
+            return members.toList();
+        }
+    }
+
+    /**
+     * Performs an action for each photo in this album, evaluating its query if needed.
+     * The photos are copied first, since the index may update them while the action
+     * runs and the action must not be run holding this album's lock.
+     *
+     * @param action the action
+     */
+    @Override
+    public void forEachPhoto(Consumer<? super Photo> action) {
+        getPhotos().forEach(action);
+    }
+
+    /**
+     * Gets the number of photos in this album.
+     * Before the album is evaluated, this is the count it was saved with.
+     *
+     * @return the photo count
+     */
+    @Override
+    public int getPhotoCount() {
+        synchronized (this) {
+            if (!evaluated && storedCount >= 0) {
+                return storedCount;
+            }
+        }
+        ensureEvaluated();
+        synchronized (this) {
+            return members.size();
+        }
+    }
+
+    /**
+     * Photos can't be added to a smart album directly.
+     *
+     * @param photo the photo
+     * @return false
+     */
+    @Override
+    public boolean addPhoto(Photo photo) {
+        return false;
+    }
+
+    /**
+     * Photos can't be added to a smart album directly.
+     *
+     * @param newPhotos the photos
+     * @return 0
+     */
+    @Override
+    public int addPhotos(Collection<Photo> newPhotos) {
+        return 0;
+    }
+
+    /**
+     * Photos can't be removed from a smart album directly.
+     *
+     * @param photo the photo
+     * @return false
+     */
+    @Override
+    public boolean removePhoto(Photo photo) {
+        return false;
+    }
+
+    /**
+     * Checks if this album contains a specific photo.
+     *
+     * @param photo the photo to check
+     * @return true if the photo matches the album's query
+     */
+    @Override
+    public boolean containsPhoto(Photo photo) {
+        ensureEvaluated();
+        synchronized (this) {
+            return members.contains(photo);
+        }
+    }
+
+    /**
+     * Finds a photo in this album by its file path.
+     *
+     * @param filePath the file path of the photo
+     * @return the photo, or null if the album doesn't contain it
+     */
+    @Override
+    public Photo findPhoto(String filePath) {
+        ensureEvaluated();
+        synchronized (this) {
+            return members.find(filePath);
+        }
+    }
+
+    /**
+     * Gets the earliest date among all photos in the album.
+     * Before the album is evaluated, this is the date it was saved with.
+     *
+     * @return the earliest date, or null if the album has no photos
+     */
+    @Override
+    public LocalDateTime getEarliestDate() {
+        synchronized (this) {
+            if (!evaluated && storedCount >= 0) {
+                return storedEarliest;
+            }
+        }
+        ensureEvaluated();
+        synchronized (this) {
+            return members.earliest();
+        }
+    }
+
+    /**
+     * Gets the latest date among all photos in the album.
+     * Before the album is evaluated, this is the date it was saved with.
+     *
+     * @return the latest date, or null if the album has no photos
+     */
+    @Override
+    public LocalDateTime getLatestDate() {
+        synchronized (this) {
+            if (!evaluated && storedCount >= 0) {
+                return storedLatest;
+            }
+        }
+        ensureEvaluated();
+        synchronized (this) {
+            return members.latest();
+        }
+    }
+
+    /**
+     * Gets the total size of the photo files in the album.
+     * Before the album is evaluated, this is the size it was saved with.
+     *
+     * @return the size in bytes
+     */
+    @Override
+    public long getTotalBytes() {
+        synchronized (this) {
+            if (!evaluated && storedCount >= 0) {
+                return storedBytes;
+            }
+        }
+        ensureEvaluated();
+        synchronized (this) {
+            return members.totalBytes();
+        }
+    }
+
+    /**
+     * Gets an immutable snapshot of this album's name, query and statistics.
+     * The query is never evaluated here, since snapshots are taken on the saving thread.
+     * Before the album is evaluated, the statistics are the ones it was saved with, or a
+     * photo count of -1 if it has never been evaluated or saved with statistics.
+     *
+     * @return the snapshot, which has no photos
+     */
+    @Override
+    public AlbumSnapshot snapshot() {
+        long id = ensureId();
+        synchronized (this) {
+            if (!evaluated) {
+                return new AlbumSnapshot(getName(), id, query, storedCount, storedEarliest,
+                                         storedLatest, storedBytes, null, null);
+            }
+            return new AlbumSnapshot(getName(), id, query, members.size(), members.earliest(),
+                                     members.latest(), members.totalBytes(), null, null);
+        }
+    }
+
+    /**
+     * Gets a photo by index.
+     *
+     * @param index the index of the photo
+     * @return the photo at the specified index
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    @Override
+    public Photo getPhotoAt(int index) {
+        ensureEvaluated();
+        synchronized (this) {
+            return members.get(index);
+        }
+    }
+
+    /**
+     * Sets this album's photos to the result of evaluating its query.
+     *
+     * @param matches the matching photos
+     */
+    synchronized void evaluated(List<Photo> matches) {
+        if (members != null) {
+            members.detach();
+        }
+        members = new PhotoSequence();
+        for (Photo photo : matches) {
+            members.add(photo);
+        }
+        evaluated = true;
+    }
+
+    /**
+     * Re-checks a photo against this album's query, adding or removing it as needed.
+     *
+     * @param photo the photo
+     */
+    synchronized void update(Photo photo) {
+        if (!evaluated) {
+            return;
+        }
+        if (parsed.matches(photo)) {
+            members.add(photo);
+        } else {
+            members.remove(photo);
+        }
+    }
+
+    /**
+     * Stops this album's photos reporting their changes to it once the index no longer
+     * updates it.
+     */
+    synchronized void detach() {
+        if (members != null) {
+            members.detach();
+        }
+    }
+
+    /**
+     * Removes a photo that is no longer in any of the user's albums.
+     *
+     * @param photo the photo
+     */
+    synchronized void exclude(Photo photo) {
+        if (evaluated) {
+            members.remove(photo);
+        }
+    }
+
+    /**
+     * Gets this album's parsed query.
+     *
+     * @return the query
+     */
+    PhotoQuery getPhotoQuery() {
+        return parsed;
+    }
+
+    /**
+     * Evaluates this album's query against its user's index if that hasn't happened yet.
+     * No lock on this album is held while getting or attaching to the index, since the
+     * index locks itself and then the album when it updates the album.
+     *
+     * @throws IllegalStateException if the album has never been bound to a user
+     */
+    private void ensureEvaluated() {
+        Supplier<PhotoIndex> indexSource;
+        synchronized (this) {
+            if (evaluated) {
+                return;
+            }
+            indexSource = source;
+        }
+        if (indexSource == null) {
+            throw new IllegalStateException("Smart album '" + getName() + "' does not belong to a user");
+        }
+        PhotoIndex index = indexSource.get();
+        if (!isLoaded()) {
+            index.addAlbum(this);
+        }
+    }
+
+    /**
+     * Restores the parsed query after deserialization.
+     *
+     * @return this album
+     */
+    private Object readResolve() {
+        parsed = PhotoQuery.parse(query);
+        storedCount = -1;
+        return this;
+    }
+}
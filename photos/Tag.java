@@ -1,64 +1,131 @@
 package photos;
 
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
 
 /**
  * Represents a tag that can be applied to a photo.
  * A tag consists of a type (e.g., "location", "person") and a value (e.g., "Prague", "Alice").
+ * Tags are immutable. Photos hold canonical instances from a process-wide weak dictionary, so
+ * a tag used on many photos is stored once, and a tag no photo uses any more can be garbage
+ * collected; see {@link #of(String, String)}. Photos sort their tags by type and then value,
+ * which doesn't depend on when a tag was first used or whether it has been collected since.
  * 
  * @author Group 60
  */
 public class Tag implements Serializable {
     private static final long serialVersionUID = 1L;
-    
-    private String type;
-    private String value;
+
+    /** Orders tags by type, then by value. */
+    static final Comparator<Tag> BY_NAME = Comparator.comparing(Tag::getType).thenComparing(Tag::getValue);
+
+    private static final Map<Tag, WeakReference<Tag>> pool = new WeakHashMap<>();
+
+    private final String type;
+    private final String value;
+    private final transient int hash;
+    private final transient boolean canonical;
 
     /**
      * Constructs a Tag with the specified type and value.
+     * Photos intern the tags added to them, so constructing a tag to add or look up is fine;
+     * use {@link #of(String, String)} to hold on to tags.
      *
      * @param type the tag type (e.g., "location", "person")
      * @param value the tag value (e.g., "Prague", "Alice")
      */
     public Tag(String type, String value) {
+        this(type, value, false);
+    }
+
+    /**
+     * Constructs a tag, marking whether it is the canonical instance.
+     *
+     * @param type the tag type
+     * @param value the tag value
+     * @param canonical whether the tag is the dictionary's shared instance
+     */
+    private Tag(String type, String value, boolean canonical) {
         this.type = type;
         this.value = value;
+        this.hash = 31 * Objects.hashCode(type) + Objects.hashCode(value);
+        this.canonical = canonical;
     }
 
     /**
-     * Gets the tag type.
+     * Gets the canonical tag with the specified type and value.
      *
-     * @return the tag type
+     * @param type the tag type
+     * @param value the tag value
+     * @return the shared tag instance
      */
-    public String getType() {
-        return type;
+    public static Tag of(String type, String value) {
+        return new Tag(type, value).intern();
     }
 
     /**
-     * Sets the tag type.
+     * Gets the canonical tag equal to this one, creating it if there is none.
      *
-     * @param type the tag type
+     * @return the shared tag instance
      */
-    public void setType(String type) {
-        this.type = type;
+    public Tag intern() {
+        if (canonical) {
+            return this;
+        }
+        synchronized (pool) {
+            Tag shared = lookup();
+            if (shared == null) {
+                shared = new Tag(type, value, true);
+                pool.put(shared, new WeakReference<>(shared));
+            }
+            return shared;
+        }
     }
 
     /**
-     * Gets the tag value.
+     * Gets the canonical tag equal to this one without creating one.
      *
-     * @return the tag value
+     * @return the shared tag instance, or null if no photo has this tag
      */
-    public String getValue() {
-        return value;
+    Tag canonical() {
+        if (canonical) {
+            return this;
+        }
+        synchronized (pool) {
+            return lookup();
+        }
     }
 
     /**
-     * Sets the tag value.
+     * Looks this tag up in the dictionary; the caller holds the dictionary's lock.
      *
-     * @param value the tag value
+     * @return the shared tag instance, or null if there is none
      */
-    public void setValue(String value) {
-        this.value = value;
+    private Tag lookup() {
+        WeakReference<Tag> reference = pool.get(this);
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * Gets the tag type.
+     *
+     * @return the tag type
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Gets the tag value.
+     *
+     * @return the tag value
+     */
+    public String getValue() {
+        return value;
     }
 
     /**
@@ -73,17 +140,17 @@ public class Tag implements Serializable {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Tag tag = (Tag) obj;
-        return type.equals(tag.type) && value.equals(tag.value);
+        return hash == tag.hash && type.equals(tag.type) && value.equals(tag.value);
     }
 
     /**
-     * Returns a hash code for this tag.
+     * Returns a hash code for this tag, computed when the tag was created.
      *
      * @return the hash code
      */
     @Override
     public int hashCode() {
-        return (type + value).hashCode();
+        return hash;
     }
 
     /**
@@ -95,4 +162,13 @@ public class Tag implements Serializable {
     public String toString() {
         return type + ":" + value;
     }
+
+    /**
+     * Replaces a deserialized tag with the canonical instance, which also restores the hash.
+     *
+     * @return the canonical tag
+     */
+    private Object readResolve() {
+        return of(type, value);
+    }
 }
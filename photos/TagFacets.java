@@ -0,0 +1,116 @@
+package photos;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The tag types and values used across a user's photos, with the number of photos
+ * carrying each tag. It is kept up to date by the user's {@link PhotoIndex} as tags
+ * and photos are added and removed, so listing or completing types and values costs
+ * time proportional to the strings returned rather than to the size of the library.
+ *
+ * @author Group 60
+ */
+public class TagFacets {
+    private final PrefixTrie types = new PrefixTrie();
+    private final Map<String, PrefixTrie> values = new HashMap<>();
+
+    /**
+     * Gets every tag type in use.
+     *
+     * @return the tag types, sorted
+     */
+    public synchronized List<String> getTypes() {
+        return types.complete("", Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets every value in use for a tag type.
+     *
+     * @param type the tag type
+     * @return the values, sorted
+     */
+    public synchronized List<String> getValues(String type) {
+        return completeValues(type, "", Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the tag types starting with a prefix.
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of types to return
+     * @return the tag types, sorted
+     */
+    public synchronized List<String> completeTypes(String prefix, int limit) {
+        return types.complete(prefix, limit);
+    }
+
+    /**
+     * Finds the values of a tag type that start with a prefix.
+     *
+     * @param type the tag type
+     * @param prefix the prefix
+     * @param limit the maximum number of values to return
+     * @return the values, sorted
+     */
+    public synchronized List<String> completeValues(String type, String prefix, int limit) {
+        PrefixTrie trie = values.get(type);
+        return trie == null ? List.of() : trie.complete(prefix, limit);
+    }
+
+    /**
+     * Gets the number of photos carrying a tag.
+     *
+     * @param type the tag type
+     * @param value the tag value
+     * @return the photo count
+     */
+    public synchronized int count(String type, String value) {
+        PrefixTrie trie = values.get(type);
+        return trie == null ? 0 : trie.count(value);
+    }
+
+    /**
+     * Gets the number of distinct values in use for a tag type.
+     *
+     * @param type the tag type
+     * @return the value count
+     */
+    public synchronized int countValues(String type) {
+        PrefixTrie trie = values.get(type);
+        return trie == null ? 0 : trie.size();
+    }
+
+    /**
+     * Records that a photo gained a tag.
+     *
+     * @param tag the tag
+     */
+    synchronized void add(Tag tag) {
+        PrefixTrie trie = values.computeIfAbsent(tag.getType(), t -> new PrefixTrie());
+        if (trie.count(tag.getValue()) == 0) {
+            types.increment(tag.getType());
+        }
+        trie.increment(tag.getValue());
+    }
+
+    /**
+     * Records that a photo lost a tag.
+     *
+     * @param tag the tag
+     */
+    synchronized void remove(Tag tag) {
+        PrefixTrie trie = values.get(tag.getType());
+        if (trie == null || trie.count(tag.getValue()) == 0) {
+            return;
+        }
+        trie.decrement(tag.getValue());
+        if (trie.count(tag.getValue()) == 0) {
+            types.decrement(tag.getType());
+            if (trie.size() == 0) {
+                values.remove(tag.getType());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package photos;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index from tags to the ordinals of the photos that carry them.
+ * Conjunctions intersect posting lists starting from the smallest, and
+ * disjunctions take their union.
+ *
+ * @author Group 60
+ */
+class TagIndex {
+    private final Map<Tag, PostingList> postings = new HashMap<>();
+
+    /**
+     * Records that a photo carries a tag.
+     *
+     * @param tag the tag
+     * @param ordinal the photo's ordinal
+     */
+    void add(Tag tag, int ordinal) {
+        postings.computeIfAbsent(tag, t -> new PostingList()).add(ordinal);
+    }
+
+    /**
+     * Records that a photo no longer carries a tag.
+     *
+     * @param tag the tag
+     * @param ordinal the photo's ordinal
+     */
+    void remove(Tag tag, int ordinal) {
+        PostingList list = postings.get(tag);
+        if (list != null && list.remove(ordinal) && list.isEmpty()) {
+            postings.remove(tag);
+        }
+    }
+
+    /**
+     * Gets the number of photos carrying a tag.
+     *
+     * @param tag the tag
+     * @return the photo count
+     */
+    int count(Tag tag) {
+        PostingList list = postings.get(tag);
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Finds the photos carrying every one of the given tags.
+     *
+     * @param tags the tags
+     * @return the ordinals of the matching photos
+     */
+    BitSet matchAll(Collection<Tag> tags) {
+        List<PostingList> lists = new ArrayList<>(tags.size());
+        for (Tag tag : tags) {
+            PostingList list = postings.get(tag);
+            if (list == null) {
+                return new BitSet();
+            }
+            lists.add(list);
+        }
+        if (lists.isEmpty()) {
+            return new BitSet();
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+
+        BitSet result = lists.get(0).toBitSet();
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            lists.get(i).andInto(result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the photos carrying at least one of the given tags.
+     *
+     * @param tags the tags
+     * @return the ordinals of the matching photos
+     */
+    BitSet matchAny(Collection<Tag> tags) {
+        BitSet result = new BitSet();
+        for (Tag tag : tags) {
+            PostingList list = postings.get(tag);
+            if (list != null) {
+                list.orInto(result);
+            }
+        }
+        return result;
+    }
+}
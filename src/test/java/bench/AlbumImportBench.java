@@ -0,0 +1,79 @@
+package bench;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import photos.Album;
+import photos.Photo;
+
+/**
+ * Times importing photos into one album one at a time, then looking up and removing
+ * photos from it, which used to scan the album's photo list on every call.
+ * Run from the project root after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes bench.AlbumImportBench [photos...]}.
+ *
+ * @author Group 60
+ */
+public class AlbumImportBench {
+    private static final int LOOKUPS = 1000;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args photo counts to measure, 100000 by default
+     */
+    public static void main(String[] args) {
+        String[] sizes = args.length > 0 ? args : new String[] {"100000"};
+        for (String size : sizes) {
+            int photoCount = Integer.parseInt(size);
+            // Warm up on a smaller album so the measured round runs compiled code
+            run(Math.min(photoCount, 10_000), false);
+            run(photoCount, true);
+        }
+    }
+
+    /**
+     * Measures one album size.
+     *
+     * @param photoCount the number of photos to import
+     * @param report whether to print the timings
+     */
+    private static void run(int photoCount, boolean report) {
+        List<Photo> photos = new ArrayList<>(photoCount);
+        for (int i = 0; i < photoCount; i++) {
+            photos.add(new Photo("C:\\Users\\someone\\Pictures\\import\\IMG_" + i + ".jpg",
+                                 LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i), 100_000 + i));
+        }
+        Album album = new Album("import");
+
+        long start = System.nanoTime();
+        for (Photo photo : photos) {
+            album.addPhoto(photo);
+        }
+        long add = System.nanoTime() - start;
+
+        // Look up and remove photos spread over the album, not just its ends
+        int step = Math.max(1, photoCount / LOOKUPS);
+        int found = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < photoCount; i += step) {
+            if (album.containsPhoto(photos.get(i))) {
+                found++;
+            }
+        }
+        long contains = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < photoCount; i += step) {
+            album.removePhoto(photos.get(i));
+        }
+        long remove = System.nanoTime() - start;
+
+        if (report) {
+            System.out.printf("%,d photos: addPhoto one by one %.1f ms, %,d containsPhoto %.2f ms, "
+                              + "%,d removePhoto %.2f ms (%,d left)%n",
+                              photoCount, add / 1e6, found, contains / 1e6, found, remove / 1e6,
+                              album.getPhotoCount());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import photos.Album;
+import photos.Photo;
+import photos.Tag;
+import users.Mutation;
+import users.User;
+import users.UserManager;
+
+/**
+ * Compares moving and tagging k photos as two batch operations and one save with doing it
+ * one photo at a time, saving after each photo, in an indexed library of 100k photos.
+ * Single-photo runs above {@value #SINGLES_MEASURED} photos are timed on the first
+ * {@value #SINGLES_MEASURED} and extrapolated.
+ * Run from the project root after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes bench.BatchOperationBench [k...]}.
+ * The benchmark user is written to a temporary directory, which is deleted afterwards.
+ *
+ * @author Group 60
+ */
+public class BatchOperationBench {
+    private static final String USERNAME = "bench-batch";
+    private static final int LIBRARY = 100_000;
+    private static final int SINGLES_MEASURED = 2000;
+    private static final Tag TAG = Tag.of("event", "moved");
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args batch sizes to measure, 10, 1000 and 100000 by default
+     * @throws Exception if saving fails
+     */
+    public static void main(String[] args) throws Exception {
+        String[] sizes = args.length > 0 ? args : new String[] {"10", "1000", "100000"};
+        Path directory = Files.createTempDirectory("bench-batch");
+        Path originalDirectory = UserManager.getUsersDirectory();
+        UserManager.setUsersDirectory(directory);
+        try {
+            // Warm up on the smallest size
+            run(Integer.parseInt(sizes[0]), false);
+            for (String size : sizes) {
+                run(Integer.parseInt(size), true);
+            }
+        } finally {
+            UserManager.deleteUser(USERNAME);
+            UserManager.setUsersDirectory(originalDirectory);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Measures one batch size on a fresh library for each approach.
+     *
+     * @param k the number of photos to move and tag
+     * @param report whether to print the timings
+     * @throws Exception if saving fails
+     */
+    private static void run(int k, boolean report) throws Exception {
+        User user = library();
+        List<Photo> photos = user.getAlbum("library").getPhotos().subList(0, k);
+        long start = System.nanoTime();
+        user.movePhotos("library", "dest", photos);
+        user.tagPhotos("dest", photos, TAG);
+        long batch = System.nanoTime() - start;
+        start = System.nanoTime();
+        UserManager.saveUser(user);
+        long save = System.nanoTime() - start;
+
+        user = library();
+        int measured = Math.min(k, SINGLES_MEASURED);
+        photos = user.getAlbum("library").getPhotos().subList(0, measured);
+        start = System.nanoTime();
+        for (Photo photo : photos) {
+            user.movePhotoToAlbum("library", "dest", photo);
+            user.apply(Mutation.addTag("dest", photo, TAG));
+            UserManager.saveUser(user);
+        }
+        double singles = (System.nanoTime() - start) * ((double) k / measured);
+
+        if (report) {
+            System.out.printf("k=%,d: batch %.1f ms + one save %.1f ms, singles %.1f ms%s%n",
+                              k, batch / 1e6, save / 1e6, singles / 1e6,
+                              measured < k ? " (extrapolated from " + measured + ")" : "");
+        }
+    }
+
+    /**
+     * Builds and saves a library with its photo index built, plus an empty destination album.
+     *
+     * @return the user
+     * @throws Exception if saving fails
+     */
+    private static User library() throws Exception {
+        UserManager.deleteUser(USERNAME);
+        User user = new User(USERNAME, "");
+        user.createAlbum("library");
+        user.createAlbum("dest");
+        Album album = user.getAlbum("library");
+        for (int i = 0; i < LIBRARY; i++) {
+            Photo photo = new Photo("/home/user/pictures/img_" + i + ".jpg",
+                                    LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i), 100_000 + i);
+            photo.addTag(new Tag("person", "p" + (i % 20)));
+            album.addPhoto(photo);
+        }
+        user.getPhotoIndex();
+        UserManager.saveUser(user);
+        return user;
+    }
+}
@@ -0,0 +1,81 @@
+package bench;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import photos.Photo;
+import photos.SearchPhotos;
+import photos.Tag;
+
+/**
+ * Compares sequential and fork/join list searches over growing lists, to find where the
+ * parallel path starts to pay off. Each figure is the best of repeated two-tag OR searches.
+ * Run after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes bench.ParallelSearchBench [workers]}.
+ *
+ * @author Group 60
+ */
+public class ParallelSearchBench {
+    private static final int[] SIZES = {1_000, 10_000, 20_000, 100_000, 1_000_000};
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of fork/join workers, 4 by default
+     */
+    public static void main(String[] args) {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        Random random = new Random(4);
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 0, 0);
+        List<Photo> library = new ArrayList<>();
+        for (int i = 0; i < SIZES[SIZES.length - 1]; i++) {
+            Photo photo = new Photo("/x/" + i, base.plusMinutes(random.nextInt(1_000_000)));
+            photo.addTag(new Tag("person", "p" + random.nextInt(1000)));
+            photo.addTag(new Tag("location", "l" + random.nextInt(50)));
+            library.add(photo);
+        }
+        List<Tag> tags = List.of(new Tag("location", "l3"), new Tag("person", "p9"));
+        ForkJoinPool pool = new ForkJoinPool(workers);
+
+        System.out.printf("%d CPUs, %d fork/join workers%n", Runtime.getRuntime().availableProcessors(), workers);
+        for (int size : SIZES) {
+            List<Photo> photos = new ArrayList<>(library.subList(0, size));
+            int reps = Math.max(20, 20_000_000 / size);
+
+            SearchPhotos.setParallelThreshold(Integer.MAX_VALUE);
+            List<Photo> expected = SearchPhotos.searchByTagsOr(photos, tags);
+            double sequential = best(photos, tags, reps);
+
+            SearchPhotos.setParallelThreshold(0);
+            SearchPhotos.setSearchPool(pool);
+            if (!expected.equals(SearchPhotos.searchByTagsOr(photos, tags))) {
+                throw new IllegalStateException("Parallel search returned different results");
+            }
+            double parallel = best(photos, tags, reps);
+
+            SearchPhotos.setSearchPool(ForkJoinPool.commonPool());
+            System.out.printf("%,9d photos: sequential %.3f ms, fork/join %.3f ms%n", size, sequential, parallel);
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Times a search repeatedly.
+     *
+     * @param photos the photos to search
+     * @param tags the tags to search for
+     * @param reps the number of repetitions
+     * @return the fastest run in milliseconds
+     */
+    private static double best(List<Photo> photos, List<Tag> tags, int reps) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < reps; i++) {
+            long start = System.nanoTime();
+            SearchPhotos.searchByTagsOr(photos, tags);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1e6;
+    }
+}
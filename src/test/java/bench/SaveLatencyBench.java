@@ -0,0 +1,107 @@
+package bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import photos.Album;
+import photos.Photo;
+import photos.Tag;
+import users.Durability;
+import users.Mutation;
+import users.User;
+import users.UserManager;
+
+/**
+ * Measures how long saving a user takes at each {@link Durability} level, both as a full
+ * snapshot and as a journal append of one caption change.
+ * Run from the project root after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes bench.SaveLatencyBench [photos...]}.
+ * The benchmark user is written to a temporary directory, which is deleted afterwards.
+ *
+ * @author Group 60
+ */
+public class SaveLatencyBench {
+    private static final String USERNAME = "bench-save";
+    private static final int SAVES = 50;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args photo counts to measure, 1000 and 20000 by default
+     * @throws Exception if saving fails
+     */
+    public static void main(String[] args) throws Exception {
+        String[] sizes = args.length > 0 ? args : new String[] {"1000", "20000"};
+        Path directory = Files.createTempDirectory("bench-save");
+        Path originalDirectory = UserManager.getUsersDirectory();
+        Durability originalDurability = UserManager.getDurability();
+        long originalThreshold = UserManager.getJournalCompactionThreshold();
+        UserManager.setUsersDirectory(directory);
+        try {
+            for (String size : sizes) {
+                run(Integer.parseInt(size));
+            }
+        } finally {
+            UserManager.deleteUser(USERNAME);
+            UserManager.setDurability(originalDurability);
+            UserManager.setJournalCompactionThreshold(originalThreshold);
+            UserManager.setUsersDirectory(originalDirectory);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Measures one library size, discarding a first round as warm-up.
+     *
+     * @param photoCount the number of photos in the library
+     * @throws Exception if saving fails
+     */
+    private static void run(int photoCount) throws Exception {
+        UserManager.deleteUser(USERNAME);
+        User user = new User(USERNAME, "");
+        user.createAlbum("album");
+        Album album = user.getAlbum("album");
+        for (int i = 0; i < photoCount; i++) {
+            Photo photo = new Photo("/home/user/pictures/2024/img_" + i + ".jpg",
+                                    LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i), 100_000 + i);
+            photo.addTag(new Tag("location", "loc" + (i % 50)));
+            photo.addTag(new Tag("person", "p" + (i % 20)));
+            album.addPhoto(photo);
+        }
+        UserManager.saveUser(user);
+
+        for (int round = 0; round < 2; round++) {
+            for (Durability level : Durability.values()) {
+                UserManager.setDurability(level);
+                long snapshot = timeEdits(user, album, 0);
+                long append = timeEdits(user, album, Long.MAX_VALUE);
+
+                if (round == 1) {
+                    System.out.printf("%,d photos, %s: snapshot %.2f ms, journal append %.3f ms (file %,d KB)%n",
+                                      photoCount, level, snapshot / 1e6, append / 1e6,
+                                      Files.size(UserManager.getUsersDirectory().resolve(USERNAME + ".dat")) / 1024);
+                }
+            }
+        }
+    }
+
+    /**
+     * Times saving one caption change at a time.
+     *
+     * @param user the user
+     * @param album the album holding the photo to edit
+     * @param compactionThreshold 0 to save each change as a snapshot, or a large size to
+     *        append it to the journal
+     * @return the average time per save in nanoseconds
+     * @throws Exception if saving fails
+     */
+    private static long timeEdits(User user, Album album, long compactionThreshold) throws Exception {
+        UserManager.setJournalCompactionThreshold(compactionThreshold);
+        long start = System.nanoTime();
+        for (int i = 0; i < SAVES; i++) {
+            user.apply(Mutation.setCaption("album", album.getPhotoAt(0), "caption " + i));
+            UserManager.saveUser(user);
+        }
+        return (System.nanoTime() - start) / SAVES;
+    }
+}
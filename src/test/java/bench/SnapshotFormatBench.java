@@ -0,0 +1,110 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import photos.Album;
+import photos.Photo;
+import photos.Tag;
+import users.Durability;
+import users.User;
+import users.UserManager;
+
+/**
+ * Compares the size and speed of the binary snapshot format with Java serialization of
+ * the same user. Serialization times are in memory; binary times include writing and
+ * reading the file.
+ * Run from the project root after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes bench.SnapshotFormatBench [photos...]}.
+ *
+ * @author Group 60
+ */
+public class SnapshotFormatBench {
+    private static final String USERNAME = "bench-format";
+    private static final int ALBUMS = 10;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args photo counts to measure, 10000 and 100000 by default
+     * @throws Exception if saving or loading fails
+     */
+    public static void main(String[] args) throws Exception {
+        String[] sizes = args.length > 0 ? args : new String[] {"10000", "100000"};
+        Durability original = UserManager.getDurability();
+        UserManager.setDurability(Durability.RENAME);
+        try {
+            for (String size : sizes) {
+                run(Integer.parseInt(size));
+            }
+        } finally {
+            UserManager.setDurability(original);
+            UserManager.deleteUser(USERNAME);
+        }
+    }
+
+    /**
+     * Measures one library size, reporting the last of three rounds.
+     *
+     * @param photoCount the number of photos in the library
+     * @throws Exception if saving or loading fails
+     */
+    private static void run(int photoCount) throws Exception {
+        User user = new User(USERNAME, "");
+        for (int album = 0; album < ALBUMS; album++) {
+            user.createAlbum("album" + album);
+        }
+        for (int i = 0; i < photoCount; i++) {
+            Photo photo = new Photo("C:\\Users\\someone\\Pictures\\2024\\trip" + (i % 30) + "\\IMG_" + i + ".jpg",
+                                    LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(i * 37L), 100_000 + i);
+            photo.addTag(new Tag("location", "loc" + (i % 50)));
+            photo.addTag(new Tag("person", "p" + (i % 20)));
+            if (i % 3 == 0) {
+                photo.setCaption("caption " + i);
+            }
+            user.getAlbum("album" + (i % ALBUMS)).addPhoto(photo);
+            if (i % 7 == 0) {
+                user.getAlbum("album" + ((i + 1) % ALBUMS)).addPhoto(photo);
+            }
+        }
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+                out.writeObject(user);
+            }
+            long serialSave = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized.toByteArray()))) {
+                in.readObject();
+            }
+            long serialLoad = System.nanoTime() - start;
+
+            UserManager.deleteUser(USERNAME);
+            start = System.nanoTime();
+            UserManager.saveUser(user);
+            long binarySave = System.nanoTime() - start;
+
+            UserManager.getCache().clear();
+            start = System.nanoTime();
+            User loaded = UserManager.loadUser(USERNAME);
+            // Albums are read lazily, so load every album to compare like with like
+            loaded.getAlbums().forEach(Album::getPhotos);
+            long binaryLoad = System.nanoTime() - start;
+
+            if (round == 2) {
+                System.out.printf("%,d photos: serialization %,d KB, save %.1f ms, load %.1f ms%n",
+                                  photoCount, serialized.size() / 1024, serialSave / 1e6, serialLoad / 1e6);
+                System.out.printf("%,d photos: binary        %,d KB, save %.1f ms, load %.1f ms%n",
+                                  photoCount, Files.size(Paths.get("data/users", USERNAME + ".dat")) / 1024,
+                                  binarySave / 1e6, binaryLoad / 1e6);
+            }
+        }
+    }
+}
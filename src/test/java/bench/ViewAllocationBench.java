@@ -0,0 +1,134 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import photos.Album;
+import photos.Photo;
+import photos.Tag;
+import users.User;
+
+/**
+ * Measures the bytes allocated when stepping through an album's photos and listing a
+ * user's albums, reading through copies ({@link Album#getPhotos()}, {@link User#getAlbums()})
+ * and through the read-only views that don't copy.
+ * Run from the project root after {@code mvn test-compile}:
+ * {@code java -cp target/classes:target/test-classes bench.ViewAllocationBench [photos per album...]}.
+ *
+ * @author Group 60
+ */
+public class ViewAllocationBench {
+    private static final int ALBUMS = 20;
+    private static final int STEPS = 10_000;
+
+    private static final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Keeps results alive so the measured work isn't optimized away. */
+    private static long sink;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args photos per album to measure, 1000 and 10000 by default
+     */
+    public static void main(String[] args) {
+        String[] sizes = args.length > 0 ? args : new String[] {"1000", "10000"};
+        for (String size : sizes) {
+            run(Integer.parseInt(size));
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /**
+     * Measures one album size, reporting the last of three rounds.
+     *
+     * @param photosPerAlbum the number of photos in each album
+     */
+    private static void run(int photosPerAlbum) {
+        User user = new User("bench-views", "");
+        for (int a = 0; a < ALBUMS; a++) {
+            user.createAlbum("album" + a);
+            Album album = user.getAlbum("album" + a);
+            for (int i = 0; i < photosPerAlbum; i++) {
+                Photo photo = new Photo("/pictures/" + a + "/IMG_" + i + ".jpg",
+                                        LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(i), 1000 + i);
+                photo.addTag(new Tag("person", "p" + (i % 20)));
+                album.addPhoto(photo);
+            }
+        }
+        Album album = user.getAlbum("album0");
+
+        for (int round = 0; round < 3; round++) {
+            long copied = allocatedPerStep(() -> navigateByCopy(album));
+            long viewed = allocatedPerStep(() -> navigateByView(album));
+            long listedCopy = allocatedPerStep(() -> listAlbums(user.getAlbums()));
+            long listedView = allocatedPerStep(() -> listAlbums(user.getAlbumView()));
+            if (round == 2) {
+                System.out.printf("%,d photos per album: navigation %,d B by copy, %,d B by view; "
+                                  + "album list %,d B by copy, %,d B by view%n",
+                                  photosPerAlbum, copied, viewed, listedCopy, listedView);
+            }
+        }
+    }
+
+    /**
+     * Reads a photo the way the photo view did when it copied the album's photos.
+     *
+     * @param album the album
+     */
+    private static void navigateByCopy(Album album) {
+        List<Photo> photos = album.getPhotos();
+        if (photos.isEmpty()) {
+            return;
+        }
+        Photo photo = photos.get((int) (sink++ % photos.size()));
+        sink += photo.getCaption().length() + photo.getTags().size();
+    }
+
+    /**
+     * Reads a photo the way the photo view does now.
+     *
+     * @param album the album
+     */
+    private static void navigateByView(Album album) {
+        if (album.isEmpty()) {
+            return;
+        }
+        Photo photo = album.getPhotoAt((int) (sink++ % album.getPhotoCount()));
+        sink += photo.getCaption().length() + photo.getTagCount();
+        for (int i = 0; i < photo.getTagCount(); i++) {
+            sink += photo.getTag(i).getValue().length();
+        }
+    }
+
+    /**
+     * Visits every album's name and photo count, as the album list does.
+     *
+     * @param albums the albums
+     */
+    private static void listAlbums(List<Album> albums) {
+        for (Album album : albums) {
+            sink += album.getName().length() + album.getPhotoCount();
+        }
+    }
+
+    /**
+     * Runs an action repeatedly and gives the bytes it allocated per run.
+     *
+     * @param action the action
+     * @return the average bytes allocated per run
+     */
+    private static long allocatedPerStep(Runnable action) {
+        for (int i = 0; i < STEPS; i++) {
+            action.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < STEPS; i++) {
+            action.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / STEPS;
+    }
+}
@@ -0,0 +1,98 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for reusing and sharing {@link Album#snapshot()} results as photos change.
+ *
+ * @author Group 60
+ */
+class AlbumSnapshotTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    @Test
+    void unchangedAlbumReturnsTheSameSnapshot() {
+        Album album = album("a", 3);
+        AlbumSnapshot first = album.snapshot();
+        assertSame(first, album.snapshot());
+    }
+
+    @Test
+    void changesToOtherAlbumsPhotosDoNotInvalidate() {
+        Album album = album("a", 3);
+        Album other = album("b", 3);
+        AlbumSnapshot first = album.snapshot();
+        // More edits than the old shared change buffer could remember
+        for (int i = 0; i < 5000; i++) {
+            other.getPhotoAt(i % 3).setCaption("edit " + i);
+        }
+        assertSame(first, album.snapshot());
+    }
+
+    @Test
+    void changedPhotoGivesNewSnapshotSharingUnchangedStates() {
+        Album album = album("a", 3);
+        AlbumSnapshot first = album.snapshot();
+        album.getPhotoAt(1).addTag(new Tag("person", "snapshot-test"));
+        AlbumSnapshot second = album.snapshot();
+        assertNotSame(first, second);
+        assertSame(first.getPhotos().get(0), second.getPhotos().get(0));
+        assertNotSame(first.getPhotos().get(1), second.getPhotos().get(1));
+        assertSame(first.getPhotos().get(2), second.getPhotos().get(2));
+        assertEquals(0, first.getPhotos().get(1).getTags().size());
+        assertEquals(1, second.getPhotos().get(1).getTags().size());
+    }
+
+    @Test
+    void photoInTwoAlbumsInvalidatesBoth() {
+        Album first = album("a", 2);
+        Album second = new Album("b");
+        Photo shared = first.getPhotoAt(0);
+        second.addPhoto(shared);
+        AlbumSnapshot firstBefore = first.snapshot();
+        AlbumSnapshot secondBefore = second.snapshot();
+        shared.setDate(DATE.minusYears(1));
+        assertNotSame(firstBefore, first.snapshot());
+        assertNotSame(secondBefore, second.snapshot());
+        assertEquals(DATE.minusYears(1), second.snapshot().getPhotos().get(0).getDate());
+    }
+
+    @Test
+    void removedPhotoNoLongerInvalidates() {
+        Album album = album("a", 2);
+        Photo removed = album.getPhotoAt(0);
+        album.removePhoto(removed);
+        AlbumSnapshot snapshot = album.snapshot();
+        assertEquals(1, snapshot.getPhotoCount());
+        removed.setCaption("gone");
+        assertSame(snapshot, album.snapshot());
+    }
+
+    @Test
+    void detachedAlbumIsForgottenByItsPhotos() {
+        PhotoRegistry registry = new PhotoRegistry();
+        Album kept = album("a", 2);
+        Album deleted = new Album("b");
+        registry.addAlbum(kept);
+        registry.addAlbum(deleted);
+        deleted.addPhoto(kept.getPhotoAt(0));
+        registry.removeAlbum(deleted);
+        AlbumSnapshot snapshot = deleted.snapshot();
+        kept.getPhotoAt(0).setCaption("still in a");
+        assertSame(snapshot, deleted.snapshot());
+        assertEquals("still in a", kept.snapshot().getPhotos().get(0).getCaption());
+    }
+
+    private static Album album(String name, int photoCount) {
+        Album album = new Album(name);
+        for (int i = 0; i < photoCount; i++) {
+            album.addPhoto(new Photo("/" + name + "/" + i + ".jpg", DATE.plusHours(i), 10 + i));
+        }
+        return album;
+    }
+}
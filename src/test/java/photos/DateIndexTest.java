@@ -0,0 +1,155 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link DateIndex} against a sorted set model.
+ *
+ * @author Group 60
+ */
+class DateIndexTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2020, 6, 1, 12, 0);
+
+    /**
+     * A photo's date and ordinal, ordered like the index orders them.
+     */
+    private static final class Entry {
+        final LocalDateTime date;
+        final int ordinal;
+
+        Entry(LocalDateTime date, int ordinal) {
+            this.date = date;
+            this.ordinal = ordinal;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER =
+        Comparator.comparingLong((Entry e) -> DateIndex.keyOf(e.date)).thenComparingInt(e -> e.ordinal);
+
+    @Test
+    void keysSaturateOutsideRepresentableYears() {
+        assertEquals(Long.MAX_VALUE, DateIndex.keyOf(LocalDateTime.MAX));
+        assertEquals(Long.MIN_VALUE, DateIndex.keyOf(LocalDateTime.MIN));
+        assertEquals(0, DateIndex.keyOf(LocalDateTime.of(1970, 1, 1, 0, 0)));
+        assertEquals(1, DateIndex.keyOf(LocalDateTime.of(1970, 1, 1, 0, 0, 0, 1)));
+    }
+
+    @Test
+    void extremeDatesAreKeptInOrder() {
+        DateIndex index = new DateIndex();
+        index.add(LocalDateTime.MAX, 1);
+        index.add(BASE, 2);
+        index.add(LocalDateTime.MIN, 3);
+        index.add(LocalDateTime.of(1000, 1, 1, 0, 0), 4);
+        assertArrayEquals(new int[] {3, 4, 2, 1}, index.ordered());
+        assertEquals(4, index.count(LocalDateTime.MIN, LocalDateTime.MAX));
+        assertArrayEquals(new int[] {2}, index.range(BASE, BASE));
+    }
+
+    @Test
+    void sameDateIsOrderedByOrdinal() {
+        DateIndex index = new DateIndex();
+        for (int ordinal : new int[] {5, 1, 3, 2, 4}) {
+            index.add(BASE, ordinal);
+        }
+        index.add(BASE, 3);
+        assertArrayEquals(new int[] {1, 2, 3, 4, 5}, index.ordered());
+        index.remove(BASE, 3);
+        index.remove(BASE.plusDays(1), 4);
+        assertArrayEquals(new int[] {1, 2, 4, 5}, index.ordered());
+    }
+
+    @Test
+    void emptyAndInvertedRanges() {
+        DateIndex index = new DateIndex();
+        assertEquals(0, index.range(BASE, BASE.plusDays(1)).length);
+        index.add(BASE, 0);
+        assertEquals(0, index.range(BASE.plusDays(1), BASE).length);
+        assertEquals(0, index.count(BASE.plusDays(1), BASE));
+        assertEquals(new BitSet(), index.rangeBits(BASE.plusDays(1), BASE));
+    }
+
+    @Test
+    void matchesModelUnderRandomOperations() {
+        Random random = new Random(7);
+        DateIndex index = new DateIndex();
+        TreeSet<Entry> model = new TreeSet<>(ORDER);
+        LocalDateTime[] dates = new LocalDateTime[2000];
+        for (int step = 0; step < 50_000; step++) {
+            int ordinal = random.nextInt(dates.length);
+            if (dates[ordinal] == null) {
+                dates[ordinal] = BASE.plusMinutes(random.nextInt(500));
+                index.add(dates[ordinal], ordinal);
+                model.add(new Entry(dates[ordinal], ordinal));
+            } else {
+                index.remove(dates[ordinal], ordinal);
+                model.remove(new Entry(dates[ordinal], ordinal));
+                dates[ordinal] = null;
+            }
+
+            if (step % 1000 == 0) {
+                assertMatches(model, index);
+                LocalDateTime start = BASE.plusMinutes(random.nextInt(500));
+                LocalDateTime end = start.plusMinutes(random.nextInt(100));
+                assertRange(model, index, start, end);
+            }
+        }
+        assertMatches(model, index);
+    }
+
+    @Test
+    void rebuildSortsEntries() {
+        Random random = new Random(11);
+        TreeSet<Entry> model = new TreeSet<>(ORDER);
+        int count = 1000;
+        long[] keys = new long[count];
+        int[] ordinals = new int[count];
+        for (int i = 0; i < count; i++) {
+            LocalDateTime date = BASE.plusSeconds(random.nextInt(300));
+            keys[i] = DateIndex.keyOf(date);
+            ordinals[i] = i;
+            model.add(new Entry(date, i));
+        }
+        DateIndex index = new DateIndex();
+        index.add(BASE, 99_999);
+        index.rebuild(keys, ordinals, count);
+        assertMatches(model, index);
+        assertRange(model, index, BASE.plusSeconds(100), BASE.plusSeconds(200));
+
+        index.rebuild(new long[0], new int[0], 0);
+        assertEquals(0, index.size());
+    }
+
+    private static void assertMatches(TreeSet<Entry> model, DateIndex index) {
+        assertEquals(model.size(), index.size());
+        int[] expected = model.stream().mapToInt(e -> e.ordinal).toArray();
+        assertArrayEquals(expected, index.ordered());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], index.ordinalAt(i));
+        }
+    }
+
+    private static void assertRange(TreeSet<Entry> model, DateIndex index, LocalDateTime start, LocalDateTime end) {
+        List<Integer> expected = new ArrayList<>();
+        BitSet expectedBits = new BitSet();
+        for (Entry entry : model) {
+            if (!entry.date.isBefore(start) && !entry.date.isAfter(end)) {
+                expected.add(entry.ordinal);
+                expectedBits.set(entry.ordinal);
+            }
+        }
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), index.range(start, end));
+        assertEquals(expectedBits, index.rangeBits(start, end));
+        assertEquals(expected.size(), index.count(start, end));
+    }
+}
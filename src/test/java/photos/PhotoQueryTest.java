@@ -0,0 +1,135 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PhotoQuery}, checking indexed evaluation against matching each photo.
+ *
+ * @author Group 60
+ */
+class PhotoQueryTest {
+    private static final String[] PEOPLE = {"alice", "bob", "carol", "dave"};
+    private static final String[] PLACES = {"nyc", "sf", "new york"};
+    private static final String[] WORDS = {"birthday", "cake", "beach", "sunset", "party", "dog"};
+
+    private static final String[] QUERIES = {
+        "person=alice",
+        "person=alice AND location=nyc",
+        "person=alice OR person=bob",
+        "NOT person=alice",
+        "person=alice AND NOT location=sf",
+        "(person=alice OR person=bob) AND (location=nyc OR location=sf)",
+        "location=\"new york\"",
+        "date>=2024-01-01",
+        "date<2023-06-01 OR date>2024-06-30",
+        "date=2023-03-15",
+        "date>=2023-01-01 AND date<=2023-12-31 AND person=carol",
+        "caption=birthday",
+        "caption=\"birthday cake\"",
+        "caption=\"sun*\"",
+        "caption=\"birthday ca*\" OR NOT person=dave",
+        "person=nobody",
+        "NOT (person=alice OR person=bob OR person=carol OR person=dave)",
+        "person=alice AND person=alice",
+        "PERSON=alice and location=nyc or not person=bob"
+    };
+
+    private PhotoIndex index;
+    private List<Photo> photos;
+
+    @BeforeEach
+    void buildLibrary() {
+        Random random = new Random(16);
+        Album album = new Album("library");
+        photos = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            Photo photo = new Photo("/lib/" + i + ".jpg",
+                                    LocalDateTime.of(2023, 1, 1, 0, 0).plusHours(random.nextInt(2 * 365 * 24)));
+            photo.addTag(new Tag("person", PEOPLE[random.nextInt(PEOPLE.length)]));
+            if (random.nextBoolean()) {
+                photo.addTag(new Tag("person", PEOPLE[random.nextInt(PEOPLE.length)]));
+            }
+            photo.addTag(new Tag("location", PLACES[random.nextInt(PLACES.length)]));
+            if (random.nextInt(3) > 0) {
+                photo.setCaption(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + "!");
+            }
+            photos.add(photo);
+        }
+        album.addPhotos(photos);
+        index = new PhotoIndex();
+        index.addAlbum(album);
+    }
+
+    @Test
+    void indexedSearchMatchesPerPhotoCheck() {
+        for (String text : QUERIES) {
+            assertSearchMatches(PhotoQuery.parse(text), text);
+        }
+    }
+
+    @Test
+    void cachedResultsFollowChanges() {
+        PhotoQuery query = PhotoQuery.parse("person=alice AND caption=sunset");
+        assertSearchMatches(query, "before");
+        for (int i = 0; i < 50; i++) {
+            Photo photo = photos.get(i);
+            photo.setCaption("sunset over the bay");
+            photo.addTag(new Tag("person", "alice"));
+        }
+        photos.get(60).setDate(LocalDateTime.of(1999, 1, 1, 0, 0));
+        assertSearchMatches(PhotoQuery.parse("date<2000-01-01"), "date change");
+        assertSearchMatches(query, "after");
+    }
+
+    @Test
+    void spacingAndKeywordCaseDontChangeNormalForm() {
+        assertEquals(PhotoQuery.parse("person=alice AND location=nyc").toString(),
+                     PhotoQuery.parse("  person=alice   and location=nyc ").toString());
+        assertEquals(PhotoQuery.parse("NOT (person=a OR person=b)").toString(),
+                     PhotoQuery.parse("not(person=a or person=b)").toString());
+    }
+
+    @Test
+    void matchesSinglePhoto() {
+        Photo photo = new Photo("/x.jpg", LocalDateTime.of(2024, 2, 29, 23, 59));
+        photo.addTag(new Tag("person", "alice"));
+        photo.setCaption("Happy Birthday, Cake!");
+        assertTrue(PhotoQuery.parse("person=alice AND date=2024-02-29").matches(photo));
+        assertTrue(PhotoQuery.parse("caption=\"birthday cake\"").matches(photo));
+        assertFalse(PhotoQuery.parse("caption=\"cake birthday\"").matches(photo));
+        assertFalse(PhotoQuery.parse("date>2024-02-29").matches(photo));
+        assertTrue(PhotoQuery.parse("NOT person=bob").matches(photo));
+    }
+
+    @Test
+    void malformedQueriesAreRejected() {
+        for (String text : new String[] {"", "person=", "AND person=a", "(person=a", "person=a)",
+                                         "person=a OR", "date>=yesterday", "date~2024-01-01", "NOT"}) {
+            assertThrows(IllegalArgumentException.class, () -> PhotoQuery.parse(text), text);
+        }
+    }
+
+    private void assertSearchMatches(PhotoQuery query, String text) {
+        Set<Photo> expected = new HashSet<>();
+        for (Photo photo : photos) {
+            if (query.matches(photo)) {
+                expected.add(photo);
+            }
+        }
+        List<Photo> found = query.search(index);
+        assertEquals(expected.size(), found.size(), text);
+        assertEquals(expected, new HashSet<>(found), text);
+    }
+}
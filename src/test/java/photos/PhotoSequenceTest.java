@@ -0,0 +1,199 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PhotoSequence} against a list model.
+ *
+ * @author Group 60
+ */
+class PhotoSequenceTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void emptySequence() {
+        PhotoSequence sequence = new PhotoSequence();
+        assertEquals(0, sequence.size());
+        assertNull(sequence.earliest());
+        assertNull(sequence.latest());
+        assertEquals(0, sequence.totalBytes());
+        assertNull(sequence.find("/missing.jpg"));
+        assertThrows(IndexOutOfBoundsException.class, () -> sequence.get(0));
+    }
+
+    @Test
+    void samePathIsAddedOnce() {
+        PhotoSequence sequence = new PhotoSequence();
+        Photo first = photo(1);
+        assertTrue(sequence.add(first));
+        assertFalse(sequence.add(photo(1)));
+        assertEquals(1, sequence.size());
+        assertSame(first, sequence.find(first.getFilePath()));
+        assertSame(first, sequence.remove(photo(1)));
+        assertNull(sequence.remove(first));
+    }
+
+    @Test
+    void replaceKeepsPosition() {
+        PhotoSequence sequence = new PhotoSequence();
+        for (int i = 0; i < 3; i++) {
+            sequence.add(photo(i));
+        }
+        Photo replacement = new Photo(photo(1).getFilePath(), BASE.minusYears(1), 5);
+        assertTrue(sequence.replace(replacement));
+        assertSame(replacement, sequence.get(1));
+        assertEquals(BASE.minusYears(1), sequence.earliest());
+        assertEquals(100 + 102 + 5, sequence.totalBytes());
+        assertFalse(sequence.replace(photo(9)));
+    }
+
+    @Test
+    void removingEndpointsUpdatesDateRange() {
+        PhotoSequence sequence = new PhotoSequence();
+        for (int i = 0; i < 5; i++) {
+            sequence.add(photo(i));
+        }
+        assertEquals(photo(3).getDate(), sequence.earliest());
+        assertEquals(photo(4).getDate(), sequence.latest());
+        sequence.remove(photo(3));
+        sequence.remove(photo(4));
+        assertEquals(photo(1).getDate(), sequence.earliest());
+        assertEquals(photo(2).getDate(), sequence.latest());
+    }
+
+    @Test
+    void dateChangeIsSeen() {
+        PhotoSequence sequence = new PhotoSequence();
+        Photo photo = photo(0);
+        sequence.add(photo);
+        sequence.add(photo(1));
+        photo.setDate(BASE.plusYears(5));
+        assertEquals(photo(1).getDate(), sequence.earliest());
+        assertEquals(BASE.plusYears(5), sequence.latest());
+    }
+
+    @Test
+    void endpointDateChangesAreTrackedInEverySequence() {
+        PhotoSequence first = new PhotoSequence();
+        PhotoSequence second = new PhotoSequence();
+        Photo latest = photo(4);
+        for (int i = 0; i < 4; i++) {
+            first.add(photo(i));
+        }
+        first.add(latest);
+        second.add(latest);
+        second.add(new Photo("/pictures/same_date.jpg", latest.getDate()));
+        latest.setDate(BASE.minusYears(2));
+        assertEquals(BASE.minusYears(2), first.earliest());
+        assertEquals(photo(2).getDate(), first.latest());
+        assertEquals(BASE.minusYears(2), second.earliest());
+        assertEquals(photo(4).getDate(), second.latest());
+        second.remove(latest);
+        assertEquals(photo(4).getDate(), second.earliest());
+        latest.setDate(BASE.plusYears(2));
+        assertEquals(BASE.plusYears(2), first.latest());
+        assertEquals(photo(4).getDate(), second.latest());
+    }
+
+    @Test
+    void matchesModelUnderRandomOperations() {
+        Random random = new Random(19);
+        PhotoSequence sequence = new PhotoSequence();
+        List<Photo> model = new ArrayList<>();
+        for (int step = 0; step < 100_000; step++) {
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                Photo photo = photo(random.nextInt(3000));
+                boolean absent = indexOf(model, photo.getFilePath()) < 0;
+                assertEquals(absent, sequence.add(photo));
+                if (absent) {
+                    model.add(photo);
+                }
+            } else if (operation < 9) {
+                Photo photo = photo(random.nextInt(3000));
+                int index = indexOf(model, photo.getFilePath());
+                Photo removed = sequence.remove(photo);
+                if (index < 0) {
+                    assertNull(removed);
+                } else {
+                    assertSame(model.remove(index), removed);
+                }
+            } else if (!model.isEmpty()) {
+                int position = random.nextInt(model.size());
+                assertSame(model.get(position), sequence.get(position));
+            }
+            if (step % 5000 == 0) {
+                assertMatches(model, sequence);
+            }
+        }
+        assertMatches(model, sequence);
+    }
+
+    @Test
+    void compactsAfterManyRemovals() {
+        PhotoSequence sequence = new PhotoSequence();
+        List<Photo> model = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Photo photo = photo(i);
+            sequence.add(photo);
+            model.add(photo);
+        }
+        // Remove from the front so positions shift and the Fenwick tree is needed
+        for (int i = 0; i < 9_990; i++) {
+            assertSame(model.remove(0), sequence.remove(photo(i)));
+            if (i % 997 == 0) {
+                assertMatches(model, sequence);
+            }
+        }
+        assertMatches(model, sequence);
+    }
+
+    private static void assertMatches(List<Photo> model, PhotoSequence sequence) {
+        assertEquals(model.size(), sequence.size());
+        assertEquals(model, sequence.toList());
+        long bytes = 0;
+        LocalDateTime earliest = null;
+        LocalDateTime latest = null;
+        for (int i = 0; i < model.size(); i++) {
+            Photo photo = model.get(i);
+            assertSame(photo, sequence.get(i));
+            assertSame(photo, sequence.find(photo.getFilePath()));
+            bytes += photo.getFileSize();
+            if (earliest == null || photo.getDate().isBefore(earliest)) {
+                earliest = photo.getDate();
+            }
+            if (latest == null || photo.getDate().isAfter(latest)) {
+                latest = photo.getDate();
+            }
+        }
+        assertEquals(bytes, sequence.totalBytes());
+        assertEquals(earliest, sequence.earliest());
+        assertEquals(latest, sequence.latest());
+    }
+
+    private static int indexOf(List<Photo> photos, String path) {
+        for (int i = 0; i < photos.size(); i++) {
+            if (photos.get(i).getFilePath().equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Photo photo(int number) {
+        // Dates go back and forth so the earliest and latest photos aren't the first and last
+        return new Photo("/pictures/img_" + number + ".jpg", BASE.plusHours(number % 2 == 0 ? number : -number),
+                         100 + number);
+    }
+}
@@ -0,0 +1,135 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PostingList}, in particular the switch between its sorted array and
+ * bitmap forms at 4096 and 2048 ordinals.
+ *
+ * @author Group 60
+ */
+class PostingListTest {
+
+    @Test
+    void emptyList() {
+        PostingList list = new PostingList();
+        assertTrue(list.isEmpty());
+        assertEquals(0, list.size());
+        assertFalse(list.contains(0));
+        assertFalse(list.remove(0));
+        assertTrue(list.toBitSet().isEmpty());
+    }
+
+    @Test
+    void duplicatesAreIgnored() {
+        PostingList list = new PostingList();
+        assertTrue(list.add(7));
+        assertFalse(list.add(7));
+        assertEquals(1, list.size());
+        assertTrue(list.remove(7));
+        assertFalse(list.remove(7));
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    void growsIntoBitmapAndShrinksBack() {
+        PostingList list = new PostingList();
+        TreeSet<Integer> model = new TreeSet<>();
+        // Descending odd ordinals exercise insertion at the front of the array
+        for (int ordinal = 2 * 5000 + 1; ordinal > 0; ordinal -= 2) {
+            assertTrue(list.add(ordinal));
+            model.add(ordinal);
+            if (model.size() == 4096 || model.size() == 4097) {
+                assertSame(model, list);
+            }
+        }
+        assertSame(model, list);
+        assertFalse(list.add(1));
+        assertFalse(list.contains(2));
+
+        // Remove down through the bitmap-to-array threshold
+        for (int ordinal = 1; model.size() > 100; ordinal += 2) {
+            assertTrue(list.remove(ordinal));
+            model.remove(ordinal);
+            if (model.size() == 2048 || model.size() == 2047) {
+                assertSame(model, list);
+            }
+        }
+        assertSame(model, list);
+
+        // Grow again after converting back
+        for (int ordinal = 0; ordinal < 10000; ordinal += 2) {
+            list.add(ordinal);
+            model.add(ordinal);
+        }
+        assertSame(model, list);
+    }
+
+    @Test
+    void matchesModelUnderRandomOperations() {
+        Random random = new Random(13);
+        PostingList list = new PostingList();
+        TreeSet<Integer> model = new TreeSet<>();
+        for (int step = 0; step < 200_000; step++) {
+            int ordinal = random.nextInt(12_000);
+            // Bias towards adding in the first half and removing in the second, so the
+            // list crosses both thresholds
+            boolean add = random.nextInt(100) < (step < 100_000 ? 70 : 30);
+            if (add) {
+                assertEquals(model.add(ordinal), list.add(ordinal));
+            } else {
+                assertEquals(model.remove(ordinal), list.remove(ordinal));
+            }
+            assertEquals(model.size(), list.size());
+            if (step % 10_000 == 0) {
+                assertSame(model, list);
+            }
+        }
+        assertSame(model, list);
+    }
+
+    @Test
+    void orAndIntoBitmaps() {
+        for (int size : new int[] {10, 5000}) {
+            PostingList list = new PostingList();
+            BitSet expected = new BitSet();
+            for (int i = 0; i < size; i++) {
+                list.add(i * 3);
+                expected.set(i * 3);
+            }
+
+            BitSet union = new BitSet();
+            union.set(1);
+            list.orInto(union);
+            BitSet expectedUnion = (BitSet) expected.clone();
+            expectedUnion.set(1);
+            assertEquals(expectedUnion, union);
+
+            BitSet intersection = new BitSet();
+            intersection.set(0, 30);
+            list.andInto(intersection);
+            BitSet expectedIntersection = new BitSet();
+            for (int i = 0; i < 30; i += 3) {
+                expectedIntersection.set(i);
+            }
+            assertEquals(expectedIntersection, intersection);
+        }
+    }
+
+    private static void assertSame(TreeSet<Integer> model, PostingList list) {
+        assertEquals(model.size(), list.size());
+        BitSet expected = new BitSet();
+        for (int ordinal : model) {
+            expected.set(ordinal);
+            assertTrue(list.contains(ordinal));
+        }
+        assertEquals(expected, list.toBitSet());
+    }
+}
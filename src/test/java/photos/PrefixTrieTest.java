@@ -0,0 +1,104 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PrefixTrie}: counts, sorted prefix completion and pruning.
+ *
+ * @author Group 60
+ */
+class PrefixTrieTest {
+
+    @Test
+    void completesPrefixesInSortedOrder() {
+        PrefixTrie trie = new PrefixTrie();
+        for (String key : new String[] {"prague", "paris", "praha", "pra", "berlin", "", "p"}) {
+            trie.increment(key);
+        }
+        assertEquals(List.of("p", "paris", "pra", "prague", "praha"), trie.complete("p", 10));
+        assertEquals(List.of("pra", "prague", "praha"), trie.complete("pra", 10));
+        assertEquals(List.of("prague"), trie.complete("prag", 10));
+        assertEquals(List.of("", "berlin", "p"), trie.complete("", 3));
+        assertEquals(List.of(), trie.complete("pz", 10));
+        assertEquals(List.of(), trie.complete("pragueish", 10));
+        assertEquals(List.of(), trie.complete("p", 0));
+        assertEquals(7, trie.size());
+    }
+
+    @Test
+    void stringsStayUntilTheirCountReachesZero() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.increment("alice");
+        trie.increment("alice");
+        trie.increment("alicia");
+        trie.decrement("alice");
+        assertEquals(1, trie.count("alice"));
+        assertEquals(List.of("alice", "alicia"), trie.complete("ali", 10));
+
+        trie.decrement("alice");
+        assertEquals(0, trie.count("alice"));
+        assertEquals(List.of("alicia"), trie.complete("ali", 10));
+        // Decrementing a missing string, or a prefix that isn't a string, changes nothing
+        trie.decrement("alice");
+        trie.decrement("ali");
+        trie.decrement("bob");
+        assertEquals(1, trie.size());
+
+        trie.decrement("alicia");
+        assertEquals(0, trie.size());
+        assertEquals(List.of(), trie.complete("", 10));
+        assertEquals(List.of(), trie.complete("a", 10));
+    }
+
+    @Test
+    void matchesModelUnderRandomOperations() {
+        Random random = new Random(13);
+        PrefixTrie trie = new PrefixTrie();
+        TreeMap<String, Integer> model = new TreeMap<>();
+        for (int step = 0; step < 50_000; step++) {
+            String key = randomKey(random);
+            if (random.nextInt(3) > 0) {
+                trie.increment(key);
+                model.merge(key, 1, Integer::sum);
+            } else {
+                trie.decrement(key);
+                model.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+            }
+
+            if (step % 500 == 0) {
+                assertEquals(model.size(), trie.size());
+                String prefix = randomKey(random);
+                prefix = prefix.substring(0, random.nextInt(prefix.length() + 1));
+                int limit = 1 + random.nextInt(20);
+                assertEquals(complete(model, prefix, limit), trie.complete(prefix, limit), prefix);
+                assertEquals(model.getOrDefault(key, 0), trie.count(key));
+            }
+        }
+        assertEquals(new ArrayList<>(model.keySet()), trie.complete("", Integer.MAX_VALUE));
+    }
+
+    private static String randomKey(Random random) {
+        char[] key = new char[random.nextInt(5)];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(key);
+    }
+
+    private static List<String> complete(TreeMap<String, Integer> model, String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        for (String key : model.tailMap(prefix).keySet()) {
+            if (!key.startsWith(prefix) || result.size() == limit) {
+                break;
+            }
+            result.add(key);
+        }
+        return result;
+    }
+}
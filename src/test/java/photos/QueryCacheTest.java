@@ -0,0 +1,119 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link QueryCache}: discarding results only when the parts of the index they
+ * read have changed, and staying within its limits.
+ *
+ * @author Group 60
+ */
+class QueryCacheTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 9, 1, 10, 0);
+
+    @Test
+    void resultsDependOnlyOnTheCountersTheyRead() {
+        QueryCache cache = new QueryCache();
+        List<Photo> result = List.of(new Photo("/q/1.jpg", DATE));
+        long[] versions = new long[4];
+        cache.put("tags", QueryCache.TAGS, versions, result);
+        cache.put("dates", QueryCache.DATES, versions, result);
+        cache.put("captions", QueryCache.CAPTIONS, versions, result);
+        cache.put("tags-and-dates", QueryCache.TAGS | QueryCache.DATES, versions, result);
+
+        // The cache keeps its own copy of the counters
+        versions[1]++;
+        assertNull(cache.get("tags", versions));
+        assertNotNull(cache.get("dates", versions));
+        assertNotNull(cache.get("captions", versions));
+        assertNull(cache.get("tags-and-dates", versions));
+
+        versions[3]++;
+        assertNull(cache.get("captions", versions));
+        assertNotNull(cache.get("dates", versions));
+
+        // Changing which photos are indexed affects every result
+        versions[0]++;
+        assertNull(cache.get("dates", versions));
+        assertEquals(0, cache.size());
+        assertEquals(4, cache.getInvalidations());
+    }
+
+    @Test
+    void indexChangesInvalidateOnlyDependentSearches() {
+        Album album = new Album("a");
+        Photo tagged = new Photo("/q/tagged.jpg", DATE);
+        tagged.addTag(new Tag("person", "query-cache-test"));
+        Photo other = new Photo("/q/other.jpg", DATE.plusDays(10));
+        album.addPhoto(tagged);
+        album.addPhoto(other);
+        PhotoIndex index = new PhotoIndex();
+        index.addAlbum(album);
+        QueryCache cache = index.getQueryCache();
+        List<Tag> tags = List.of(new Tag("person", "query-cache-test"));
+
+        assertEquals(List.of(tagged), SearchPhotos.searchByTagsAnd(index, tags));
+        assertEquals(List.of(tagged), dateSearch(index));
+        assertEquals(List.of(tagged), SearchPhotos.searchByTagsAnd(index, tags));
+        assertEquals(1, cache.getHits());
+
+        other.addTag(new Tag("person", "query-cache-test"));
+        assertEquals(List.of(tagged), dateSearch(index));
+        assertEquals(List.of(tagged, other), SearchPhotos.searchByTagsAnd(index, tags));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getInvalidations());
+
+        other.setDate(DATE.plusDays(1));
+        assertEquals(List.of(tagged, other), SearchPhotos.searchByTagsAnd(index, tags));
+        assertEquals(List.of(tagged, other), dateSearch(index));
+        assertEquals(2, cache.getInvalidations());
+
+        album.removePhoto(tagged);
+        assertEquals(List.of(other), SearchPhotos.searchByTagsAnd(index, tags));
+        assertEquals(List.of(other), dateSearch(index));
+        assertEquals(4, cache.getInvalidations());
+    }
+
+    @Test
+    void callersGetTheirOwnCopyOfACachedResult() {
+        Album album = new Album("a");
+        album.addPhoto(new Photo("/q/1.jpg", DATE));
+        PhotoIndex index = new PhotoIndex();
+        index.addAlbum(album);
+        dateSearch(index).clear();
+        assertEquals(1, dateSearch(index).size());
+        assertEquals(1, index.getQueryCache().getHits());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWithinLimits() {
+        QueryCache cache = new QueryCache();
+        cache.setLimits(2, 3);
+        long[] versions = new long[4];
+        Photo photo = new Photo("/q/1.jpg", DATE);
+        cache.put("a", QueryCache.TAGS, versions, List.of(photo));
+        cache.put("b", QueryCache.TAGS, versions, List.of(photo));
+        cache.get("a", versions);
+        cache.put("c", QueryCache.TAGS, versions, List.of(photo));
+        assertNull(cache.get("b", versions));
+        assertNotNull(cache.get("a", versions));
+
+        // Too many photos in total evicts too, and a result over the limit isn't cached
+        cache.put("d", QueryCache.TAGS, versions, List.of(photo, photo));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("c", versions));
+        cache.put("e", QueryCache.TAGS, versions, List.of(photo, photo, photo, photo));
+        assertNull(cache.get("e", versions));
+        assertEquals(2, cache.getEvictions());
+    }
+
+    private static List<Photo> dateSearch(PhotoIndex index) {
+        return SearchPhotos.searchByDateRange(index, DATE.minusDays(1), DATE.plusDays(2));
+    }
+}
@@ -0,0 +1,99 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the {@link TagFacets} of a {@link PhotoIndex} follow tag and photo changes in
+ * the indexed albums.
+ *
+ * @author Group 60
+ */
+class TagFacetsTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 5, 1, 9, 0);
+
+    private Album first;
+    private Album second;
+    private Photo shared;
+    private Photo single;
+    private TagFacets facets;
+
+    @BeforeEach
+    void indexAlbums() {
+        first = new Album("first");
+        second = new Album("second");
+        shared = new Photo("/facets/shared.jpg", DATE);
+        single = new Photo("/facets/single.jpg", DATE);
+        shared.addTag(new Tag("person", "ann"));
+        single.addTag(new Tag("person", "ann"));
+        single.addTag(new Tag("person", "bob"));
+        first.addPhoto(shared);
+        first.addPhoto(single);
+        second.addPhoto(shared);
+        PhotoIndex index = new PhotoIndex();
+        index.addAlbum(first);
+        index.addAlbum(second);
+        facets = index.getFacets();
+    }
+
+    @Test
+    void countsEachPhotoOnceAcrossAlbums() {
+        assertEquals(List.of("person"), facets.getTypes());
+        assertEquals(List.of("ann", "bob"), facets.getValues("person"));
+        assertEquals(2, facets.count("person", "ann"));
+        assertEquals(1, facets.count("person", "bob"));
+        assertEquals(2, facets.countValues("person"));
+        assertEquals(0, facets.count("location", "home"));
+    }
+
+    @Test
+    void followsAddedTags() {
+        shared.addTag(new Tag("person", "bob"));
+        shared.addTag(new Tag("location", "home"));
+        assertEquals(2, facets.count("person", "bob"));
+        assertEquals(1, facets.count("location", "home"));
+        assertEquals(List.of("location", "person"), facets.getTypes());
+        assertEquals(List.of("home"), facets.completeValues("location", "h", 10));
+
+        // Adding a tag a photo already has changes nothing
+        shared.addTag(new Tag("person", "ann"));
+        assertEquals(2, facets.count("person", "ann"));
+    }
+
+    @Test
+    void followsRemovedTags() {
+        single.removeTag(new Tag("person", "ann"));
+        assertEquals(1, facets.count("person", "ann"));
+        single.removeTag(new Tag("person", "bob"));
+        assertEquals(0, facets.count("person", "bob"));
+        assertEquals(List.of("ann"), facets.getValues("person"));
+        assertEquals(List.of("ann"), facets.completeValues("person", "", 10));
+
+        shared.removeTag(new Tag("person", "ann"));
+        assertEquals(List.of(), facets.getTypes());
+        assertEquals(List.of(), facets.getValues("person"));
+        assertEquals(0, facets.countValues("person"));
+    }
+
+    @Test
+    void dropsPhotosRemovedFromEveryAlbum() {
+        first.removePhoto(single);
+        assertEquals(1, facets.count("person", "ann"));
+        assertEquals(List.of("ann"), facets.getValues("person"));
+
+        // Still in the second album
+        first.removePhoto(shared);
+        assertEquals(1, facets.count("person", "ann"));
+        second.removePhoto(shared);
+        assertEquals(0, facets.count("person", "ann"));
+        assertEquals(List.of(), facets.getTypes());
+
+        // A removed photo's tags no longer count
+        single.addTag(new Tag("person", "carol"));
+        assertEquals(List.of(), facets.getTypes());
+    }
+}
@@ -0,0 +1,85 @@
+package photos;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link Tag} interning and the way photos store their tags.
+ *
+ * @author Group 60
+ */
+class TagTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 4, 1, 10, 0);
+
+    @Test
+    void equalTagsShareOneCanonicalInstance() {
+        Tag first = Tag.of("person", "tag-test-ann");
+        Tag constructed = new Tag("person", "tag-test-ann");
+        assertNotSame(first, constructed);
+        assertEquals(first, constructed);
+        assertSame(first, constructed.intern());
+        assertSame(first, Tag.of("person", "tag-test-ann"));
+        assertSame(first, first.intern());
+    }
+
+    @Test
+    void lookingUpAnUnusedTagDoesNotCreateIt() {
+        Photo photo = new Photo("/t.jpg", DATE);
+        Tag unused = new Tag("person", "tag-test-nobody");
+        assertFalse(photo.hasTag(unused));
+        assertFalse(photo.removeTag(unused));
+        assertNull(unused.canonical());
+    }
+
+    @Test
+    void photosHoldCanonicalTagsSortedByTypeAndValue() {
+        // Made canonical in the opposite of their sorted order
+        Tag person = Tag.of("person", "tag-test-ann");
+        Tag later = Tag.of("location", "tag-test-b");
+        Tag earlier = Tag.of("location", "tag-test-a");
+        Photo photo = new Photo("/t.jpg", DATE);
+        assertTrue(photo.addTag(new Tag("person", "tag-test-ann")));
+        assertTrue(photo.addTag(new Tag("location", "tag-test-b")));
+        assertTrue(photo.addTag(new Tag("location", "tag-test-a")));
+        assertFalse(photo.addTag(later));
+        assertEquals(List.of(earlier, later, person), photo.getTags());
+        assertSame(earlier, photo.getTag(0));
+        assertSame(person, photo.freeze().getTag(2));
+
+        Photo other = new Photo("/u.jpg", DATE);
+        other.addTag(person);
+        other.addTag(earlier);
+        other.addTag(later);
+        assertEquals(photo.getTags(), other.getTags());
+
+        assertTrue(photo.removeTag(new Tag("location", "tag-test-a")));
+        assertEquals(List.of(later, person), photo.getTags());
+        assertTrue(photo.hasTag(new Tag("location", "tag-test-b")));
+    }
+
+    @Test
+    void deserializedTagsAreCanonical() throws Exception {
+        Tag tag = Tag.of("event", "tag-test-party");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(tag);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            Tag read = (Tag) in.readObject();
+            assertSame(tag, read);
+            assertEquals(tag.hashCode(), read.hashCode());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import photos.Tag;
+
+/**
+ * Tests for {@link UserCache}: weighing users by their photos and evicting the least
+ * recently used.
+ *
+ * @author Group 60
+ */
+class UserCacheTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 8, 1, 12, 0);
+
+    @Test
+    void evictsLeastRecentlyUsedOverTheWeightLimit() {
+        UserCache cache = new UserCache(10);
+        User a = user("a", 3);
+        User b = user("b", 3);
+        cache.put(a);
+        cache.put(b);
+        // Using a makes b the least recently used
+        assertSame(a, cache.get("a"));
+        cache.put(user("c", 3));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertSame(a, cache.get("a"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void weighsPhotosButNotSmartAlbums() {
+        UserCache cache = new UserCache(12);
+        User a = user("a", 5);
+        a.apply(Mutation.createSmartAlbum("smart", "person=cache-test"));
+        for (int i = 0; i < 5; i++) {
+            a.getAlbum("photos").getPhotoAt(i).addTag(new Tag("person", "cache-test"));
+        }
+        assertEquals(5, a.getAlbum("smart").getPhotoCount());
+        cache.put(a);
+        cache.put(user("b", 5));
+        // 6 + 6 fits, so the smart album's photos weren't counted again
+        assertEquals(2, cache.size());
+        cache.put(user("c", 0));
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void replacingAUserReweighsIt() {
+        UserCache cache = new UserCache(10);
+        User a = user("a", 1);
+        cache.put(a);
+        cache.put(user("b", 1));
+        for (int i = 1; i < 8; i++) {
+            a.apply(Mutation.addPhoto("photos", "/a/" + i + ".jpg", DATE, 0));
+        }
+        cache.put(a);
+        // a now weighs 9 and b 2: b, the least recently used, goes
+        assertEquals(1, cache.size());
+        assertNull(cache.get("b"));
+
+        cache.invalidate("a");
+        cache.put(user("d", 4));
+        cache.put(user("e", 4));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void keepsTheMostRecentUserEvenIfItAloneIsTooHeavy() {
+        UserCache cache = new UserCache(5);
+        cache.put(user("a", 2));
+        User heavy = user("heavy", 20);
+        cache.put(heavy);
+        assertEquals(1, cache.size());
+        assertSame(heavy, cache.get("heavy"));
+    }
+
+    @Test
+    void loweringTheLimitEvicts() {
+        UserCache cache = new UserCache(100);
+        for (String name : new String[] {"a", "b", "c", "d"}) {
+            cache.put(user(name, 4));
+        }
+        cache.setMaxWeight(10);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.getEvictions());
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        UserCache cache = new UserCache(10);
+        cache.put(user("a", 0));
+        cache.get("a");
+        cache.get("a");
+        cache.get("missing");
+        cache.clear();
+        cache.get("a");
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    private static User user(String name, int photoCount) {
+        User user = new User(name, "");
+        user.apply(Mutation.createAlbum("photos"));
+        for (int i = 0; i < photoCount; i++) {
+            user.apply(Mutation.addPhoto("photos", "/" + name + "/" + i + ".jpg", DATE.plusMinutes(i), 0));
+        }
+        return user;
+    }
+}
@@ -0,0 +1,283 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import photos.Album;
+import photos.Photo;
+import photos.SmartAlbum;
+import photos.Tag;
+
+/**
+ * Round-trip and compatibility tests for {@link UserCodec}, including users saved with
+ * Java serialization.
+ *
+ * @author Group 60
+ */
+class UserCodecTest {
+    private static final int MAGIC = 0x50363055;
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 5, 17, 9, 30, 15, 123_456_789);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsCurrentVersion() throws Exception {
+        User user = new User("alice", "secret");
+        user.createAlbum("trip");
+        user.createAlbum("empty");
+        user.createAlbum("best");
+        Photo shared = new Photo("C:\\Users\\alice\\Pictures\\beach.jpg", DATE, 2_000_000);
+        shared.setCaption("Caf\u00e9 \u2615 on the beach");
+        shared.addTag(new Tag("person", "bob"));
+        shared.addTag(new Tag("location", ""));
+        Photo noDirectory = new Photo("plain.jpg", LocalDateTime.of(1901, 1, 1, 0, 0), 0);
+        Photo future = new Photo("/photos/2999/new.png", LocalDateTime.of(2999, 12, 31, 23, 59, 59), Long.MAX_VALUE / 4);
+        user.getAlbum("trip").addPhoto(shared);
+        user.getAlbum("trip").addPhoto(noDirectory);
+        user.getAlbum("best").addPhoto(future);
+        user.getAlbum("best").addPhoto(shared);
+        user.createSmartAlbum("bobs", "person=bob");
+        // Saving stores the query without evaluating it
+        assertEquals(-1, user.getAlbum("bobs").snapshot().getPhotoCount());
+
+        User loaded = roundTrip(user, 42);
+        assertEquals("alice", loaded.getUsername());
+        assertEquals("secret", loaded.getPassword());
+        assertEquals(42, loaded.getJournalSequence());
+        assertEquals(describe(user), describe(loaded));
+        assertSame(loaded.getAlbum("trip").getPhotoAt(0), loaded.getAlbum("best").getPhotoAt(1));
+
+        SmartAlbum smart = (SmartAlbum) loaded.getAlbum("bobs");
+        assertEquals("person=bob", smart.getQuery());
+        assertEquals(1, smart.getPhotoCount());
+    }
+
+    @Test
+    void headerStatisticsAreAvailableWithoutLoadingPhotos() throws Exception {
+        User user = new User("carol", "");
+        user.createAlbum("a");
+        user.getAlbum("a").addPhoto(new Photo("/a/1.jpg", DATE, 10));
+        user.getAlbum("a").addPhoto(new Photo("/a/2.jpg", DATE.plusDays(3), 20));
+
+        Album album = roundTrip(user, 0).getAlbum("a");
+        assertFalse(album.isLoaded());
+        assertEquals(2, album.getPhotoCount());
+        assertEquals(30, album.getTotalBytes());
+        assertEquals(DATE, album.getEarliestDate());
+        assertEquals(DATE.plusDays(3), album.getLatestDate());
+        assertFalse(album.isLoaded());
+    }
+
+    @Test
+    void findsPhotosWithoutLoadingAlbums() throws Exception {
+        User user = new User("erin", "");
+        user.createAlbum("a");
+        user.createAlbum("b");
+        Photo photo = new Photo("/a/1.jpg", DATE, 10);
+        photo.setCaption("kept");
+        photo.addTag(new Tag("person", "erin"));
+        user.getAlbum("a").addPhoto(photo);
+        user.getAlbum("a").addPhoto(new Photo("/a/2.jpg", DATE, 20));
+
+        User loaded = roundTrip(user, 0);
+        assertNull(loaded.findPhoto("/missing.jpg"));
+        Photo found = loaded.findPhoto("/a/1.jpg");
+        assertEquals("kept", found.getCaption());
+        assertEquals(List.of(new Tag("person", "erin")), found.getTags());
+        assertFalse(loaded.getAlbum("a").isLoaded());
+        assertFalse(loaded.getPhotoRegistry().isComplete());
+
+        // Adding the photo elsewhere shares the stored photo, which the album takes when loaded
+        loaded.apply(Mutation.addPhoto("b", "/a/1.jpg", DATE, 10));
+        assertSame(found, loaded.getAlbum("b").getPhotoAt(0));
+        assertFalse(loaded.getAlbum("a").isLoaded());
+        assertSame(found, loaded.getAlbum("a").getPhotoAt(0));
+        assertTrue(loaded.getPhotoRegistry().isComplete());
+        assertEquals(2, loaded.getPhotoRegistry().size());
+    }
+
+    @Test
+    void roundTripsUserKindsAndEmptyUser() throws Exception {
+        assertInstanceOf(Admin.class, roundTrip(new Admin(), 0));
+        User stock = roundTrip(new Stock(), 0);
+        assertInstanceOf(Stock.class, stock);
+        assertEquals(0, stock.getAlbumCount());
+    }
+
+    @Test
+    void roundTripsLongStrings() throws Exception {
+        User user = new User("dave", "");
+        user.createAlbum("a");
+        Photo photo = new Photo("/p.jpg", DATE);
+        String caption = "\u00e9".repeat(70_000);
+        photo.setCaption(caption);
+        user.getAlbum("a").addPhoto(photo);
+        assertEquals(caption, roundTrip(user, 0).getAlbum("a").getPhotoAt(0).getCaption());
+    }
+
+    @Test
+    void readsJavaSerialization() throws Exception {
+        User user = new User("gina", "pw");
+        user.createAlbum("a");
+        user.getAlbum("a").addPhoto(new Photo("/g.jpg", DATE));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(user);
+        }
+        assertEquals(describe(user), describe(read(bytes.toByteArray())));
+    }
+
+    @Test
+    void rejectsMalformedFiles() throws Exception {
+        assertThrows(StreamCorruptedException.class, () -> read(new byte[] {1, 2, 3, 4, 5, 6}));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(99);
+        assertThrows(StreamCorruptedException.class, () -> read(bytes.toByteArray()));
+
+        User user = new User("hank", "");
+        user.createAlbum("a");
+        Path file = directory.resolve("hank.dat");
+        write(user, file);
+        byte[] truncated = Files.readAllBytes(file);
+        assertThrows(EOFException.class, () -> read(Arrays.copyOf(truncated, 12)));
+    }
+
+    @Test
+    void verifyDetectsTornAndCorruptFiles() throws Exception {
+        User user = new User("ivan", "");
+        user.createAlbum("a");
+        user.createAlbum("b");
+        for (int i = 0; i < 50; i++) {
+            user.getAlbum(i % 2 == 0 ? "a" : "b").addPhoto(new Photo("/ivan/" + i + ".jpg", DATE.plusMinutes(i)));
+        }
+        Path file = directory.resolve("ivan.dat");
+        write(user, file);
+        UserCodec.verify(file);
+        byte[] good = Files.readAllBytes(file);
+
+        byte[] flipped = good.clone();
+        flipped[flipped.length - 20] ^= 1;
+        Files.write(file, flipped);
+        assertThrows(StreamCorruptedException.class, () -> UserCodec.verify(file));
+
+        Files.write(file, Arrays.copyOf(good, good.length - 1));
+        assertThrows(IOException.class, () -> UserCodec.verify(file));
+        Files.write(file, Arrays.copyOf(good, good.length + 1));
+        assertThrows(StreamCorruptedException.class, () -> UserCodec.verify(file));
+
+        byte[] header = good.clone();
+        header[16] ^= 1;
+        Files.write(file, header);
+        assertThrows(StreamCorruptedException.class, () -> UserCodec.verify(file));
+        assertThrows(StreamCorruptedException.class, () -> read(header));
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(user);
+        }
+        Files.write(file, serialized.toByteArray());
+        UserCodec.verify(file);
+    }
+
+    @Test
+    void variableLengthIntegersRoundTrip() throws Exception {
+        int[] ints = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, -1, Integer.MIN_VALUE};
+        long[] longs = {0, 1, -1, 63, -64, 64, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40, -(1L << 40)};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : ints) {
+            UserCodec.writeVarInt(out, value);
+        }
+        for (long value : longs) {
+            UserCodec.writeVarLong(out, value);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value : ints) {
+            assertEquals(value, UserCodec.readVarInt(in));
+        }
+        for (long value : longs) {
+            assertEquals(value, UserCodec.readVarLong(in));
+        }
+        assertEquals(-1, in.read());
+
+        byte[] overlong = {(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0};
+        assertThrows(StreamCorruptedException.class,
+                     () -> UserCodec.readVarInt(new DataInputStream(new ByteArrayInputStream(overlong))));
+    }
+
+    private User roundTrip(User user, long journalSequence) throws Exception {
+        Path file = directory.resolve(user.getUsername() + ".dat");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            UserCodec.write(user.snapshot(), journalSequence, file, out);
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return UserCodec.read(in, file);
+        }
+    }
+
+    private static void write(User user, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            UserCodec.write(user.snapshot(), 0, file, out);
+        }
+    }
+
+    /**
+     * Reads a snapshot from bytes, writing them to the file albums are loaded from.
+     */
+    private User read(byte[] bytes) throws Exception {
+        Path file = Files.createTempFile(directory, "user", ".dat");
+        Files.write(file, bytes);
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return UserCodec.read(in, file);
+        }
+    }
+
+    /**
+     * Describes a user's albums and photos, with tags in a fixed order.
+     */
+    private static String describe(User user) {
+        List<String> albums = new ArrayList<>();
+        for (Album album : user.getAlbums()) {
+            List<String> photos = new ArrayList<>();
+            for (Photo photo : album.getPhotos()) {
+                List<String> tags = new ArrayList<>();
+                for (Tag tag : photo.getTags()) {
+                    tags.add(tag.getType() + "=" + tag.getValue());
+                }
+                tags.sort(null);
+                photos.add(photo.getFilePath() + "|" + photo.getDate() + "|" + photo.getFileSize() + "|"
+                           + photo.getCaption() + "|" + String.join(",", tags));
+            }
+            albums.add(album.getName() + ":" + album.getPhotoCount() + photos);
+        }
+        assertTrue(albums.size() == user.getAlbumCount());
+        return String.join(" ", albums);
+    }
+}
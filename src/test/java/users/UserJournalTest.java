@@ -0,0 +1,193 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import photos.Album;
+import photos.Photo;
+import photos.Tag;
+
+/**
+ * Tests for {@link UserJournal}: replaying appended mutations and discarding torn and
+ * corrupt records.
+ *
+ * @author Group 60
+ */
+class UserJournalTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    @TempDir
+    Path directory;
+
+    private Path path;
+    private UserJournal journal;
+
+    @BeforeEach
+    void createJournal() {
+        path = directory.resolve("test.journal");
+        journal = new UserJournal(path);
+    }
+
+    @Test
+    void missingJournalReplaysNothing() throws IOException {
+        assertEquals(0, journal.replay(new User("u", "")));
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    void replaysAppendedMutations() throws IOException {
+        User user = new User("u", "");
+        user.apply(Mutation.createAlbum("a"));
+        user.apply(Mutation.createAlbum("b"));
+        user.apply(Mutation.addPhoto("a", "/p/1.jpg", DATE, 1234));
+        user.apply(Mutation.addPhoto("a", "/p/2.jpg", DATE.plusSeconds(1), 0));
+        Photo photo = user.getAlbum("a").getPhotoAt(0);
+        user.apply(Mutation.setCaption("a", photo, "caption"));
+        user.apply(Mutation.addTag("a", photo, new Tag("person", "ann")));
+        user.apply(Mutation.copyPhoto("a", "b", photo));
+        journal.append(user, user.drainPendingMutations(), Durability.RENAME);
+
+        user.tagPhotos("a", user.getAlbum("a").getPhotos(), new Tag("event", "party"));
+        user.apply(Mutation.renameAlbum("b", "c"));
+        user.apply(Mutation.createSmartAlbum("s", "event=party"));
+        journal.append(user, user.drainPendingMutations(), Durability.FSYNC);
+        assertEquals(10, user.getJournalSequence());
+
+        User replayed = new User("u", "");
+        assertEquals(10, journal.replay(replayed));
+        assertEquals(10, replayed.getJournalSequence());
+        assertEquals(describe(user), describe(replayed));
+        assertEquals(1234, replayed.getAlbum("a").getPhotoAt(0).getFileSize());
+    }
+
+    @Test
+    void skipsMutationsCoveredBySnapshot() throws IOException {
+        User user = new User("u", "");
+        for (int i = 0; i < 5; i++) {
+            user.apply(Mutation.createAlbum("a" + i));
+        }
+        journal.append(user, user.drainPendingMutations(), Durability.RENAME);
+
+        User replayed = new User("u", "");
+        replayed.createAlbum("a0");
+        replayed.createAlbum("a1");
+        replayed.setJournalSequence(2);
+        assertEquals(3, journal.replay(replayed));
+        assertEquals(describe(user), describe(replayed));
+    }
+
+    @Test
+    void replaysStringsLongerThan64Kilobytes() throws IOException {
+        User user = new User("u", "");
+        user.apply(Mutation.createAlbum("a"));
+        user.apply(Mutation.addPhoto("a", "/p.jpg", DATE, 0));
+        String caption = "\u00e9\u4e2d".repeat(40_000);
+        user.apply(Mutation.setCaption("a", user.getAlbum("a").getPhotoAt(0), caption));
+        journal.append(user, user.drainPendingMutations(), Durability.RENAME);
+
+        User replayed = new User("u", "");
+        journal.replay(replayed);
+        assertEquals(caption, replayed.getAlbum("a").getPhotoAt(0).getCaption());
+    }
+
+    @Test
+    void addedPhotoKeepsItsCaptionAndTagsInOneRecord() throws IOException {
+        User user = new User("u", "");
+        user.apply(Mutation.createAlbum("a"));
+        user.drainPendingMutations();
+        Photo photo = new Photo("/tagged.jpg", DATE, 77);
+        photo.setCaption("imported");
+        photo.addTag(new Tag("person", "journal-test"));
+        photo.addTag(new Tag("location", "home"));
+        assertEquals(1, user.addPhotos("a", List.of(photo)));
+        List<Mutation> pending = user.drainPendingMutations();
+        assertEquals(1, pending.size());
+        assertEquals(Mutation.Type.ADD_PHOTO, pending.get(0).getType());
+        journal.append(user, pending, Durability.RENAME);
+
+        User replayed = new User("u", "");
+        replayed.createAlbum("a");
+        assertEquals(1, journal.replay(replayed));
+        Photo read = replayed.getAlbum("a").getPhotoAt(0);
+        assertEquals("imported", read.getCaption());
+        assertEquals(77, read.getFileSize());
+        assertEquals(photo.getTags(), read.getTags());
+    }
+
+    @Test
+    void discardsTornTail() throws IOException {
+        User user = appendAlbums(3);
+        long complete = journal.size();
+        byte[] data = Files.readAllBytes(path);
+        for (int cut = 1; cut < 20; cut++) {
+            Files.write(path, Arrays.copyOf(data, data.length - cut));
+            User replayed = new User("u", "");
+            assertEquals(2, journal.replay(replayed), "cut " + cut);
+            assertEquals(List.of("a0", "a1"), names(replayed));
+            assertTrue(journal.size() < complete);
+        }
+
+        // Appending after recovery continues from the last intact record
+        User recovered = new User("u", "");
+        journal.replay(recovered);
+        recovered.apply(Mutation.createAlbum("after"));
+        journal.append(recovered, recovered.drainPendingMutations(), Durability.RENAME);
+        User replayed = new User("u", "");
+        assertEquals(3, journal.replay(replayed));
+        assertEquals(List.of("a0", "a1", "after"), names(replayed));
+        assertEquals(3, user.getJournalSequence());
+    }
+
+    @Test
+    void stopsAtCorruptRecord() throws IOException {
+        appendAlbums(3);
+        byte[] data = Files.readAllBytes(path);
+        // Flip a byte in the last record's payload
+        data[data.length - 3] ^= 0x40;
+        Files.write(path, data);
+
+        User replayed = new User("u", "");
+        assertEquals(2, journal.replay(replayed));
+        assertEquals(List.of("a0", "a1"), names(replayed));
+    }
+
+    private User appendAlbums(int count) throws IOException {
+        User user = new User("u", "");
+        for (int i = 0; i < count; i++) {
+            user.apply(Mutation.createAlbum("a" + i));
+            journal.append(user, user.drainPendingMutations(), Durability.RENAME);
+        }
+        return user;
+    }
+
+    private static List<String> names(User user) {
+        List<String> names = new ArrayList<>();
+        for (Album album : user.getAlbums()) {
+            names.add(album.getName());
+        }
+        return names;
+    }
+
+    private static String describe(User user) {
+        StringBuilder result = new StringBuilder();
+        for (Album album : user.getAlbums()) {
+            result.append(album.getName()).append(':');
+            for (Photo photo : album.getPhotos()) {
+                result.append(' ').append(photo.getFilePath()).append('|').append(photo.getDate())
+                      .append('|').append(photo.getCaption()).append('|').append(photo.getTags());
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import photos.Photo;
+
+/**
+ * Tests for how {@link UserManager} finds, recovers and deletes users' files, run in a
+ * temporary users directory.
+ *
+ * @author Group 60
+ */
+class UserManagerTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 7, 1, 18, 0);
+
+    @TempDir
+    Path directory;
+
+    private Path original;
+
+    @BeforeEach
+    void useTemporaryDirectory() {
+        original = UserManager.getUsersDirectory();
+        UserManager.setUsersDirectory(directory);
+    }
+
+    @AfterEach
+    void restoreDirectory() {
+        UserManager.setUsersDirectory(original);
+    }
+
+    @Test
+    void userWithOnlyABackupExistsAndIsListed() throws Exception {
+        UserManager.saveUser(new User("kept", ""));
+        UserManager.saveUser(new User("interrupted", ""));
+        Files.move(directory.resolve("interrupted.dat"), directory.resolve("interrupted.dat.bak"));
+        UserManager.setUsersDirectory(directory);
+
+        assertTrue(UserManager.userExists("interrupted"));
+        List<String> users = UserManager.getAllUsers();
+        users.sort(null);
+        assertEquals(List.of("interrupted", "kept"), users);
+        assertEquals("interrupted", UserManager.loadUser("interrupted").getUsername());
+    }
+
+    @Test
+    void tornSnapshotIsRecoveredFromBackup() throws Exception {
+        User user = new User("torn", "");
+        user.createAlbum("a");
+        for (int i = 0; i < 20; i++) {
+            user.getAlbum("a").addPhoto(new Photo("/torn/" + i + ".jpg", DATE.plusMinutes(i)));
+        }
+        UserManager.saveUser(user);
+        user.getAlbum("a").getPhotoAt(0).setCaption("second save");
+        UserManager.saveUser(user);
+        Path file = directory.resolve("torn.dat");
+        byte[] bytes = Files.readAllBytes(file);
+        // A crash left the end of the new snapshot unwritten
+        Arrays.fill(bytes, bytes.length - 16, bytes.length, (byte) 0);
+        Files.write(file, bytes);
+        UserManager.setUsersDirectory(directory);
+
+        User recovered = UserManager.loadUser("torn");
+        assertEquals(20, recovered.getAlbum("a").getPhotoCount());
+        assertEquals("", recovered.getAlbum("a").getPhotoAt(0).getCaption());
+        assertFalse(Files.exists(directory.resolve("torn.dat.bak")));
+    }
+
+    @Test
+    void deletingAUserCancelsItsScheduledSave() throws Exception {
+        UserManager.setSaveDelay(60_000);
+        try {
+            User user = new User("deleted", "");
+            UserManager.saveUser(user);
+            user.apply(Mutation.createAlbum("late"));
+            UserManager.saveUserLater(user);
+            assertTrue(UserManager.deleteUser("deleted"));
+            UserManager.saveUser(new User("deleted", "pw"));
+            UserManager.flushPendingSaves();
+            UserManager.setUsersDirectory(directory);
+
+            User recreated = UserManager.loadUser("deleted");
+            assertEquals("pw", recreated.getPassword());
+            assertNull(recreated.getAlbum("late"));
+            assertFalse(Files.exists(directory.resolve("deleted.journal")));
+        } finally {
+            UserManager.setSaveDelay(500);
+        }
+    }
+}
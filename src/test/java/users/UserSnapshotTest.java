@@ -0,0 +1,72 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import photos.Photo;
+import photos.Tag;
+
+/**
+ * Tests for publishing {@link User#snapshot()} and sharing album snapshots between them.
+ *
+ * @author Group 60
+ */
+class UserSnapshotTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 6, 1, 8, 0);
+
+    @Test
+    void publishedSnapshotIsReusedUntilTheUserChanges() {
+        User user = user();
+        UserSnapshot first = user.snapshot();
+        assertSame(first, user.snapshot());
+        assertSame(first.getAlbum("a"), user.snapshot().getAlbum("a"));
+
+        user.apply(Mutation.createAlbum("c"));
+        UserSnapshot second = user.snapshot();
+        assertNotSame(first, second);
+        assertEquals(3, second.getAlbums().size());
+        assertSame(first.getAlbum("a"), second.getAlbum("a"));
+        assertSame(first.getAlbum("b"), second.getAlbum("b"));
+    }
+
+    @Test
+    void onlyTheChangedAlbumsSnapshotIsRebuilt() {
+        User user = user();
+        UserSnapshot first = user.snapshot();
+        Photo photo = user.getAlbum("b").getPhotoAt(0);
+        user.apply(Mutation.addTag("b", photo, new Tag("person", "user-snapshot-test")));
+        UserSnapshot second = user.snapshot();
+        assertSame(first.getAlbum("a"), second.getAlbum("a"));
+        assertNotSame(first.getAlbum("b"), second.getAlbum("b"));
+        assertEquals(0, first.getAlbum("b").getPhotos().get(0).getTagCount());
+        assertEquals(1, second.getAlbum("b").getPhotos().get(0).getTagCount());
+    }
+
+    @Test
+    void sharedPhotoRebuildsEveryAlbumHoldingIt() {
+        User user = user();
+        Photo photo = user.getAlbum("a").getPhotoAt(0);
+        user.apply(Mutation.copyPhoto("a", "b", photo));
+        UserSnapshot first = user.snapshot();
+        user.apply(Mutation.setCaption("a", photo, "shared"));
+        UserSnapshot second = user.snapshot();
+        assertEquals("shared", second.getAlbum("a").getPhotos().get(0).getCaption());
+        assertEquals("shared", second.getAlbum("b").getPhotos().get(2).getCaption());
+        assertEquals("", first.getAlbum("b").getPhotos().get(2).getCaption());
+        assertSame(first.getAlbum("b").getPhotos().get(0), second.getAlbum("b").getPhotos().get(0));
+    }
+
+    private static User user() {
+        User user = new User("snapshots", "");
+        for (String name : new String[] {"a", "b"}) {
+            user.apply(Mutation.createAlbum(name));
+            for (int i = 0; i < 2; i++) {
+                user.apply(Mutation.addPhoto(name, "/" + name + "/" + i + ".jpg", DATE.plusDays(i), 100));
+            }
+        }
+        return user;
+    }
+}
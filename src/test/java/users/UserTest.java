@@ -0,0 +1,186 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import photos.Album;
+import photos.Photo;
+import photos.Tag;
+
+/**
+ * Tests for how {@link User} checks and records its changes for saving.
+ *
+ * @author Group 60
+ */
+class UserTest {
+    private static final LocalDateTime DATE = LocalDateTime.of(2024, 2, 1, 9, 0);
+
+    @TempDir
+    Path directory;
+
+    private User current;
+
+    @Test
+    void appliedChangesCanBeJournalled() {
+        User user = saved();
+        user.apply(Mutation.createAlbum("b"));
+        user.apply(Mutation.setCaption("a", photo(user), "journalled"));
+        assertFalse(user.hasUnjournalledChanges());
+        assertEquals(2, user.drainPendingMutations().size());
+    }
+
+    @Test
+    void directChangesNeedASnapshotEvenAfterLaterMutations() {
+        User user = saved();
+        photo(user).addTag(new Tag("person", "direct"));
+        assertTrue(user.hasUnjournalledChanges());
+        user.apply(Mutation.createAlbum("b"));
+        assertTrue(user.hasUnjournalledChanges());
+
+        user.drainPendingMutations(new ArrayList<>());
+        assertFalse(user.hasUnjournalledChanges());
+    }
+
+    @Test
+    void everyKindOfDirectChangeIsNoticed() {
+        List<Runnable> changes = List.of(
+            () -> {},
+            () -> photo(current).setDate(DATE.minusDays(1)),
+            () -> photo(current).setCaption("direct"),
+            () -> current.getAlbum("a").addPhoto(new Photo("/p/new.jpg", DATE)),
+            () -> current.getAlbum("a").removePhoto(photo(current)),
+            () -> current.getAlbum("a").setName("renamed"),
+            () -> current.createAlbum("b"),
+            () -> current.deleteAlbum("a"),
+            () -> current.setPassword("secret"));
+        for (int i = 0; i < changes.size(); i++) {
+            current = saved();
+            changes.get(i).run();
+            assertEquals(i > 0, current.hasUnjournalledChanges(), "change " + i);
+        }
+    }
+
+    @Test
+    void failedSaveNeedsASnapshot() {
+        User user = saved();
+        user.apply(Mutation.createAlbum("b"));
+        List<Mutation> pending = user.drainPendingMutations();
+        user.restorePendingMutations(pending);
+        assertTrue(user.hasUnjournalledChanges());
+    }
+
+    @Test
+    void loadingAnAlbumIsNotAChange() throws Exception {
+        Path file = directory.resolve("u.dat");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            UserCodec.write(saved().snapshot(), 0, file, out);
+        }
+        User user;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            user = UserCodec.read(in, file);
+        }
+        user.markSaved();
+        assertFalse(user.getAlbum("a").isLoaded());
+        long before = user.getAlbum("a").getVersion();
+        user.getAlbum("a").getPhotos();
+        assertEquals(before, user.getAlbum("a").getVersion());
+        assertFalse(user.hasUnjournalledChanges());
+    }
+
+    @Test
+    void singlePhotoOperationsReportUnmetPreconditions() {
+        User user = saved();
+        user.apply(Mutation.createAlbum("b"));
+        user.apply(Mutation.createSmartAlbum("smart", "person=nobody"));
+        Photo photo = photo(user);
+        Photo stranger = new Photo("/p/stranger.jpg", DATE);
+
+        assertFalse(user.addPhotoToAlbum("missing", stranger));
+        assertFalse(user.addPhotoToAlbum("smart", stranger));
+        assertFalse(user.addPhotoToAlbum("a", photo));
+        assertFalse(user.removePhotoFromAlbum("b", photo));
+        assertFalse(user.copyPhotoToAlbum("a", "smart", photo));
+        assertFalse(user.copyPhotoToAlbum("b", "a", photo));
+        assertFalse(user.movePhotoToAlbum("smart", "b", photo));
+        assertFalse(user.movePhotoToAlbum("a", "missing", photo));
+
+        assertTrue(user.copyPhotoToAlbum("a", "b", photo));
+        assertFalse(user.copyPhotoToAlbum("a", "b", photo));
+        assertTrue(user.movePhotoToAlbum("a", "b", user.getAlbum("a").getPhotoAt(1)));
+        assertTrue(user.removePhotoFromAlbum("b", photo));
+        assertTrue(user.addPhotoToAlbum("a", stranger));
+        assertEquals(2, user.getAlbum("a").getPhotoCount());
+        assertEquals(1, user.getAlbum("b").getPhotoCount());
+    }
+
+    @Test
+    void failedBatchChangesNothing() {
+        User user = saved();
+        user.apply(Mutation.createAlbum("b"));
+        user.drainPendingMutations();
+        Album album = user.getAlbum("a");
+        List<Photo> photos = List.of(photo(user), new Photo("/p/missing.jpg", DATE), album.getPhotoAt(1));
+        Tag tag = new Tag("person", "batch-test");
+
+        assertThrows(IllegalArgumentException.class, () -> user.movePhotos("a", "b", photos));
+        assertThrows(IllegalArgumentException.class, () -> user.tagPhotos("a", photos, tag));
+        assertThrows(IllegalArgumentException.class, () -> user.removePhotos("a", photos));
+        assertThrows(IllegalArgumentException.class, () -> user.copyPhotos("missing", "b", photos));
+        assertEquals(2, album.getPhotoCount());
+        assertEquals(0, user.getAlbum("b").getPhotoCount());
+        assertFalse(photo(user).hasTag(tag));
+        assertTrue(user.drainPendingMutations().isEmpty());
+    }
+
+    @Test
+    void batchIsJournalledAsOneRecord() throws Exception {
+        User user = saved();
+        user.apply(Mutation.createAlbum("b"));
+        user.getPhotoIndex();
+        List<Photo> photos = user.getAlbum("a").getPhotos();
+        assertEquals(2, user.movePhotos("a", "b", photos));
+        assertEquals(2, user.tagPhotos("b", photos, new Tag("event", "batch-test")));
+        List<Mutation> pending = user.drainPendingMutations();
+        assertEquals(List.of(Mutation.Type.CREATE_ALBUM, Mutation.Type.BATCH, Mutation.Type.BATCH),
+                     pending.stream().map(Mutation::getType).toList());
+
+        UserJournal journal = new UserJournal(directory.resolve("u.journal"));
+        journal.append(user, pending, Durability.RENAME);
+        User replayed = saved();
+        assertEquals(3, journal.replay(replayed));
+        assertEquals(0, replayed.getAlbum("a").getPhotoCount());
+        for (Photo photo : replayed.getAlbum("b").getPhotos()) {
+            assertTrue(photo.hasTag(new Tag("event", "batch-test")));
+        }
+        assertEquals(2, replayed.getAlbum("b").getPhotoCount());
+    }
+
+    /**
+     * Creates a user with one album of two photos, as if just read from disk.
+     */
+    private static User saved() {
+        User user = new User("u", "");
+        user.apply(Mutation.createAlbum("a"));
+        user.apply(Mutation.addPhoto("a", "/p/1.jpg", DATE, 10));
+        user.apply(Mutation.addPhoto("a", "/p/2.jpg", DATE.plusHours(1), 20));
+        user.drainPendingMutations();
+        user.markSaved();
+        return user;
+    }
+
+    private static Photo photo(User user) {
+        return user.getAlbum("a").getPhotoAt(0);
+    }
+}
@@ -0,0 +1,126 @@
+package users;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link WriteBehindSaver}: coalescing changes into one write per user, and
+ * writing everything still pending when flushed before logging out or quitting.
+ *
+ * @author Group 60
+ */
+class WriteBehindSaverTest {
+    @TempDir
+    Path directory;
+
+    private Path original;
+
+    @BeforeEach
+    void useTemporaryDirectory() {
+        original = UserManager.getUsersDirectory();
+        UserManager.setUsersDirectory(directory);
+    }
+
+    @AfterEach
+    void restoreDirectory() {
+        UserManager.setUsersDirectory(original);
+    }
+
+    @Test
+    void changesWithinTheWindowAreWrittenTogether() throws Exception {
+        WriteBehindSaver saver = new WriteBehindSaver(300);
+        User user = saved("coalesced");
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            user.apply(Mutation.createAlbum("a" + i));
+            saver.markDirty(user);
+        }
+        if ((System.nanoTime() - start) / 1_000_000 < 250) {
+            assertFalse(Files.exists(journal("coalesced")));
+        }
+
+        // Wait for the scheduled write
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(journal("coalesced")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        saver.flush();
+        assertEquals(5, replayedRecords("coalesced"));
+        assertTrue(user.drainPendingMutations().isEmpty());
+    }
+
+    @Test
+    void flushWritesEveryDirtyUserWithoutWaiting() throws Exception {
+        WriteBehindSaver saver = new WriteBehindSaver(60_000);
+        User first = saved("first");
+        User second = saved("second");
+        first.apply(Mutation.createAlbum("a"));
+        saver.markDirty(first);
+        second.apply(Mutation.createAlbum("a"));
+        second.apply(Mutation.createAlbum("b"));
+        saver.markDirty(second);
+        saver.markDirty(first);
+        assertFalse(Files.exists(journal("first")));
+
+        saver.flush();
+        assertEquals(1, replayedRecords("first"));
+        assertEquals(2, replayedRecords("second"));
+
+        // Nothing is left to write
+        saver.flush();
+        assertEquals(1, replayedRecords("first"));
+    }
+
+    @Test
+    void userNeverSavedKeepsItsMutationsPending() throws Exception {
+        WriteBehindSaver saver = new WriteBehindSaver(60_000);
+        User user = new User("unsaved", "");
+        user.apply(Mutation.createAlbum("a"));
+        saver.markDirty(user);
+        saver.flush();
+        assertFalse(UserManager.userExists("unsaved"));
+        assertEquals(1, user.drainPendingMutations().size());
+    }
+
+    @Test
+    void changesMadeOutsideApplyAreSavedInFull() throws Exception {
+        WriteBehindSaver saver = new WriteBehindSaver(60_000);
+        User user = saved("direct");
+        user.createAlbum("direct");
+        saver.markDirty(user);
+        saver.flush();
+        assertFalse(Files.exists(journal("direct")));
+        UserManager.setUsersDirectory(directory);
+        assertNotNull(UserManager.loadUser("direct").getAlbum("direct"));
+    }
+
+    /**
+     * Creates a user and writes its snapshot, so later changes can be appended to a journal.
+     *
+     * @param username the username
+     * @return the user
+     * @throws Exception if saving fails
+     */
+    private static User saved(String username) throws Exception {
+        User user = new User(username, "");
+        UserManager.saveUser(user);
+        return user;
+    }
+
+    private Path journal(String username) {
+        return directory.resolve(username + ".journal");
+    }
+
+    private int replayedRecords(String username) throws Exception {
+        return new UserJournal(journal(username)).replay(new User(username, ""));
+    }
+}
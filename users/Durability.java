@@ -0,0 +1,29 @@
+package users;
+
+/**
+ * Controls how hard {@link UserManager} works to make a save survive a crash.
+ * Every level writes snapshots to a temporary file and renames it into place, so an
+ * application crash never leaves a half-written user file. Higher levels additionally
+ * force data to the storage device, trading save latency for safety against power loss.
+ *
+ * @author Group 60
+ */
+public enum Durability {
+    /**
+     * Write to a temporary file and rename it into place without forcing it to disk.
+     * Survives application crashes but not operating system crashes or power loss.
+     */
+    RENAME,
+
+    /**
+     * Force the file contents to disk before renaming it into place.
+     * Journal appends are also forced before the save returns.
+     */
+    FSYNC,
+
+    /**
+     * Force the file contents to disk and also force the parent directory after the rename,
+     * so the rename itself is durable. Directory syncing is skipped on platforms that don't support it.
+     */
+    FSYNC_DIRECTORY
+}
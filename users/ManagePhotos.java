@@ -1,10 +1,15 @@
 package users;
 
+import java.util.Collection;
 import photos.Photo;
+import photos.Tag;
 
 /**
  * Interface for managing photos in albums.
  * Provides operations for adding, removing, copying, and moving photos.
+ * The batch operations check the whole batch before changing anything, so they either
+ * apply to every photo they name or throw without changing the library. Photos the batch
+ * would not change, such as a photo already in the destination album, are skipped.
  * 
  * @author Group 60
  */
@@ -48,4 +53,75 @@ public interface ManagePhotos {
      * @return true if the photo was moved, false otherwise
      */
     boolean movePhotoToAlbum(String sourceAlbum, String destAlbum, Photo photo);
+
+    /**
+     * Adds photos to an album.
+     * A photo new to the user is added as a copy, with the caption and tags it has now.
+     * A photo whose path is already in another album is added as that album's photo.
+     *
+     * @param albumName the name of the album
+     * @param photos the photos to add
+     * @return the number of photos added
+     * @throws IllegalArgumentException if the album doesn't exist or is a smart album
+     */
+    int addPhotos(String albumName, Collection<Photo> photos);
+
+    /**
+     * Removes photos from an album.
+     *
+     * @param albumName the name of the album
+     * @param photos the photos to remove
+     * @return the number of photos removed
+     * @throws IllegalArgumentException if the album doesn't exist, is a smart album,
+     *         or doesn't contain one of the photos
+     */
+    int removePhotos(String albumName, Collection<Photo> photos);
+
+    /**
+     * Copies photos from one album to another.
+     *
+     * @param sourceAlbum the name of the source album
+     * @param destAlbum the name of the destination album
+     * @param photos the photos to copy
+     * @return the number of photos copied
+     * @throws IllegalArgumentException if either album doesn't exist, the destination is
+     *         a smart album, or the source doesn't contain one of the photos
+     */
+    int copyPhotos(String sourceAlbum, String destAlbum, Collection<Photo> photos);
+
+    /**
+     * Moves photos from one album to another.
+     *
+     * @param sourceAlbum the name of the source album
+     * @param destAlbum the name of the destination album
+     * @param photos the photos to move
+     * @return the number of photos moved
+     * @throws IllegalArgumentException if either album doesn't exist or is a smart album,
+     *         or the source doesn't contain one of the photos
+     */
+    int movePhotos(String sourceAlbum, String destAlbum, Collection<Photo> photos);
+
+    /**
+     * Adds a tag to photos in an album.
+     *
+     * @param albumName the name of the album containing the photos
+     * @param photos the photos to tag
+     * @param tag the tag to add
+     * @return the number of photos that gained the tag
+     * @throws IllegalArgumentException if the album doesn't exist or doesn't contain one
+     *         of the photos
+     */
+    int tagPhotos(String albumName, Collection<Photo> photos, Tag tag);
+
+    /**
+     * Removes a tag from photos in an album.
+     *
+     * @param albumName the name of the album containing the photos
+     * @param photos the photos to untag
+     * @param tag the tag to remove
+     * @return the number of photos that lost the tag
+     * @throws IllegalArgumentException if the album doesn't exist or doesn't contain one
+     *         of the photos
+     */
+    int untagPhotos(String albumName, Collection<Photo> photos, Tag tag);
 }
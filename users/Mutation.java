@@ -0,0 +1,463 @@
+package users;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import photos.Album;
+import photos.Photo;
+import photos.SmartAlbum;
+import photos.Tag;
+
+/**
+ * Represents a single typed change to a user's library.
+ * Mutations are applied through {@link User#apply(Mutation)} and appended to the
+ * user's journal on save, so the cost of persisting a change is proportional to
+ * the change itself rather than to the size of the library.
+ * Photos are identified by album name and file path. A photo new to the user is added
+ * with its caption and tags in the same record, so it never appears without them.
+ * A batch groups the mutations of one bulk operation into a single journal record, so
+ * the operation is replayed in full or, if the record was torn by a crash, not at all.
+ *
+ * @author Group 60
+ */
+public final class Mutation {
+
+    /**
+     * The kinds of change that can be recorded in the journal.
+     * The ordinal of each constant is written to disk, so new constants must be appended.
+     */
+    public enum Type {
+        CREATE_ALBUM,
+        DELETE_ALBUM,
+        RENAME_ALBUM,
+        ADD_PHOTO,
+        REMOVE_PHOTO,
+        COPY_PHOTO,
+        MOVE_PHOTO,
+        SET_CAPTION,
+        ADD_TAG,
+        REMOVE_TAG,
+        CREATE_SMART_ALBUM,
+        BATCH
+    }
+
+    private final Type type;
+    private final String album;
+    private final String target;
+    private final String path;
+    private final String key;
+    private final String value;
+    private final LocalDateTime date;
+    private final long fileSize;
+    private final List<Tag> tags;
+    private final List<Mutation> parts;
+
+    private Mutation(Type type, String album, String target, String path,
+                     String key, String value, LocalDateTime date) {
+        this(type, album, target, path, key, value, date, 0, null, null);
+    }
+
+    private Mutation(Type type, String album, String target, String path, String key, String value,
+                     LocalDateTime date, long fileSize, List<Tag> tags, List<Mutation> parts) {
+        this.type = type;
+        this.album = album;
+        this.target = target;
+        this.path = path;
+        this.key = key;
+        this.value = value;
+        this.date = date;
+        this.fileSize = fileSize;
+        this.tags = tags;
+        this.parts = parts;
+    }
+
+    /**
+     * Creates a mutation that creates a new, empty album.
+     *
+     * @param albumName the name of the new album
+     * @return the mutation
+     */
+    public static Mutation createAlbum(String albumName) {
+        return new Mutation(Type.CREATE_ALBUM, albumName, null, null, null, null, null);
+    }
+
+    /**
+     * Creates a mutation that creates a new smart album.
+     *
+     * @param albumName the name of the new album
+     * @param query the query selecting the album's photos
+     * @return the mutation
+     */
+    public static Mutation createSmartAlbum(String albumName, String query) {
+        return new Mutation(Type.CREATE_SMART_ALBUM, albumName, null, null, null, query, null);
+    }
+
+    /**
+     * Creates a mutation that deletes an album.
+     *
+     * @param albumName the name of the album to delete
+     * @return the mutation
+     */
+    public static Mutation deleteAlbum(String albumName) {
+        return new Mutation(Type.DELETE_ALBUM, albumName, null, null, null, null, null);
+    }
+
+    /**
+     * Creates a mutation that renames an album.
+     *
+     * @param oldName the current album name
+     * @param newName the new album name
+     * @return the mutation
+     */
+    public static Mutation renameAlbum(String oldName, String newName) {
+        return new Mutation(Type.RENAME_ALBUM, oldName, newName, null, null, null, null);
+    }
+
+    /**
+     * Creates a mutation that adds a new photo to an album.
+     *
+     * @param albumName the name of the album
+     * @param filePath the absolute path to the photo file
+     * @param date the date/time the photo was taken
+     * @param fileSize the size of the photo file in bytes, or 0 if unknown
+     * @return the mutation
+     */
+    public static Mutation addPhoto(String albumName, String filePath, LocalDateTime date, long fileSize) {
+        return new Mutation(Type.ADD_PHOTO, albumName, null, filePath, null, null, date, fileSize, null, null);
+    }
+
+    /**
+     * Creates a mutation that adds a photo to an album along with its caption and tags.
+     * The mutation records a copy of the photo as it is now. If the user already has a
+     * photo with the same path when the mutation is applied, that photo is added instead
+     * and the recorded caption and tags are ignored.
+     *
+     * @param albumName the name of the album
+     * @param photo the photo to add
+     * @return the mutation
+     */
+    public static Mutation addPhoto(String albumName, Photo photo) {
+        return new Mutation(Type.ADD_PHOTO, albumName, null, photo.getFilePath(), null,
+                            photo.getCaption().isEmpty() ? null : photo.getCaption(), photo.getDate(),
+                            photo.getFileSize(), photo.getTagCount() == 0 ? null : photo.getTags(), null);
+    }
+
+    /**
+     * Creates a mutation that removes a photo from an album.
+     *
+     * @param albumName the name of the album
+     * @param photo the photo to remove
+     * @return the mutation
+     */
+    public static Mutation removePhoto(String albumName, Photo photo) {
+        return new Mutation(Type.REMOVE_PHOTO, albumName, null, photo.getFilePath(), null, null, null);
+    }
+
+    /**
+     * Creates a mutation that copies a photo from one album to another.
+     *
+     * @param sourceAlbum the name of the source album
+     * @param destAlbum the name of the destination album
+     * @param photo the photo to copy
+     * @return the mutation
+     */
+    public static Mutation copyPhoto(String sourceAlbum, String destAlbum, Photo photo) {
+        return new Mutation(Type.COPY_PHOTO, sourceAlbum, destAlbum, photo.getFilePath(), null, null, null);
+    }
+
+    /**
+     * Creates a mutation that moves a photo from one album to another.
+     *
+     * @param sourceAlbum the name of the source album
+     * @param destAlbum the name of the destination album
+     * @param photo the photo to move
+     * @return the mutation
+     */
+    public static Mutation movePhoto(String sourceAlbum, String destAlbum, Photo photo) {
+        return new Mutation(Type.MOVE_PHOTO, sourceAlbum, destAlbum, photo.getFilePath(), null, null, null);
+    }
+
+    /**
+     * Creates a mutation that sets the caption of a photo.
+     *
+     * @param albumName the name of the album containing the photo
+     * @param photo the photo
+     * @param caption the new caption
+     * @return the mutation
+     */
+    public static Mutation setCaption(String albumName, Photo photo, String caption) {
+        return new Mutation(Type.SET_CAPTION, albumName, null, photo.getFilePath(), null,
+                            caption == null ? "" : caption, null);
+    }
+
+    /**
+     * Creates a mutation that adds a tag to a photo.
+     *
+     * @param albumName the name of the album containing the photo
+     * @param photo the photo
+     * @param tag the tag to add
+     * @return the mutation
+     */
+    public static Mutation addTag(String albumName, Photo photo, Tag tag) {
+        return new Mutation(Type.ADD_TAG, albumName, null, photo.getFilePath(), tag.getType(), tag.getValue(), null);
+    }
+
+    /**
+     * Creates a mutation that removes a tag from a photo.
+     *
+     * @param albumName the name of the album containing the photo
+     * @param photo the photo
+     * @param tag the tag to remove
+     * @return the mutation
+     */
+    public static Mutation removeTag(String albumName, Photo photo, Tag tag) {
+        return new Mutation(Type.REMOVE_TAG, albumName, null, photo.getFilePath(), tag.getType(), tag.getValue(), null);
+    }
+
+    /**
+     * Creates a mutation that applies several mutations in order, as one journal record.
+     *
+     * @param parts the mutations; none may itself be a batch
+     * @return the mutation
+     */
+    static Mutation batch(List<Mutation> parts) {
+        return new Mutation(Type.BATCH, null, null, null, null, null, null, 0, null, new ArrayList<>(parts));
+    }
+
+    /**
+     * Gets the type of this mutation.
+     *
+     * @return the mutation type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Applies this mutation to a user without recording it.
+     *
+     * @param user the user to modify
+     * @return true if the user was changed, false if the mutation did not apply
+     */
+    boolean applyTo(User user) {
+        switch (type) {
+            case CREATE_ALBUM:
+                return user.createAlbum(album);
+            case DELETE_ALBUM:
+                return user.deleteAlbum(album);
+            case RENAME_ALBUM:
+                return user.renameAlbum(album, target);
+            case ADD_PHOTO: {
+                Album dest = user.getAlbum(album);
+                if (dest == null) {
+                    return false;
+                }
+                // A photo already in another album is added as that same photo, keeping
+                // its caption and tags, rather than as a second copy.
+                Photo existing = user.findPhoto(path);
+                return dest.addPhoto(existing != null ? existing : newPhoto());
+            }
+            case REMOVE_PHOTO: {
+                Album source = user.getAlbum(album);
+                Photo photo = findPhoto(user, album);
+                return photo != null && source.removePhoto(photo);
+            }
+            case COPY_PHOTO: {
+                Album dest = user.getAlbum(target);
+                Photo photo = findPhoto(user, album);
+                return photo != null && dest != null && dest.addPhoto(photo);
+            }
+            case MOVE_PHOTO: {
+                Album source = user.getAlbum(album);
+                Album dest = user.getAlbum(target);
+                if (source instanceof SmartAlbum) {
+                    return false;
+                }
+                Photo photo = findPhoto(user, album);
+                if (photo == null || dest == null || !dest.addPhoto(photo)) {
+                    return false;
+                }
+                return source.removePhoto(photo);
+            }
+            case SET_CAPTION: {
+                Photo photo = findPhoto(user, album);
+                if (photo == null) {
+                    return false;
+                }
+                photo.setCaption(value);
+                return true;
+            }
+            case ADD_TAG: {
+                Photo photo = findPhoto(user, album);
+                return photo != null && photo.addTag(Tag.of(key, value));
+            }
+            case REMOVE_TAG: {
+                Photo photo = findPhoto(user, album);
+                return photo != null && photo.removeTag(new Tag(key, value));
+            }
+            case CREATE_SMART_ALBUM:
+                try {
+                    return user.createSmartAlbum(album, value);
+                } catch (IllegalArgumentException e) {
+                    return false;
+                }
+            case BATCH:
+                return user.applyAll(parts);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Creates the photo an add-photo mutation records, with its caption and tags.
+     *
+     * @return the photo
+     */
+    private Photo newPhoto() {
+        Photo photo = new Photo(path, date, fileSize);
+        if (value != null) {
+            photo.setCaption(value);
+        }
+        if (tags != null) {
+            for (Tag tag : tags) {
+                photo.addTag(tag);
+            }
+        }
+        return photo;
+    }
+
+    /**
+     * Finds the photo this mutation refers to.
+     *
+     * @param user the user
+     * @param albumName the album expected to contain the photo
+     * @return the photo, or null if the album or photo doesn't exist
+     */
+    private Photo findPhoto(User user, String albumName) {
+        Album source = user.getAlbum(albumName);
+        return source == null ? null : source.findPhoto(path);
+    }
+
+    /**
+     * Writes this mutation to a data output in the journal format.
+     * Strings are written as length-prefixed UTF-8, so they can be of any length, and
+     * the file size and tags of an added photo follow the date.
+     *
+     * @param out the output to write to
+     * @throws IOException if there's an error writing
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(type.ordinal());
+        writeString(out, album);
+        writeString(out, target);
+        writeString(out, path);
+        writeString(out, key);
+        writeString(out, value);
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(date.getNano());
+        }
+        if (type == Type.ADD_PHOTO) {
+            UserCodec.writeVarLong(out, fileSize);
+            UserCodec.writeVarInt(out, tags == null ? 0 : tags.size());
+            if (tags != null) {
+                for (Tag tag : tags) {
+                    UserCodec.writeString(out, tag.getType());
+                    UserCodec.writeString(out, tag.getValue());
+                }
+            }
+        }
+        if (type == Type.BATCH) {
+            out.writeInt(parts.size());
+            for (Mutation part : parts) {
+                part.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Reads a mutation previously written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the mutation
+     * @throws IOException if there's an error reading or the data is malformed
+     */
+    static Mutation readFrom(DataInput in) throws IOException {
+        int ordinal = in.readUnsignedByte();
+        Type[] types = Type.values();
+        if (ordinal >= types.length) {
+            throw new IOException("Unknown mutation type: " + ordinal);
+        }
+        String album = readString(in);
+        String target = readString(in);
+        String path = readString(in);
+        String key = readString(in);
+        String value = readString(in);
+        LocalDateTime date = null;
+        if (in.readBoolean()) {
+            long seconds = in.readLong();
+            int nanos = in.readInt();
+            date = LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+        }
+        long fileSize = 0;
+        List<Tag> tags = null;
+        if (types[ordinal] == Type.ADD_PHOTO) {
+            fileSize = UserCodec.readVarLong(in);
+            int count = UserCodec.readVarInt(in);
+            if (count < 0) {
+                throw new IOException("Negative tag count: " + count);
+            }
+            if (count > 0) {
+                tags = new ArrayList<>(Math.min(count, 1024));
+                for (int i = 0; i < count; i++) {
+                    tags.add(Tag.of(UserCodec.readString(in), UserCodec.readString(in)));
+                }
+            }
+        }
+        List<Mutation> parts = null;
+        if (types[ordinal] == Type.BATCH) {
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Negative batch size: " + count);
+            }
+            parts = new ArrayList<>(Math.min(count, 1024));
+            for (int i = 0; i < count; i++) {
+                parts.add(readFrom(in));
+            }
+        }
+        return new Mutation(types[ordinal], album, target, path, key, value, date, fileSize, tags, parts);
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            UserCodec.writeString(out, s);
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     */
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? UserCodec.readString(in) : null;
+    }
+
+    /**
+     * Returns a string representation of this mutation.
+     *
+     * @return a string describing the mutation
+     */
+    @Override
+    public String toString() {
+        if (type == Type.BATCH) {
+            return type + " of " + parts.size();
+        }
+        return type + " " + album + (target != null ? " -> " + target : "")
+            + (path != null ? " " + path : "");
+    }
+}
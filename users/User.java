@@ -1,9 +1,25 @@
 package users;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import photos.Album;
+import photos.AlbumSnapshot;
+import photos.Photo;
+import photos.PhotoIndex;
+import photos.PhotoRegistry;
+import photos.SmartAlbum;
+import photos.Tag;
 
 /**
  * Represents a user of the photo application.
@@ -11,12 +27,24 @@ import photos.Album;
  * 
  * @author Group 60
  */
-public class User implements Serializable {
+public class User implements Serializable, ManagePhotos {
     private static final long serialVersionUID = 1L;
     
     private String username;
     private String password;
     private final List<Album> albums;
+    private long journalSequence;
+    private transient List<Mutation> pendingMutations;
+    private transient PhotoIndex photoIndex;
+    private transient PhotoRegistry photoRegistry;
+    private transient List<Album> albumView;
+    private transient Map<String, Album> albumsByName;
+    private transient boolean duplicateNames;
+    private transient AtomicReference<UserSnapshot> published;
+    private transient volatile UserSnapshot saved;
+    private transient long changeCount;
+    private transient long journalledStamp;
+    private transient boolean unjournalled;
 
     /**
      * Constructs a User with the specified username and password.
@@ -28,6 +56,9 @@ public class User implements Serializable {
         this.username = username;
         this.password = password == null ? "" : password;
         this.albums = new ArrayList<>();
+        this.photoRegistry = new PhotoRegistry();
+        this.albumsByName = new HashMap<>();
+        this.published = new AtomicReference<>();
     }
 
     /**
@@ -46,6 +77,7 @@ public class User implements Serializable {
      */
     public void setUsername(String username) {
         this.username = username;
+        changed();
     }
 
     /**
@@ -64,17 +96,35 @@ public class User implements Serializable {
      */
     public void setPassword(String password) {
         this.password = password == null ? "" : password;
+        changed();
     }
 
     /**
      * Gets all albums for this user.
      *
-     * @return a list of albums
+     * @return a new list of the albums, which later changes to the user don't affect
      */
     public List<Album> getAlbums() {
         return new ArrayList<>(albums);
     }
 
+    /**
+     * Gets a read-only view of this user's albums, without copying them.
+     * The view reflects later changes, so albums must not be created or deleted while
+     * it is being iterated; use {@link #getAlbums()} for that, or from another thread.
+     * The same view is returned on every call.
+     *
+     * @return an unmodifiable list of the albums
+     */
+    public List<Album> getAlbumView() {
+        List<Album> result = albumView;
+        if (result == null) {
+            result = Collections.unmodifiableList(albums);
+            albumView = result;
+        }
+        return result;
+    }
+
     /**
      * Gets the number of albums for this user.
      *
@@ -91,12 +141,28 @@ public class User implements Serializable {
      * @return the album, or null if not found
      */
     public Album getAlbum(String albumName) {
-        for (Album album : albums) {
-            if (album.getName().equals(albumName)) {
-                return album;
-            }
-        }
-        return null;
+        return albumsByName.get(albumName);
+    }
+
+    /**
+     * Finds this user's photo with a file path, in any album.
+     * Albums that haven't been loaded are searched without loading them, so the answer
+     * doesn't depend on which albums have been opened.
+     *
+     * @param filePath the file path
+     * @return the photo, or null if no album contains it
+     */
+    public Photo findPhoto(String filePath) {
+        return photoRegistry.locate(filePath);
+    }
+
+    /**
+     * Gets the registry of this user's photos.
+     *
+     * @return the photo registry
+     */
+    public PhotoRegistry getPhotoRegistry() {
+        return photoRegistry;
     }
 
     /**
@@ -110,10 +176,47 @@ public class User implements Serializable {
         if (getAlbum(albumName) != null) {
             return false;
         }
-        albums.add(new Album(albumName));
+        addAlbum(new Album(albumName));
+        return true;
+    }
+
+    /**
+     * Creates a new smart album whose photos are this user's photos matching a query.
+     * Album names must be unique for a user.
+     *
+     * @param albumName the name of the new album
+     * @param query the query selecting the album's photos
+     * @return true if the album was created, false if an album with that name already exists
+     * @throws IllegalArgumentException if the query is malformed
+     */
+    public boolean createSmartAlbum(String albumName, String query) {
+        if (getAlbum(albumName) != null) {
+            return false;
+        }
+        addAlbum(new SmartAlbum(albumName, query));
         return true;
     }
 
+    /**
+     * Adds an existing album, such as one read from disk.
+     * The caller is responsible for ensuring the album name is unique.
+     *
+     * @param album the album to add
+     */
+    void addAlbum(Album album) {
+        if (album instanceof SmartAlbum) {
+            ((SmartAlbum) album).bind(this::getPhotoIndex);
+        } else {
+            photoRegistry.addAlbum(album);
+        }
+        albums.add(album);
+        index(album);
+        if (photoIndex != null) {
+            photoIndex.addAlbum(album);
+        }
+        changed();
+    }
+
     /**
      * Deletes an album.
      *
@@ -122,10 +225,20 @@ public class User implements Serializable {
      */
     public boolean deleteAlbum(String albumName) {
         Album album = getAlbum(albumName);
-        if (album != null) {
-            return albums.remove(album);
+        if (album == null || !albums.remove(album)) {
+            return false;
         }
-        return false;
+        unindex(album);
+        // Keeps the change stamp growing when the album's version leaves the sum
+        changeCount += album.getVersion();
+        if (photoIndex != null) {
+            photoIndex.removeAlbum(album);
+        }
+        if (!(album instanceof SmartAlbum)) {
+            photoRegistry.removeAlbum(album);
+        }
+        changed();
+        return true;
     }
 
     /**
@@ -141,10 +254,436 @@ public class User implements Serializable {
         if (album == null || getAlbum(newName) != null) {
             return false;
         }
+        unindex(album);
         album.setName(newName);
+        albumsByName.put(newName, album);
+        changed();
         return true;
     }
 
+    /**
+     * Adds an album to the name index unless an earlier album has the same name.
+     *
+     * @param album the album
+     */
+    private void index(Album album) {
+        if (albumsByName.putIfAbsent(album.getName(), album) != null) {
+            duplicateNames = true;
+        }
+    }
+
+    /**
+     * Removes an album from the name index. If another album has the same name, as can
+     * happen in a user read from an old file, that album takes its place.
+     *
+     * @param album the album
+     */
+    private void unindex(Album album) {
+        if (!albumsByName.remove(album.getName(), album) || !duplicateNames) {
+            return;
+        }
+        for (Album other : albums) {
+            if (other != album && other.getName().equals(album.getName())) {
+                albumsByName.put(other.getName(), other);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the search index over this user's photos, building it on first use.
+     * Building the index loads every album; afterwards it is kept up to date as
+     * albums, photos and tags change. Smart albums are evaluated once all the other
+     * albums' photos are indexed.
+     *
+     * @return the photo index
+     */
+    public synchronized PhotoIndex getPhotoIndex() {
+        if (photoIndex == null) {
+            PhotoIndex index = new PhotoIndex();
+            for (Album album : albums) {
+                if (!(album instanceof SmartAlbum)) {
+                    index.addAlbum(album);
+                }
+            }
+            for (Album album : albums) {
+                if (album instanceof SmartAlbum) {
+                    index.addAlbum(album);
+                }
+            }
+            photoIndex = index;
+        }
+        return photoIndex;
+    }
+
+    /**
+     * Applies a mutation to this user and records it for the next save.
+     * Changes made through this method are persisted by appending to the user's
+     * journal instead of rewriting the whole library. Changes made any other way since the
+     * last save are noticed here, and make the next save write the whole library.
+     *
+     * @param mutation the mutation to apply
+     * @return true if the mutation was applied, false if it did not apply
+     *         (for example, the album doesn't exist or the photo is a duplicate)
+     */
+    public synchronized boolean apply(Mutation mutation) {
+        if (changeStamp() != journalledStamp) {
+            unjournalled = true;
+        }
+        boolean applied = mutation.applyTo(this);
+        if (applied) {
+            if (pendingMutations == null) {
+                pendingMutations = new ArrayList<>();
+            }
+            pendingMutations.add(mutation);
+            changed();
+        }
+        journalledStamp = changeStamp();
+        return applied;
+    }
+
+    /**
+     * Checks whether this user has changed other than through {@link #apply(Mutation)}
+     * since it was read or its full snapshot was last taken for saving, so that appending
+     * the pending mutations to the journal would not save every change.
+     *
+     * @return true if only a full snapshot would save the user's changes
+     */
+    synchronized boolean hasUnjournalledChanges() {
+        return unjournalled || changeStamp() != journalledStamp;
+    }
+
+    /**
+     * Records that every change made to this user so far is on disk, after it has been
+     * read and its journal replayed.
+     */
+    synchronized void markSaved() {
+        unjournalled = false;
+        journalledStamp = changeStamp();
+    }
+
+    /**
+     * Gets a number that grows with every change to this user, its albums or their photos.
+     *
+     * @return the stamp
+     */
+    private long changeStamp() {
+        long stamp = changeCount;
+        for (Album album : albums) {
+            stamp += album.getVersion();
+        }
+        return stamp;
+    }
+
+    /**
+     * Gets an immutable snapshot of this user, without locking if one has been published
+     * since the user last changed. Otherwise the snapshot is built under the user's lock,
+     * reusing the snapshots of albums that haven't changed, and published for later calls.
+     * Changes made through this user's methods discard the published snapshot; changes made
+     * directly to an album or photo show once the user next changes or is saved.
+     *
+     * @return the snapshot
+     */
+    public UserSnapshot snapshot() {
+        UserSnapshot current = published.get();
+        return current != null ? current : publishSnapshot();
+    }
+
+    /**
+     * Builds and publishes a snapshot of this user's current state.
+     *
+     * @return the snapshot
+     */
+    synchronized UserSnapshot publishSnapshot() {
+        List<AlbumSnapshot> snapshots = new ArrayList<>(albums.size());
+        for (Album album : albums) {
+            snapshots.add(album.snapshot());
+        }
+        UserSnapshot snapshot = new UserSnapshot(this, username, password, snapshots);
+        published.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Gets the snapshot last written to this user's file.
+     *
+     * @return the snapshot, or null if none has been written since the user was read
+     */
+    UserSnapshot getSavedSnapshot() {
+        return saved;
+    }
+
+    /**
+     * Records the snapshot last written to this user's file.
+     *
+     * @param snapshot the snapshot
+     */
+    void setSavedSnapshot(UserSnapshot snapshot) {
+        saved = snapshot;
+    }
+
+    /**
+     * Discards the published snapshot after a change.
+     */
+    private void changed() {
+        changeCount++;
+        published.set(null);
+    }
+
+    /**
+     * Applies the mutations of a batch in order, as a single change to the photo index.
+     *
+     * @param parts the mutations
+     * @return true if any of the mutations applied
+     */
+    synchronized boolean applyAll(List<Mutation> parts) {
+        boolean[] changed = new boolean[1];
+        Runnable changes = () -> {
+            for (Mutation part : parts) {
+                changed[0] |= part.applyTo(this);
+            }
+        };
+        if (photoIndex != null) {
+            photoIndex.runBatch(parts.size(), changes);
+        } else {
+            changes.run();
+        }
+        return changed[0];
+    }
+
+    @Override
+    public synchronized boolean addPhotoToAlbum(String albumName, Photo photo) {
+        return isPhotoAlbum(albumName) && addPhotos(albumName, List.of(photo)) == 1;
+    }
+
+    @Override
+    public synchronized boolean removePhotoFromAlbum(String albumName, Photo photo) {
+        return isPhotoAlbum(albumName) && getAlbum(albumName).containsPhoto(photo)
+            && removePhotos(albumName, List.of(photo)) == 1;
+    }
+
+    @Override
+    public synchronized boolean copyPhotoToAlbum(String sourceAlbum, String destAlbum, Photo photo) {
+        Album source = getAlbum(sourceAlbum);
+        return source != null && isPhotoAlbum(destAlbum) && source.containsPhoto(photo)
+            && copyPhotos(sourceAlbum, destAlbum, List.of(photo)) == 1;
+    }
+
+    @Override
+    public synchronized boolean movePhotoToAlbum(String sourceAlbum, String destAlbum, Photo photo) {
+        return isPhotoAlbum(sourceAlbum) && isPhotoAlbum(destAlbum) && getAlbum(sourceAlbum).containsPhoto(photo)
+            && movePhotos(sourceAlbum, destAlbum, List.of(photo)) == 1;
+    }
+
+    @Override
+    public synchronized int addPhotos(String albumName, Collection<Photo> photos) {
+        Album album = requireAlbum(albumName, false);
+        List<Mutation> parts = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        int added = 0;
+        for (Photo photo : photos) {
+            String path = photo.getFilePath();
+            if (album.findPhoto(path) != null || !seen.add(path)) {
+                continue;
+            }
+            added++;
+            parts.add(Mutation.addPhoto(albumName, photo));
+        }
+        applyBatch(parts);
+        return added;
+    }
+
+    @Override
+    public synchronized int removePhotos(String albumName, Collection<Photo> photos) {
+        Album album = requireAlbum(albumName, false);
+        List<Mutation> parts = new ArrayList<>();
+        for (Photo photo : requirePhotos(album, photos)) {
+            parts.add(Mutation.removePhoto(albumName, photo));
+        }
+        applyBatch(parts);
+        return parts.size();
+    }
+
+    @Override
+    public synchronized int copyPhotos(String sourceAlbum, String destAlbum, Collection<Photo> photos) {
+        Album source = requireAlbum(sourceAlbum, true);
+        Album dest = requireAlbum(destAlbum, false);
+        List<Mutation> parts = new ArrayList<>();
+        for (Photo photo : requirePhotos(source, photos)) {
+            if (!dest.containsPhoto(photo)) {
+                parts.add(Mutation.copyPhoto(sourceAlbum, destAlbum, photo));
+            }
+        }
+        applyBatch(parts);
+        return parts.size();
+    }
+
+    @Override
+    public synchronized int movePhotos(String sourceAlbum, String destAlbum, Collection<Photo> photos) {
+        Album source = requireAlbum(sourceAlbum, false);
+        Album dest = requireAlbum(destAlbum, false);
+        List<Mutation> parts = new ArrayList<>();
+        for (Photo photo : requirePhotos(source, photos)) {
+            if (!dest.containsPhoto(photo)) {
+                parts.add(Mutation.movePhoto(sourceAlbum, destAlbum, photo));
+            }
+        }
+        applyBatch(parts);
+        return parts.size();
+    }
+
+    @Override
+    public synchronized int tagPhotos(String albumName, Collection<Photo> photos, Tag tag) {
+        Album album = requireAlbum(albumName, true);
+        List<Mutation> parts = new ArrayList<>();
+        for (Photo photo : requirePhotos(album, photos)) {
+            if (!photo.hasTag(tag)) {
+                parts.add(Mutation.addTag(albumName, photo, tag));
+            }
+        }
+        applyBatch(parts);
+        return parts.size();
+    }
+
+    @Override
+    public synchronized int untagPhotos(String albumName, Collection<Photo> photos, Tag tag) {
+        Album album = requireAlbum(albumName, true);
+        List<Mutation> parts = new ArrayList<>();
+        for (Photo photo : requirePhotos(album, photos)) {
+            if (photo.hasTag(tag)) {
+                parts.add(Mutation.removeTag(albumName, photo, tag));
+            }
+        }
+        applyBatch(parts);
+        return parts.size();
+    }
+
+    /**
+     * Applies the checked mutations of a batch operation, recording them as one mutation.
+     *
+     * @param parts the mutations
+     */
+    private void applyBatch(List<Mutation> parts) {
+        if (!parts.isEmpty()) {
+            apply(parts.size() == 1 ? parts.get(0) : Mutation.batch(parts));
+        }
+    }
+
+    /**
+     * Finds an album a batch operation refers to.
+     *
+     * @param albumName the album name
+     * @param allowSmart whether the operation may use a smart album
+     * @return the album
+     * @throws IllegalArgumentException if the album doesn't exist, or is a smart album
+     *         and the operation can't use one
+     */
+    private Album requireAlbum(String albumName, boolean allowSmart) {
+        Album album = getAlbum(albumName);
+        if (album == null) {
+            throw new IllegalArgumentException("No album named '" + albumName + "'");
+        }
+        if (!allowSmart && album instanceof SmartAlbum) {
+            throw new IllegalArgumentException("Photos can't be added to or removed from smart album '"
+                                               + albumName + "'");
+        }
+        return album;
+    }
+
+    /**
+     * Finds an album's instances of photos, dropping repeated photos.
+     *
+     * @param album the album
+     * @param photos the photos
+     * @return the album's photos with the same paths, in the order given
+     * @throws IllegalArgumentException if the album doesn't contain one of the photos
+     */
+    private static Collection<Photo> requirePhotos(Album album, Collection<Photo> photos) {
+        Map<String, Photo> found = new LinkedHashMap<>();
+        for (Photo photo : photos) {
+            Photo held = album.findPhoto(photo.getFilePath());
+            if (held == null) {
+                throw new IllegalArgumentException("Album '" + album.getName() + "' doesn't contain "
+                                                   + photo.getFilePath());
+            }
+            found.putIfAbsent(held.getFilePath(), held);
+        }
+        return found.values();
+    }
+
+    /**
+     * Checks whether an album exists and photos can be added to and removed from it,
+     * which the batch operations require of the albums they change.
+     *
+     * @param albumName the album name
+     * @return true if the album exists and isn't a smart album
+     */
+    private boolean isPhotoAlbum(String albumName) {
+        Album album = getAlbum(albumName);
+        return album != null && !(album instanceof SmartAlbum);
+    }
+
+    /**
+     * Removes and returns the mutations applied since the last save.
+     *
+     * @return the pending mutations, in the order they were applied
+     */
+    synchronized List<Mutation> drainPendingMutations() {
+        if (pendingMutations == null || pendingMutations.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Mutation> drained = pendingMutations;
+        pendingMutations = null;
+        return drained;
+    }
+
+    /**
+     * Removes the mutations applied since the last save and takes a snapshot, atomically,
+     * so the snapshot reflects exactly the drained mutations and those saved before them,
+     * along with any changes made other than through {@link #apply(Mutation)}.
+     *
+     * @param drained the list to add the pending mutations to
+     * @return the snapshot
+     */
+    synchronized UserSnapshot drainPendingMutations(List<Mutation> drained) {
+        drained.addAll(drainPendingMutations());
+        markSaved();
+        return publishSnapshot();
+    }
+
+    /**
+     * Puts back mutations that could not be saved, ahead of any applied since.
+     * The next save writes a full snapshot, since the failed write may have been the
+     * snapshot that was to save changes made other than through {@link #apply(Mutation)}.
+     *
+     * @param mutations the mutations to restore
+     */
+    synchronized void restorePendingMutations(List<Mutation> mutations) {
+        if (pendingMutations != null) {
+            mutations.addAll(pendingMutations);
+        }
+        pendingMutations = mutations;
+        unjournalled = true;
+    }
+
+    /**
+     * Gets the sequence number of the last journaled mutation reflected in this user.
+     *
+     * @return the journal sequence number
+     */
+    synchronized long getJournalSequence() {
+        return journalSequence;
+    }
+
+    /**
+     * Sets the sequence number of the last journaled mutation reflected in this user.
+     *
+     * @param journalSequence the journal sequence number
+     */
+    synchronized void setJournalSequence(long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
     /**
      * Compares this user with another object.
      * Two users are equal if they have the same username.
@@ -170,6 +709,27 @@ public class User implements Serializable {
         return username.hashCode();
     }
 
+    /**
+     * Reads a user written with Java serialization, registering its albums' photos and
+     * rebuilding the album name index.
+     *
+     * @param in the stream
+     * @throws IOException if there's an error reading
+     * @throws ClassNotFoundException if a field's class cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        photoRegistry = new PhotoRegistry();
+        albumsByName = new HashMap<>();
+        published = new AtomicReference<>();
+        for (Album album : albums) {
+            index(album);
+            if (!(album instanceof SmartAlbum)) {
+                photoRegistry.addAlbum(album);
+            }
+        }
+    }
+
     /**
      * Returns a string representation of this user.
      *
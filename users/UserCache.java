@@ -0,0 +1,185 @@
+package users;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import photos.Album;
+import photos.SmartAlbum;
+
+/**
+ * Bounded in-memory cache of loaded users, keyed by username.
+ * Each user is weighted by the number of photos in its albums, and the least recently
+ * used users are evicted once the total weight exceeds the limit. The most recently
+ * used user is always kept, even if it alone exceeds the limit.
+ *
+ * @author Group 60
+ */
+public class UserCache {
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxWeight;
+    private long totalWeight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Holds a cached user and the weight it was cached with.
+     */
+    private static class Entry {
+        final User user;
+        final long weight;
+
+        Entry(User user, long weight) {
+            this.user = user;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Constructs a cache with the specified weight limit.
+     *
+     * @param maxWeight the maximum total weight (roughly, the number of photos) to keep cached
+     */
+    public UserCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Gets a cached user, counting a hit or a miss.
+     *
+     * @param username the username
+     * @return the cached user, or null if the user isn't cached
+     */
+    public synchronized User get(String username) {
+        Entry entry = entries.get(username);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.user;
+    }
+
+    /**
+     * Adds or replaces a cached user, evicting least recently used users if needed.
+     *
+     * @param user the user to cache
+     */
+    public synchronized void put(User user) {
+        long weight = weigh(user);
+        Entry previous = entries.put(user.getUsername(), new Entry(user, weight));
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        totalWeight += weight;
+        evict();
+    }
+
+    /**
+     * Removes a user from the cache.
+     *
+     * @param username the username
+     */
+    public synchronized void invalidate(String username) {
+        Entry removed = entries.remove(username);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+        }
+    }
+
+    /**
+     * Removes all users from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * Sets the maximum total weight, evicting users if the cache is now over the limit.
+     *
+     * @param maxWeight the maximum total weight
+     */
+    public synchronized void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict();
+    }
+
+    /**
+     * Gets the number of cached users.
+     *
+     * @return the number of cached users
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of lookups that found a cached user.
+     *
+     * @return the hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that did not find a cached user.
+     *
+     * @return the miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of users evicted to stay within the weight limit.
+     *
+     * @return the eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Evicts least recently used users until the cache is within its weight limit.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && entries.size() > 1 && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            totalWeight -= eldest.weight;
+            evictions++;
+        }
+    }
+
+    /**
+     * Estimates the weight of a user as one plus its total number of photos.
+     * Smart albums only hold photos already counted in other albums.
+     *
+     * @param user the user
+     * @return the weight
+     */
+    private static long weigh(User user) {
+        long weight = 1;
+        for (Album album : user.getAlbums()) {
+            if (album instanceof SmartAlbum) {
+                continue;
+            }
+            weight += album.getPhotoCount();
+        }
+        return weight;
+    }
+
+    /**
+     * Returns a string representation of the cache statistics.
+     *
+     * @return a string containing the size, weight, hits, misses and evictions
+     */
+    @Override
+    public synchronized String toString() {
+        return "UserCache[" + entries.size() + " users, weight " + totalWeight + "/" + maxWeight
+            + ", " + hits + " hits, " + misses + " misses, " + evictions + " evictions]";
+    }
+}
@@ -0,0 +1,794 @@
+package users;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import photos.Album;
+import photos.AlbumLoader;
+import photos.AlbumSnapshot;
+import photos.Photo;
+import photos.PhotoRegistry;
+import photos.PhotoState;
+import photos.SmartAlbum;
+import photos.Tag;
+
+/**
+ * Reads and writes user snapshots in a compact binary format.
+ * A snapshot is written from an immutable {@link UserSnapshot}, so writing doesn't lock
+ * the user or see changes made while it runs.
+ * Tag types, tag values and photo directories are stored once per album segment in a
+ * string dictionary and referenced by index, and dates are stored as epoch seconds.
+ * Album names, photo counts, date ranges and sizes are kept in a header ahead of the photos, so
+ * a user can be listed without reading any photo; each album's photos are read from its
+ * segment the first time the album is opened. A smart album stores its query in the header
+ * and has an empty segment, since its photos are found by evaluating the query.
+ * The header and each segment carry a CRC32 checksum, so a file torn by a crash is
+ * detected by {@link #verify(Path)} before it is trusted.
+ * Users saved with Java serialization, as they were before this format existed, are
+ * still readable.
+ *
+ * Layout (integers are variable-length unless noted):
+ * <pre>
+ * int magic "P60U", short version, int header length, int header checksum
+ * header: byte kind, string username, string password, long journal sequence,
+ *         album count, then per album: name, byte album kind, query (smart albums only),
+ *         photo count, earliest date, latest date, total file bytes, long album id,
+ *         segment offset, segment length, int segment checksum
+ * segments, one per album, offsets relative to the end of the header:
+ *         dictionary count, strings, photo count, then per photo: directory index,
+ *         file name, epoch seconds, nanos, file bytes, caption, tag count, then per tag:
+ *         type index, value index
+ * </pre>
+ * A date is a presence byte followed by epoch seconds and nanos.
+ *
+ * @author Group 60
+ */
+class UserCodec {
+    private static final int MAGIC = 0x50363055;
+    private static final short VERSION = 1;
+    private static final int SERIALIZATION_MAGIC = 0xACED;
+    private static final int PREFIX_LENGTH = 14;
+
+    private static final int KIND_USER = 0;
+    private static final int KIND_ADMIN = 1;
+    private static final int KIND_STOCK = 2;
+
+    private static final int ALBUM_NORMAL = 0;
+    private static final int ALBUM_SMART = 1;
+
+    /**
+     * Describes one album in a snapshot header.
+     */
+    private static class AlbumEntry {
+        String name;
+        String query;
+        int photoCount;
+        LocalDateTime earliest;
+        LocalDateTime latest;
+        long totalBytes;
+        long id;
+        long offset;
+        int length;
+        int checksum;
+    }
+
+    /**
+     * The decoded header of a snapshot.
+     */
+    private static class Header {
+        int kind;
+        String username;
+        String password;
+        long journalSequence;
+        long segmentsStart;
+        List<AlbumEntry> albums = new ArrayList<>();
+
+        /**
+         * Parses a header body.
+         *
+         * @param body the header bytes following the prefix
+         * @return the header
+         * @throws IOException if the header is malformed
+         */
+        static Header parse(byte[] body) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+            Header header = new Header();
+            header.kind = in.readUnsignedByte();
+            header.username = readString(in);
+            header.password = readString(in);
+            header.journalSequence = in.readLong();
+            int albumCount = readVarInt(in);
+            for (int a = 0; a < albumCount; a++) {
+                AlbumEntry entry = new AlbumEntry();
+                entry.name = readString(in);
+                if (in.readUnsignedByte() == ALBUM_SMART) {
+                    entry.query = readString(in);
+                }
+                entry.photoCount = readVarInt(in);
+                entry.earliest = readDate(in);
+                entry.latest = readDate(in);
+                entry.totalBytes = readVarLong(in);
+                entry.id = in.readLong();
+                entry.offset = readVarLong(in);
+                entry.length = readVarInt(in);
+                entry.checksum = in.readInt();
+                header.albums.add(entry);
+            }
+            return header;
+        }
+    }
+
+    /**
+     * Loads an album's photos from its segment in the user's snapshot file.
+     * The segment is found by album id, so it is still found after the file has been
+     * rewritten. The album swaps in photos already registered for the user as it loads
+     * them, so a photo shared between albums stays a single object.
+     */
+    private static class SegmentLoader implements AlbumLoader {
+        private final Path file;
+        private final long albumId;
+        private final PhotoRegistry registry;
+        private byte[] indexed;
+        private String[] indexedStrings;
+        private Map<String, Integer> offsets;
+
+        SegmentLoader(Path file, long albumId, PhotoRegistry registry) {
+            this.file = file;
+            this.albumId = albumId;
+            this.registry = registry;
+        }
+
+        @Override
+        public List<Photo> loadPhotos() throws IOException {
+            return decodeSegment(readSegment());
+        }
+
+        /**
+         * Finds one stored photo, decoding only that photo. The segment is read and its paths
+         * indexed on the first call, and both are kept until the album is loaded.
+         *
+         * @param filePath the file path
+         * @return the stored photo, or null if the album doesn't contain it
+         * @throws IOException if the file cannot be read or the segment is malformed
+         */
+        @Override
+        public synchronized Photo findPhoto(String filePath) throws IOException {
+            if (offsets == null) {
+                indexed = readSegment();
+                indexedStrings = readStrings(new DataInputStream(new ByteArrayInputStream(indexed)));
+                offsets = readSegmentPaths(indexed);
+            }
+            Integer offset = offsets.get(filePath);
+            if (offset == null) {
+                return null;
+            }
+            DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(indexed, offset, indexed.length - offset));
+            return readPhotoFields(in, filePath, indexedStrings, new HashMap<>());
+        }
+
+        /**
+         * Reads the raw bytes of this album's segment from the current snapshot file.
+         *
+         * @return the segment
+         * @throws IOException if the file cannot be read or no longer contains the album
+         */
+        byte[] readSegment() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                Header header = readHeader(channel);
+                if (header == null) {
+                    throw new StreamCorruptedException("Not a version " + VERSION + " user file: " + file);
+                }
+                for (AlbumEntry entry : header.albums) {
+                    if (entry.id == albumId) {
+                        return readCheckedSegment(channel, header, entry);
+                    }
+                }
+            }
+            throw new FileNotFoundException("Album " + Long.toHexString(albumId) + " not found in " + file);
+        }
+
+        /**
+         * Checks whether a segment contains a photo that is already registered, and which
+         * may therefore have been changed since the segment was written.
+         *
+         * @param segment the segment
+         * @return true if any photo in the segment is registered
+         * @throws IOException if the segment is malformed
+         */
+        boolean sharesLoadedPhoto(byte[] segment) throws IOException {
+            if (registry.size() == 0) {
+                return false;
+            }
+            for (String path : readSegmentPaths(segment).keySet()) {
+                if (registry.contains(path)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Decodes a segment, taking the current state of each photo that is registered.
+         * A registered photo may have been changed since the snapshot being written was
+         * taken; such changes are journaled after that snapshot and replaying them onto
+         * it gives the same photo.
+         *
+         * @param segment the segment
+         * @return the photo states, in album order
+         * @throws IOException if the segment is malformed
+         */
+        List<PhotoState> freeze(byte[] segment) throws IOException {
+            List<PhotoState> states = new ArrayList<>();
+            for (Photo photo : decodeSegment(segment)) {
+                Photo registered = registry.find(photo.getFilePath());
+                states.add((registered != null ? registered : photo).freeze());
+            }
+            return states;
+        }
+    }
+
+    /**
+     * Writes a user snapshot.
+     * Albums whose photos were never loaded are copied from the existing file without
+     * being decoded, unless they share a photo with a loaded album. So are albums whose
+     * snapshot is the same one last written to the file, since their segments are unchanged.
+     *
+     * @param snapshot the snapshot of the user to write
+     * @param journalSequence the sequence number of the last journaled mutation the
+     *        snapshot reflects
+     * @param home the user's existing snapshot file, which may not exist
+     * @param stream the stream to write to
+     * @throws IOException if there's an error writing
+     */
+    static void write(UserSnapshot snapshot, long journalSequence, Path home, OutputStream stream)
+            throws IOException {
+        List<AlbumSnapshot> albums = snapshot.getAlbums();
+        Map<Long, byte[]> unchanged = readUnchangedSegments(snapshot, home);
+        List<byte[]> segments = new ArrayList<>(albums.size());
+        for (AlbumSnapshot album : albums) {
+            byte[] segment = unchanged.get(album.getId());
+            segments.add(segment != null ? segment : segmentOf(album));
+        }
+
+        User user = snapshot.getUser();
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeByte(user instanceof Admin ? KIND_ADMIN : user instanceof Stock ? KIND_STOCK : KIND_USER);
+        writeString(header, snapshot.getUsername());
+        writeString(header, snapshot.getPassword());
+        header.writeLong(journalSequence);
+        writeVarInt(header, albums.size());
+        long offset = 0;
+        for (int i = 0; i < albums.size(); i++) {
+            AlbumSnapshot album = albums.get(i);
+            byte[] segment = segments.get(i);
+            writeString(header, album.getName());
+            if (album.getQuery() != null) {
+                header.writeByte(ALBUM_SMART);
+                writeString(header, album.getQuery());
+            } else {
+                header.writeByte(ALBUM_NORMAL);
+            }
+            writeVarInt(header, album.getPhotoCount());
+            writeDate(header, album.getEarliestDate());
+            writeDate(header, album.getLatestDate());
+            writeVarLong(header, album.getTotalBytes());
+            header.writeLong(album.getId());
+            writeVarLong(header, offset);
+            writeVarInt(header, segment.length);
+            header.writeInt(checksum(segment));
+            offset += segment.length;
+        }
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(headerBytes.size());
+        out.writeInt(checksum(headerBytes.toByteArray()));
+        headerBytes.writeTo(out);
+        for (byte[] segment : segments) {
+            out.write(segment);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a user snapshot, accepting the binary formats and legacy Java serialization.
+     * For the current format only the header is read; album photos are loaded from
+     * {@code home} when each album is first used.
+     *
+     * @param stream the stream to read from; must support mark/reset
+     * @param home the file the user's albums are loaded from later
+     * @return the user
+     * @throws IOException if there's an error reading or the data is malformed
+     * @throws ClassNotFoundException if a legacy snapshot references an unknown class
+     */
+    static User read(InputStream stream, Path home) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(stream);
+        in.mark(4);
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            if ((magic >>> 16) != SERIALIZATION_MAGIC) {
+                throw new StreamCorruptedException("Not a user file");
+            }
+            in.reset();
+            return (User) new ObjectInputStream(in).readObject();
+        }
+
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported user file version: " + version);
+        }
+
+        byte[] body = new byte[in.readInt()];
+        int checksum = in.readInt();
+        in.readFully(body);
+        if (checksum(body) != checksum) {
+            throw new StreamCorruptedException("Corrupt user file header");
+        }
+        Header header = Header.parse(body);
+        User user = newUser(header.kind, header.username, header.password);
+        user.setJournalSequence(header.journalSequence);
+
+        for (AlbumEntry entry : header.albums) {
+            if (entry.query != null) {
+                user.addAlbum(smartAlbum(entry));
+                continue;
+            }
+            Album album = entry.photoCount == 0
+                ? new Album(entry.name)
+                : Album.deferred(entry.name, entry.photoCount, entry.earliest, entry.latest, entry.totalBytes,
+                                 new SegmentLoader(home, entry.id, user.getPhotoRegistry()));
+            album.setId(entry.id);
+            user.addAlbum(album);
+        }
+        return user;
+    }
+
+    /**
+     * Creates a smart album described by a header entry.
+     *
+     * @param entry the header entry
+     * @return the album, reporting its stored photo count and dates until it is evaluated
+     * @throws IOException if the stored query is malformed
+     */
+    private static SmartAlbum smartAlbum(AlbumEntry entry) throws IOException {
+        try {
+            SmartAlbum album = SmartAlbum.deferred(entry.name, entry.query, entry.photoCount,
+                                                   entry.earliest, entry.latest, entry.totalBytes);
+            album.setId(entry.id);
+            return album;
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException("Malformed query for smart album " + entry.name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates an empty user of the given kind.
+     *
+     * @param kind the stored kind
+     * @param username the username
+     * @param password the password
+     * @return the user
+     */
+    private static User newUser(int kind, String username, String password) {
+        User user = kind == KIND_ADMIN ? new Admin() : kind == KIND_STOCK ? new Stock() : new User(username, password);
+        user.setPassword(password);
+        return user;
+    }
+
+    /**
+     * Reads the segments of albums whose snapshots are unchanged since the user's file
+     * was last written.
+     *
+     * @param snapshot the snapshot being written
+     * @param home the user's existing snapshot file
+     * @return the segment bytes by album id; empty if the file is missing, isn't in this
+     *         format or wasn't written from the user's previous snapshot
+     * @throws IOException if the file cannot be read
+     */
+    private static Map<Long, byte[]> readUnchangedSegments(UserSnapshot snapshot, Path home) throws IOException {
+        Map<Long, byte[]> segments = new HashMap<>();
+        UserSnapshot saved = snapshot.getUser().getSavedSnapshot();
+        if (saved == null || !Files.exists(home)) {
+            return segments;
+        }
+        Set<AlbumSnapshot> savedAlbums = Collections.newSetFromMap(new IdentityHashMap<>());
+        savedAlbums.addAll(saved.getAlbums());
+        Set<Long> ids = new HashSet<>();
+        for (AlbumSnapshot album : snapshot.getAlbums()) {
+            if (album.hasPhotos() && savedAlbums.contains(album)) {
+                ids.add(album.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return segments;
+        }
+        try (FileChannel channel = FileChannel.open(home, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+            if (header == null) {
+                return segments;
+            }
+            for (AlbumEntry entry : header.albums) {
+                if (ids.contains(entry.id)) {
+                    segments.put(entry.id, readCheckedSegment(channel, header, entry));
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Checks that a snapshot file is complete: that it ends where its last segment does
+     * and that its header and every segment match their checksums. Files saved with Java
+     * serialization aren't checked, since reading one reads all of it.
+     *
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be read, or is truncated or corrupt
+     */
+    static void verify(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() >= 4 && readAt(channel, 0, 4).getInt() != MAGIC) {
+                return;
+            }
+            Header header = readHeader(channel);
+            if (header == null) {
+                throw new StreamCorruptedException("Unsupported user file version: " + file);
+            }
+            long end = header.segmentsStart;
+            for (AlbumEntry entry : header.albums) {
+                readCheckedSegment(channel, header, entry);
+                end = Math.max(end, header.segmentsStart + entry.offset + entry.length);
+            }
+            if (channel.size() != end) {
+                throw new StreamCorruptedException("User file has " + (channel.size() - end) + " unexpected bytes: " + file);
+            }
+        }
+    }
+
+    /**
+     * Reads and checks the prefix and header of a snapshot file.
+     *
+     * @param channel the file
+     * @return the header, or null if the file isn't in this format
+     * @throws IOException if the file cannot be read or the header is truncated or corrupt
+     */
+    private static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer prefix = readAt(channel, 0, PREFIX_LENGTH);
+        if (prefix.getInt() != MAGIC || prefix.getShort() != VERSION) {
+            return null;
+        }
+        int headerLength = prefix.getInt();
+        int checksum = prefix.getInt();
+        if (headerLength < 0 || headerLength > channel.size() - PREFIX_LENGTH) {
+            throw new EOFException("Truncated user file");
+        }
+        byte[] body = readAt(channel, PREFIX_LENGTH, headerLength).array();
+        if (checksum(body) != checksum) {
+            throw new StreamCorruptedException("Corrupt user file header");
+        }
+        Header header = Header.parse(body);
+        header.segmentsStart = PREFIX_LENGTH + headerLength;
+        return header;
+    }
+
+    /**
+     * Reads an album's segment and checks it against its checksum.
+     *
+     * @param channel the file
+     * @param header the file's header
+     * @param entry the album's header entry
+     * @return the segment
+     * @throws IOException if the segment is truncated or corrupt
+     */
+    private static byte[] readCheckedSegment(FileChannel channel, Header header, AlbumEntry entry) throws IOException {
+        byte[] segment = readAt(channel, header.segmentsStart + entry.offset, entry.length).array();
+        if (checksum(segment) != entry.checksum) {
+            throw new StreamCorruptedException("Corrupt segment for album " + entry.name);
+        }
+        return segment;
+    }
+
+    /**
+     * Computes the CRC32 checksum of some bytes.
+     *
+     * @param bytes the bytes
+     * @return the checksum
+     */
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Gets the segment bytes for an album, copying them from disk when the album
+     * hadn't been loaded and none of its photos could have changed. Smart albums have no
+     * photos of their own to store.
+     *
+     * @param album the album snapshot
+     * @return the segment bytes
+     * @throws IOException if an unloaded album cannot be read
+     */
+    private static byte[] segmentOf(AlbumSnapshot album) throws IOException {
+        if (album.getQuery() != null) {
+            return new byte[0];
+        }
+        if (album.hasPhotos()) {
+            return encodeSegment(album.getPhotos());
+        }
+        AlbumLoader loader = album.getLoader();
+        if (loader instanceof SegmentLoader) {
+            SegmentLoader segmentLoader = (SegmentLoader) loader;
+            byte[] segment = segmentLoader.readSegment();
+            if (!segmentLoader.sharesLoadedPhoto(segment)) {
+                return segment;
+            }
+            return encodeSegment(segmentLoader.freeze(segment));
+        }
+        List<PhotoState> states = new ArrayList<>();
+        for (Photo photo : loader.loadPhotos()) {
+            states.add(photo.freeze());
+        }
+        return encodeSegment(states);
+    }
+
+    /**
+     * Encodes an album's photos as a segment.
+     *
+     * @param photos the photo states, in album order
+     * @return the segment bytes
+     * @throws IOException if there's an error writing
+     */
+    private static byte[] encodeSegment(List<PhotoState> photos) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        for (PhotoState photo : photos) {
+            intern(directoryOf(photo.getFilePath()), dictionary, strings);
+            for (Tag tag : photo.getTags()) {
+                intern(tag.getType(), dictionary, strings);
+                intern(tag.getValue(), dictionary, strings);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeVarInt(out, strings.size());
+        for (String s : strings) {
+            writeString(out, s);
+        }
+        writeVarInt(out, photos.size());
+        for (PhotoState photo : photos) {
+            String path = photo.getFilePath();
+            String directory = directoryOf(path);
+            writeVarInt(out, dictionary.get(directory));
+            writeString(out, path.substring(directory.length()));
+            writeVarLong(out, photo.getDate().toEpochSecond(ZoneOffset.UTC));
+            writeVarInt(out, photo.getDate().getNano());
+            writeVarLong(out, photo.getFileSize());
+            writeString(out, photo.getCaption());
+            List<Tag> tags = photo.getTags();
+            writeVarInt(out, tags.size());
+            for (Tag tag : tags) {
+                writeVarInt(out, dictionary.get(tag.getType()));
+                writeVarInt(out, dictionary.get(tag.getValue()));
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a segment.
+     *
+     * @param segment the segment
+     * @return the photos, in album order
+     * @throws IOException if the segment is malformed
+     */
+    private static List<Photo> decodeSegment(byte[] segment) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(segment));
+        String[] strings = readStrings(in);
+        int photoCount = readVarInt(in);
+        List<Photo> photos = new ArrayList<>(photoCount);
+        Map<Long, Tag> tags = new HashMap<>();
+        for (int i = 0; i < photoCount; i++) {
+            String path = strings[readVarInt(in)] + readString(in);
+            photos.add(readPhotoFields(in, path, strings, tags));
+        }
+        return photos;
+    }
+
+    /**
+     * Reads only the photo paths of a segment.
+     *
+     * @param segment the segment
+     * @return the paths, in album order, each mapped to the offset of the photo's remaining
+     *         fields in the segment
+     * @throws IOException if the segment is malformed
+     */
+    private static Map<String, Integer> readSegmentPaths(byte[] segment) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(segment));
+        String[] strings = readStrings(in);
+        int photoCount = readVarInt(in);
+        Map<String, Integer> paths = new LinkedHashMap<>();
+        for (int i = 0; i < photoCount; i++) {
+            paths.putIfAbsent(strings[readVarInt(in)] + readString(in), segment.length - in.available());
+            readVarLong(in);
+            readVarInt(in);
+            readVarLong(in);
+            readString(in);
+            int tagCount = readVarInt(in);
+            for (int t = 0; t < tagCount * 2; t++) {
+                readVarInt(in);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Reads a dictionary of strings.
+     *
+     * @param in the stream
+     * @return the strings
+     * @throws IOException if there's an error reading
+     */
+    private static String[] readStrings(DataInput in) throws IOException {
+        String[] strings = new String[readVarInt(in)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(in);
+        }
+        return strings;
+    }
+
+    /**
+     * Reads the date, size, caption and tags of a photo whose path has been read.
+     *
+     * @param in the stream
+     * @param path the photo's path
+     * @param strings the dictionary the tags refer to
+     * @param tags the canonical tags already read from the same dictionary, keyed by
+     *        type and value index; updated with new tags
+     * @return the photo
+     * @throws IOException if there's an error reading
+     */
+    private static Photo readPhotoFields(DataInput in, String path, String[] strings,
+                                         Map<Long, Tag> tags) throws IOException {
+        long seconds = readVarLong(in);
+        int nanos = readVarInt(in);
+        long fileSize = readVarLong(in);
+        Photo photo = new Photo(path, LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC), fileSize);
+        photo.setCaption(readString(in));
+        int tagCount = readVarInt(in);
+        for (int t = 0; t < tagCount; t++) {
+            int type = readVarInt(in);
+            int value = readVarInt(in);
+            photo.addTag(tags.computeIfAbsent((long) type << 32 | value,
+                                              k -> Tag.of(strings[type], strings[value])));
+        }
+        return photo;
+    }
+
+    /**
+     * Reads a range of a file.
+     *
+     * @param channel the file
+     * @param position the position to read from
+     * @param length the number of bytes to read
+     * @return a buffer holding the bytes, positioned at its start
+     * @throws IOException if the range extends past the end of the file
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated user file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeDate(DataOutput out, LocalDateTime date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            writeVarLong(out, date.toEpochSecond(ZoneOffset.UTC));
+            writeVarInt(out, date.getNano());
+        }
+    }
+
+    private static LocalDateTime readDate(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long seconds = readVarLong(in);
+        return LocalDateTime.ofEpochSecond(seconds, readVarInt(in), ZoneOffset.UTC);
+    }
+
+    /**
+     * Gets the directory part of a path, including the trailing separator.
+     *
+     * @param path the path
+     * @return the directory prefix, or an empty string if there is none
+     */
+    private static String directoryOf(String path) {
+        int lastSlash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return path.substring(0, lastSlash + 1);
+    }
+
+    private static void intern(String s, Map<String, Integer> dictionary, List<String> strings) {
+        if (!dictionary.containsKey(s)) {
+            dictionary.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable-length integer");
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable-length integer");
+    }
+}
@@ -0,0 +1,195 @@
+package users;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of mutations for a single user.
+ * Each record holds a sequence number and a {@link Mutation}, framed with its length
+ * and a CRC32 checksum so that a record torn by a crash is detected and discarded.
+ * Records with a sequence number already covered by the user's snapshot are skipped on replay.
+ *
+ * @author Group 60
+ */
+class UserJournal {
+
+    /**
+     * A record read from the journal.
+     */
+    private static class Entry {
+        final long sequence;
+        final Mutation mutation;
+
+        Entry(long sequence, Mutation mutation) {
+            this.sequence = sequence;
+            this.mutation = mutation;
+        }
+    }
+
+    /**
+     * The readable records of a journal and where they end.
+     */
+    private static class Contents {
+        final List<Entry> entries = new ArrayList<>();
+        int end;
+    }
+
+    private final Path path;
+
+    /**
+     * Constructs a journal backed by the specified file.
+     *
+     * @param path the journal file
+     */
+    UserJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Gets the size of the journal file.
+     *
+     * @return the size in bytes, or 0 if the journal doesn't exist
+     * @throws IOException if there's an error reading the file attributes
+     */
+    long size() throws IOException {
+        return Files.exists(path) ? Files.size(path) : 0;
+    }
+
+    /**
+     * Appends mutations to the journal, assigning each the user's next sequence number.
+     * Unless the durability level is {@link Durability#RENAME}, the appended records are
+     * forced to disk before this method returns.
+     *
+     * @param user the user the mutations were applied to
+     * @param mutations the mutations to append
+     * @param durability the durability level
+     * @throws IOException if there's an error writing the file
+     */
+    void append(User user, List<Mutation> mutations, Durability durability) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buffer);
+        boolean created = size() == 0;
+        long sequence = user.getJournalSequence();
+        for (Mutation mutation : mutations) {
+            writeRecord(out, ++sequence, mutation);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (durability != Durability.RENAME) {
+                channel.force(true);
+            }
+        }
+        if (created && durability == Durability.FSYNC_DIRECTORY) {
+            UserManager.syncDirectory(path.getParent());
+        }
+        user.setJournalSequence(sequence);
+    }
+
+    /**
+     * Replays the journal onto a user loaded from its snapshot.
+     * Records already covered by the snapshot are skipped. A torn or corrupt record
+     * ends the replay and is truncated from the file.
+     *
+     * @param user the user to apply the mutations to
+     * @return the number of mutations replayed
+     * @throws IOException if there's an error reading the file
+     */
+    int replay(User user) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+
+        byte[] data = Files.readAllBytes(path);
+        Contents contents = read(data);
+        int replayed = 0;
+        for (Entry entry : contents.entries) {
+            if (entry.sequence > user.getJournalSequence()) {
+                entry.mutation.applyTo(user);
+                user.setJournalSequence(entry.sequence);
+                replayed++;
+            }
+        }
+
+        if (contents.end < data.length) {
+            System.err.println("Discarding " + (data.length - contents.end) + " unreadable journal bytes in " + path);
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(contents.end);
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Reads the records of a journal up to the first torn or corrupt one.
+     *
+     * @param data the journal file contents
+     * @return the records and the offset where the readable records end
+     * @throws IOException if a record with a valid checksum is malformed
+     */
+    private static Contents read(byte[] data) throws IOException {
+        Contents contents = new Contents();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int offset = 0;
+        while (offset + 8 <= data.length) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > data.length - offset - 8) {
+                break;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, offset + 8, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            long sequence = in.readLong();
+            contents.entries.add(new Entry(sequence, Mutation.readFrom(in)));
+            offset += 8 + length;
+        }
+        contents.end = offset;
+        return contents;
+    }
+
+    /**
+     * Writes a record framed with its length and checksum.
+     *
+     * @param out the output
+     * @param sequence the record's sequence number
+     * @param mutation the mutation
+     * @throws IOException if there's an error writing
+     */
+    private static void writeRecord(DataOutput out, long sequence, Mutation mutation) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeLong(sequence);
+        mutation.writeTo(recordOut);
+        byte[] payload = record.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    /**
+     * Deletes the journal file.
+     *
+     * @throws IOException if there's an error deleting the file
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
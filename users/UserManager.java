@@ -1,20 +1,53 @@
 package users;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
 
 /**
  * Manages user accounts and persistence.
  * Handles user creation, deletion, retrieval, and serialization to disk.
+ * Users are stored as a binary snapshot ({@link UserCodec}) plus a journal of later mutations.
  * 
  * @author Group 60
  */
 public class UserManager {
-    private static final String USERS_DIR = "data/users";
+    private static final Path DEFAULT_USERS_DIR = Paths.get("data/users");
     private static final String USER_FILE_EXTENSION = ".dat";
+    private static final String JOURNAL_FILE_EXTENSION = ".journal";
+    private static final String TEMP_FILE_EXTENSION = ".dat.tmp";
+    private static final String BACKUP_FILE_EXTENSION = ".dat.bak";
+
+    /** The directory holding the users' files. */
+    private static volatile Path usersDir = DEFAULT_USERS_DIR;
+
+    /** Journal size, in bytes, above which a save rewrites the snapshot instead of appending. */
+    private static long journalCompactionThreshold = 256 * 1024;
+
+    /** How hard saves work to survive crashes and power loss. */
+    private static Durability durability = Durability.FSYNC;
+
+    /** Recently used users, so repeated logins and admin operations skip deserialization. */
+    private static final UserCache cache = new UserCache(200_000);
+
+    /** Usernames found in the users directory, or null if they must be re-read. */
+    private static List<String> cachedUsernames;
+
+    /** Background writer for {@link #saveUserLater(User)}. */
+    private static final WriteBehindSaver saver = new WriteBehindSaver(500);
+
+    /** Serializes all writes to user files between the caller's thread and the background writer. */
+    private static final Object diskLock = new Object();
     
     /**
      * Gets the file path for a user's data file.
@@ -23,11 +56,102 @@ public class UserManager {
      * @return the file path
      */
     private static String getUserFilePath(String username) {
-        return USERS_DIR + "/" + username + USER_FILE_EXTENSION;
+        return getUserFile(username, USER_FILE_EXTENSION).toString();
+    }
+
+    /**
+     * Gets the path of one of a user's files.
+     *
+     * @param username the username
+     * @param extension the file extension, including the leading dot
+     * @return the path
+     */
+    private static Path getUserFile(String username, String extension) {
+        return usersDir.resolve(username + extension);
+    }
+
+    /**
+     * Gets the journal for a user.
+     *
+     * @param username the username
+     * @return the user's journal
+     */
+    private static UserJournal getJournal(String username) {
+        return new UserJournal(getUserFile(username, JOURNAL_FILE_EXTENSION));
     }
 
     /**
-     * Loads a user from disk.
+     * Gets the directory users are stored in.
+     *
+     * @return the directory, {@code data/users} unless changed
+     */
+    public static Path getUsersDirectory() {
+        return usersDir;
+    }
+
+    /**
+     * Sets the directory users are stored in, so tools and tests can work on users
+     * without touching the application's data. Cached users and usernames are discarded;
+     * saves scheduled with {@link #saveUserLater(User)} should be flushed first.
+     *
+     * @param directory the directory
+     */
+    public static void setUsersDirectory(Path directory) {
+        synchronized (diskLock) {
+            usersDir = directory;
+            cachedUsernames = null;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Gets the journal size above which saving compacts the journal into a new snapshot.
+     *
+     * @return the threshold in bytes
+     */
+    public static long getJournalCompactionThreshold() {
+        return journalCompactionThreshold;
+    }
+
+    /**
+     * Sets the journal size above which saving compacts the journal into a new snapshot.
+     *
+     * @param bytes the threshold in bytes
+     */
+    public static void setJournalCompactionThreshold(long bytes) {
+        journalCompactionThreshold = bytes;
+    }
+
+    /**
+     * Gets the durability level used when saving users.
+     *
+     * @return the durability level
+     */
+    public static Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Sets the durability level used when saving users.
+     *
+     * @param level the durability level
+     */
+    public static void setDurability(Durability level) {
+        durability = level;
+    }
+
+    /**
+     * Gets the cache of loaded users.
+     *
+     * @return the user cache
+     */
+    public static UserCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Loads a user, from the cache if possible and otherwise from disk.
+     * Users loaded from disk are added to the cache.
      *
      * @param username the username to load
      * @return the User object, or null if not found
@@ -35,82 +159,327 @@ public class UserManager {
      * @throws ClassNotFoundException if the User class cannot be found
      */
     public static User loadUser(String username) throws IOException, ClassNotFoundException {
-        String filePath = getUserFilePath(username);
-        if (!Files.exists(Paths.get(filePath))) {
-            return null;
+        User user = cache.get(username);
+        if (user == null) {
+            user = readUser(username);
+            if (user != null) {
+                cache.put(user);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Reads a user from disk.
+     * The user's snapshot is read and any newer mutations in the journal are replayed onto it.
+     * If the snapshot is missing, unreadable or fails its checksums, for example after a crash
+     * during a save, the last good copy is recovered from the temporary or backup file and
+     * restored in its place.
+     *
+     * @param username the username to load
+     * @return the User object, or null if not found
+     * @throws IOException if there's an error reading the file and no good copy exists
+     * @throws ClassNotFoundException if the User class cannot be found
+     */
+    private static User readUser(String username) throws IOException, ClassNotFoundException {
+        Path target = getUserFile(username, USER_FILE_EXTENSION);
+        IOException failure = null;
+
+        for (String extension : new String[] {USER_FILE_EXTENSION, TEMP_FILE_EXTENSION, BACKUP_FILE_EXTENSION}) {
+            Path candidate = getUserFile(username, extension);
+            if (!Files.exists(candidate)) {
+                continue;
+            }
+
+            User user;
+            try {
+                UserCodec.verify(candidate);
+                user = readSnapshot(candidate, target);
+            } catch (IOException e) {
+                System.err.println("Unreadable user file " + candidate + ": " + e);
+                if (failure == null) {
+                    failure = e;
+                }
+                continue;
+            }
+
+            if (!candidate.equals(target)) {
+                System.err.println("Recovered user '" + username + "' from " + candidate);
+                Files.move(candidate, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            getJournal(username).replay(user);
+            user.markSaved();
+            return user;
         }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(filePath))) {
-            return (User) ois.readObject();
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    /**
+     * Reads a user snapshot from a file.
+     * Snapshots in the legacy Java serialization format are imported transparently.
+     * Album photos are not read here; they are loaded from {@code home} when first used.
+     *
+     * @param path the snapshot file
+     * @param home the user's snapshot file once any recovery is complete
+     * @return the User object
+     * @throws IOException if there's an error reading the file
+     * @throws ClassNotFoundException if the User class cannot be found
+     */
+    private static User readSnapshot(Path path, Path home) throws IOException, ClassNotFoundException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return UserCodec.read(in, home);
         }
     }
 
     /**
      * Saves a user to disk.
+     * If the user's changes since it was last saved were all made through
+     * {@link User#apply(Mutation)}, they are appended to the user's journal. Otherwise, or
+     * once the journal grows past the compaction threshold, the full snapshot is rewritten
+     * and the journal is discarded.
      *
      * @param user the user to save
      * @throws IOException if there's an error writing the file
      */
     public static void saveUser(User user) throws IOException {
         // Ensure the users directory exists
-        Files.createDirectories(Paths.get(USERS_DIR));
+        Files.createDirectories(usersDir);
 
-        String filePath = getUserFilePath(user.getUsername());
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(filePath))) {
-            oos.writeObject(user);
-            oos.flush();
+        synchronized (diskLock) {
+            UserJournal journal = getJournal(user.getUsername());
+            List<Mutation> pending = user.drainPendingMutations();
+            try {
+                if (!pending.isEmpty() && !user.hasUnjournalledChanges() && userExists(user.getUsername())
+                        && journal.size() < journalCompactionThreshold) {
+                    journal.append(user, pending, durability);
+                    return;
+                }
+                if (!userExists(user.getUsername())) {
+                    cachedUsernames = null;
+                }
+                writeSnapshot(user.drainPendingMutations(pending), user.getJournalSequence());
+            } catch (IOException | RuntimeException e) {
+                user.restorePendingMutations(pending);
+                throw e;
+            } finally {
+                cache.put(user);
+            }
+            journal.delete();
+        }
+    }
+
+    /**
+     * Schedules a user's pending mutations to be saved on a background thread.
+     * Requests made within a short window are coalesced into a single journal append,
+     * so rapid edits don't each pay for a disk write and the caller never blocks on I/O.
+     * A user changed other than through {@link User#apply(Mutation)} is saved in full.
+     *
+     * @param user the user to save
+     */
+    public static void saveUserLater(User user) {
+        saver.markDirty(user);
+    }
+
+    /**
+     * Writes all users scheduled by {@link #saveUserLater(User)} and waits for the writes to finish.
+     * This should be called before logging out or quitting.
+     *
+     * @throws IOException if a background save failed
+     */
+    public static void flushPendingSaves() throws IOException {
+        saver.flush();
+    }
+
+    /**
+     * Sets how long background saves wait to coalesce further changes before writing.
+     *
+     * @param millis the coalescing window in milliseconds
+     */
+    public static void setSaveDelay(long millis) {
+        saver.setDelay(millis);
+    }
+
+    /**
+     * Appends a user's pending mutations to its journal, compacting the journal once it
+     * passes the threshold. A user changed other than through {@link User#apply(Mutation)}
+     * is compacted straight away instead. Compaction writes a snapshot taken together with
+     * draining any mutations applied since the append, so the snapshot covers the journal
+     * and those mutations exactly; it is written without holding the user's lock, so
+     * compaction is safe to run while the user is being edited.
+     * A user with no file on disk has nothing to append to, either because it was never
+     * saved or because it was deleted, so its mutations are kept pending for the next
+     * {@link #saveUser(User)}. Mutations that fail to be written are kept pending too.
+     *
+     * @param user the user to save
+     * @throws IOException if there's an error writing the files
+     */
+    static void writePendingMutations(User user) throws IOException {
+        String username = user.getUsername();
+        synchronized (diskLock) {
+            if (!userExists(username)) {
+                return;
+            }
+            List<Mutation> pending = user.drainPendingMutations();
+            boolean unjournalled = user.hasUnjournalledChanges();
+            if (pending.isEmpty() && !unjournalled) {
+                return;
+            }
+
+            UserJournal journal = getJournal(username);
+            if (!unjournalled) {
+                try {
+                    journal.append(user, pending, durability);
+                } catch (IOException | RuntimeException e) {
+                    user.restorePendingMutations(pending);
+                    throw e;
+                }
+            }
+
+            if (unjournalled || journal.size() >= journalCompactionThreshold) {
+                List<Mutation> covered = unjournalled ? pending : new ArrayList<>();
+                UserSnapshot snapshot = user.drainPendingMutations(covered);
+                try {
+                    writeSnapshot(snapshot, user.getJournalSequence());
+                } catch (IOException | RuntimeException e) {
+                    user.restorePendingMutations(covered);
+                    throw e;
+                }
+                journal.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes the full snapshot of a user to disk.
+     * The snapshot is written to a sibling temporary file, forced to disk according to the
+     * durability level, and then renamed over the existing file in one atomic step, so the
+     * data file exists throughout. The existing file is first kept as a backup, as a hard link
+     * where the file system supports it and as a copy otherwise.
+     *
+     * @param snapshot the snapshot of the user to write
+     * @param journalSequence the sequence number of the last journaled mutation the
+     *        snapshot reflects
+     * @throws IOException if there's an error writing the file
+     */
+    private static void writeSnapshot(UserSnapshot snapshot, long journalSequence) throws IOException {
+        String username = snapshot.getUsername();
+        Path target = getUserFile(username, USER_FILE_EXTENSION);
+        Path temp = getUserFile(username, TEMP_FILE_EXTENSION);
+        Path backup = getUserFile(username, BACKUP_FILE_EXTENSION);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            UserCodec.write(snapshot, journalSequence, target,
+                            new BufferedOutputStream(Channels.newOutputStream(channel)));
+            if (durability != Durability.RENAME) {
+                channel.force(true);
+            }
+        }
+
+        if (Files.exists(target)) {
+            Files.deleteIfExists(backup);
+            try {
+                Files.createLink(backup, target);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(target, backup, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (durability == Durability.FSYNC_DIRECTORY) {
+            syncDirectory(target.getParent());
+        }
+        snapshot.getUser().setSavedSnapshot(snapshot);
+    }
+
+    /**
+     * Forces a directory's entries to disk so that renames and new files in it are durable.
+     * Platforms that cannot open a directory for syncing (such as Windows) are skipped.
+     *
+     * @param directory the directory to sync
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directory sync is not supported on this platform
         }
     }
 
     /**
      * Deletes a user from disk.
+     * A save of the user scheduled with {@link #saveUserLater(User)} is cancelled, and one
+     * already being written finishes first, so it can't recreate the user's files.
      *
      * @param username the username to delete
      * @return true if the user was deleted, false if not found
      * @throws IOException if there's an error deleting the file
      */
     public static boolean deleteUser(String username) throws IOException {
-        String filePath = getUserFilePath(username);
-        if (Files.exists(Paths.get(filePath))) {
-            Files.delete(Paths.get(filePath));
-            return true;
+        saver.cancel(username);
+        synchronized (diskLock) {
+            String filePath = getUserFilePath(username);
+            cache.invalidate(username);
+            cachedUsernames = null;
+            getJournal(username).delete();
+            Files.deleteIfExists(getUserFile(username, TEMP_FILE_EXTENSION));
+            Files.deleteIfExists(getUserFile(username, BACKUP_FILE_EXTENSION));
+            if (Files.exists(Paths.get(filePath))) {
+                Files.delete(Paths.get(filePath));
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
      * Checks if a user exists.
+     * A user whose data file was lost during an interrupted save still exists if its backup remains.
      *
      * @param username the username to check
      * @return true if the user exists, false otherwise
      */
     public static boolean userExists(String username) {
         String filePath = getUserFilePath(username);
-        return Files.exists(Paths.get(filePath));
+        return Files.exists(Paths.get(filePath)) || Files.exists(getUserFile(username, BACKUP_FILE_EXTENSION));
     }
 
     /**
-     * Gets all usernames in the system.
+     * Gets all usernames in the system: every user with a data file or, as in
+     * {@link #userExists(String)}, a backup left by an interrupted save.
+     * The users directory is read once and the result is reused until a user is created or deleted.
      *
      * @return a list of all usernames
      * @throws IOException if there's an error reading the directory
      */
     public static List<String> getAllUsers() throws IOException {
-        List<String> usernames = new ArrayList<>();
+        if (cachedUsernames != null) {
+            return new ArrayList<>(cachedUsernames);
+        }
+
+        Set<String> found = new LinkedHashSet<>();
         
-        if (!Files.exists(Paths.get(USERS_DIR))) {
-            return usernames;
+        if (!Files.exists(usersDir)) {
+            return new ArrayList<>();
         }
 
-        Files.list(Paths.get(USERS_DIR))
-            .filter(path -> path.toString().endsWith(USER_FILE_EXTENSION))
-            .forEach(path -> {
+        try (Stream<Path> files = Files.list(usersDir)) {
+            files.forEach(path -> {
                 String filename = path.getFileName().toString();
-                String username = filename.substring(0, filename.length() - USER_FILE_EXTENSION.length());
-                usernames.add(username);
+                for (String extension : new String[] {USER_FILE_EXTENSION, BACKUP_FILE_EXTENSION}) {
+                    if (filename.endsWith(extension)) {
+                        found.add(filename.substring(0, filename.length() - extension.length()));
+                    }
+                }
             });
+        }
 
-        return usernames;
+        List<String> usernames = new ArrayList<>(found);
+        cachedUsernames = usernames;
+        return new ArrayList<>(usernames);
     }
 
     /**
@@ -124,10 +493,6 @@ public class UserManager {
      */
     public static User authenticate(String username, String password) {
         try {
-            if (!userExists(username)) {
-                return null;
-            }
-
             User user = loadUser(username);
             if (user == null) {
                 return null;
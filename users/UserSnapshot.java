@@ -0,0 +1,89 @@
+package users;
+
+import java.util.Collections;
+import java.util.List;
+import photos.AlbumSnapshot;
+
+/**
+ * An immutable copy of a user's name, password and albums at one moment, taken with
+ * {@link User#snapshot()}. Readers on other threads, such as saving, can use a snapshot
+ * without locking the user and without seeing later edits. Consecutive snapshots share
+ * the snapshots of albums that didn't change, and those share the states of unchanged
+ * photos, so taking a snapshot after a small edit copies little.
+ *
+ * @author Group 60
+ */
+public final class UserSnapshot {
+    private final User user;
+    private final String username;
+    private final String password;
+    private final List<AlbumSnapshot> albums;
+
+    UserSnapshot(User user, String username, String password, List<AlbumSnapshot> albums) {
+        this.user = user;
+        this.username = username;
+        this.password = password;
+        this.albums = Collections.unmodifiableList(albums);
+    }
+
+    /**
+     * Gets the user this snapshot was taken of.
+     *
+     * @return the user, which may have changed since
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Gets the username.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Gets the password.
+     *
+     * @return the password
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Gets the snapshots of the user's albums, in album order.
+     *
+     * @return an unmodifiable list of the albums
+     */
+    public List<AlbumSnapshot> getAlbums() {
+        return albums;
+    }
+
+    /**
+     * Finds an album by name.
+     *
+     * @param albumName the name of the album
+     * @return the album, or null if not found
+     */
+    public AlbumSnapshot getAlbum(String albumName) {
+        for (AlbumSnapshot album : albums) {
+            if (album.getName().equals(albumName)) {
+                return album;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a string representation of this snapshot.
+     *
+     * @return a string containing the username and album count
+     */
+    @Override
+    public String toString() {
+        return username + " (" + albums.size() + " albums)";
+    }
+}
@@ -0,0 +1,148 @@
+package users;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists users on a background thread so saving never blocks the JavaFX application thread.
+ * Users marked dirty within the coalescing window are written together, so a burst of
+ * edits produces a single journal append per user.
+ *
+ * @author Group 60
+ */
+class WriteBehindSaver {
+    private static final long RETRY_MILLIS = 1000;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<User> dirty = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean scheduled;
+    private long delayMillis;
+    private IOException failure;
+
+    /**
+     * Constructs a saver with the specified coalescing window.
+     *
+     * @param delayMillis how long to wait after the first change before writing
+     */
+    WriteBehindSaver(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Sets the coalescing window for changes marked dirty from now on.
+     *
+     * @param delayMillis how long to wait after the first change before writing
+     */
+    synchronized void setDelay(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * Marks a user as having unsaved mutations and schedules a write if none is pending.
+     *
+     * @param user the user to save
+     */
+    synchronized void markDirty(User user) {
+        dirty.add(user);
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::writeDirty, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes all dirty users now and waits for the writes to finish.
+     *
+     * @throws IOException if a background write failed since the last flush
+     */
+    void flush() throws IOException {
+        await(executor.submit(this::writeDirty));
+
+        IOException error;
+        synchronized (this) {
+            error = failure;
+            failure = null;
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Drops any scheduled save of a user, first waiting for a write already under way to
+     * finish, so nothing is written for the user afterwards unless it is marked dirty again.
+     *
+     * @param username the user's name
+     * @throws IOException if interrupted while waiting
+     */
+    void cancel(String username) throws IOException {
+        // The writer runs one task at a time, so this returns once any write in progress is done
+        await(executor.submit(() -> { }));
+        synchronized (this) {
+            dirty.removeIf(user -> user.getUsername().equals(username));
+        }
+    }
+
+    /**
+     * Waits for a task on the writer thread to finish.
+     *
+     * @param done the task
+     * @throws IOException if the task failed or the wait was interrupted
+     */
+    private static void await(Future<?> done) throws IOException {
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while saving users");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Writes the pending mutations of every dirty user.
+     * Users whose write fails stay dirty and are retried after a delay, or sooner by a flush.
+     */
+    private void writeDirty() {
+        List<User> users;
+        synchronized (this) {
+            users = new ArrayList<>(dirty);
+            dirty.clear();
+            scheduled = false;
+        }
+
+        for (User user : users) {
+            try {
+                UserManager.writePendingMutations(user);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error saving user '" + user.getUsername() + "': " + e);
+                synchronized (this) {
+                    dirty.add(user);
+                    if (failure == null) {
+                        failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    }
+                    if (!scheduled) {
+                        scheduled = true;
+                        executor.schedule(this::writeDirty, Math.max(delayMillis, RETRY_MILLIS), TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+        }
+    }
+}